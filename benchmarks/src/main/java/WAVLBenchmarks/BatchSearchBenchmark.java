@@ -0,0 +1,95 @@
+package WAVLBenchmarks;
+
+import WAVLCore.WAVLTree;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * BatchSearchBenchmark
+ * <p>
+ * Looks up batches of batch keys with WAVLTree.searchAll and containsAll against a loop of search over the batch.
+ * A random batch draws its keys from the whole tree, a clustered batch from a window of 8 * batch keys
+ * (-p clustered=true), where the sorted keys share most of their paths. The time is per batch.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+@State(Scope.Thread)
+public class BatchSearchBenchmark {
+
+    private static final String INFO = "info";
+
+    /**
+     * The number of batches the benchmarks cycle through.
+     */
+    private static final int BATCHES = 64;
+
+    @Param({"1000000", "10000000"})
+    public int size;
+
+    @Param({"64", "4096"})
+    public int batch;
+
+    @Param({"false", "true"})
+    public boolean clustered;
+
+    private WAVLTree tree;
+    private int[][] batches;
+    private int probe;
+
+    @Setup(Level.Trial)
+    public void load() {
+        tree = new WAVLTree();
+        for (int key : KeyDistribution.RANDOM.loadOrder(size)) {
+            tree.insert(key, INFO);
+        }
+
+        Random random = new Random(42);
+        batches = new int[BATCHES][batch];
+        for (int[] keys : batches) {
+            int window = Math.min(size, 8 * batch);
+            int start = random.nextInt(size - window + 1);
+            for (int j = 0; j < batch; j++) {
+                keys[j] = 2 * (clustered ? start + random.nextInt(window) : random.nextInt(size));
+            }
+        }
+    }
+
+    @Benchmark
+    public String[] loopSearch() {
+        probe = (probe + 1) & (BATCHES - 1);
+        int[] keys = batches[probe];
+        String[] info = new String[keys.length];
+        for (int j = 0; j < keys.length; j++) {
+            info[j] = tree.search(keys[j]);
+        }
+        return info;
+    }
+
+    @Benchmark
+    public String[] searchAll() {
+        probe = (probe + 1) & (BATCHES - 1);
+        return tree.searchAll(batches[probe]);
+    }
+
+    @Benchmark
+    public boolean containsAll() {
+        probe = (probe + 1) & (BATCHES - 1);
+        return tree.containsAll(batches[probe]);
+    }
+}
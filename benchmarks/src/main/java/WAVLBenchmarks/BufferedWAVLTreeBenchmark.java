@@ -0,0 +1,75 @@
+package WAVLBenchmarks;
+
+import WAVLCore.BufferedWAVLTree;
+import WAVLCore.WAVLTree;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * BufferedWAVLTreeBenchmark
+ * <p>
+ * Sustained random writes on a tree of size keys: every invocation inserts a key that is not loaded and deletes the
+ * key inserted PROBES / 2 invocations before, so the size of the tree stays the same. Compares WAVLTree.insert and
+ * delete against BufferedWAVLTree.put and delete with a buffer of capacity changes (the time includes the merges of
+ * the buffer into the tree).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms8g", "-Xmx8g"})
+@State(Scope.Thread)
+public class BufferedWAVLTreeBenchmark {
+
+    private static final String INFO = "info";
+
+    @Param({"1000000", "10000000"})
+    public int size;
+
+    @Param({"1024", "4096", "16384"})
+    public int capacity;
+
+    private WAVLTree tree;
+    private BufferedWAVLTree buffered;
+    private int[] absentKeys;
+    private int probe;
+
+    @Setup(Level.Trial)
+    public void load() {
+        tree = new WAVLTree();
+        buffered = new BufferedWAVLTree(capacity);
+        for (int key : KeyDistribution.RANDOM.loadOrder(size)) {
+            tree.insert(key, INFO);
+            buffered.put(key, INFO);
+        }
+        buffered.flush();
+        absentKeys = KeyDistribution.RANDOM.absentKeys(size, WAVLTreeBenchmark.PROBES);
+    }
+
+    @Benchmark
+    public int wavlTree() {
+        probe = (probe + 1) & (WAVLTreeBenchmark.PROBES - 1);
+        tree.insert(absentKeys[probe], INFO);
+        return tree.delete(absentKeys[(probe + WAVLTreeBenchmark.PROBES / 2) & (WAVLTreeBenchmark.PROBES - 1)]);
+    }
+
+    @Benchmark
+    public int bufferedTree() {
+        probe = (probe + 1) & (WAVLTreeBenchmark.PROBES - 1);
+        buffered.put(absentKeys[probe], INFO);
+        buffered.delete(absentKeys[(probe + WAVLTreeBenchmark.PROBES / 2) & (WAVLTreeBenchmark.PROBES - 1)]);
+        return buffered.buffered();
+    }
+}
@@ -0,0 +1,168 @@
+package WAVLBenchmarks;
+
+import WAVLCore.ConcurrentWAVLTree;
+import WAVLCore.WAVLTree;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * ConcurrentWAVLTreeBenchmark
+ * <p>
+ * A read/write mix on a shared tree: in every group 7 threads search and 1 thread inserts and deletes absent keys
+ * (change the mix with -tg, e.g. -tg 15,1). The groups compare ConcurrentWAVLTree (StampedLock optimistic reads)
+ * against a WAVLTree guarded by synchronized and by a ReentrantReadWriteLock.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+@State(Scope.Group)
+public class ConcurrentWAVLTreeBenchmark {
+
+    private static final String INFO = "info";
+
+    @Param({"1000", "1000000"})
+    public int size;
+
+    private ConcurrentWAVLTree stampedTree;
+    private WAVLTree synchronizedTree;
+    private WAVLTree readWriteTree;
+    private final ReentrantReadWriteLock readWriteLock = new ReentrantReadWriteLock();
+
+    @Setup(Level.Trial)
+    public void load() {
+        stampedTree = new ConcurrentWAVLTree();
+        synchronizedTree = new WAVLTree();
+        readWriteTree = new WAVLTree();
+        for (int key : KeyDistribution.RANDOM.loadOrder(size)) {
+            stampedTree.insert(key, INFO);
+            synchronizedTree.insert(key, INFO);
+            readWriteTree.insert(key, INFO);
+        }
+    }
+
+    /**
+     * The probes of one thread: loaded keys for the readers, absent keys for the writer.
+     */
+    @State(Scope.Thread)
+    public static class Probes {
+        private int[] keys;
+        private int[] absentKeys;
+        private int probe;
+        private boolean inserted;
+
+        @Setup(Level.Trial)
+        public void generate(ConcurrentWAVLTreeBenchmark benchmark) {
+            Random random = new Random(Thread.currentThread().getId());
+            keys = new int[WAVLTreeBenchmark.PROBES];
+            absentKeys = new int[WAVLTreeBenchmark.PROBES];
+            for (int i = 0; i < keys.length; i++) {
+                keys[i] = 2 * random.nextInt(benchmark.size);
+                absentKeys[i] = keys[i] + 1;
+            }
+        }
+
+        int nextKey() {
+            probe = (probe + 1) & (WAVLTreeBenchmark.PROBES - 1);
+            return keys[probe];
+        }
+
+        /**
+         * Alternates between inserting an absent key and deleting it, so the size of the tree stays the same.
+         */
+        int nextWrite(WAVLTree tree) {
+            if (inserted) {
+                inserted = false;
+                return tree.delete(absentKeys[probe]);
+            }
+            probe = (probe + 1) & (WAVLTreeBenchmark.PROBES - 1);
+            inserted = true;
+            return tree.insert(absentKeys[probe], INFO);
+        }
+
+        int nextWrite(ConcurrentWAVLTree tree) {
+            if (inserted) {
+                inserted = false;
+                return tree.delete(absentKeys[probe]);
+            }
+            probe = (probe + 1) & (WAVLTreeBenchmark.PROBES - 1);
+            inserted = true;
+            return tree.insert(absentKeys[probe], INFO);
+        }
+    }
+
+    @Benchmark
+    @Group("stamped")
+    @GroupThreads(7)
+    public String stampedRead(Probes probes) {
+        return stampedTree.search(probes.nextKey());
+    }
+
+    @Benchmark
+    @Group("stamped")
+    @GroupThreads(1)
+    public int stampedWrite(Probes probes) {
+        return probes.nextWrite(stampedTree);
+    }
+
+    @Benchmark
+    @Group("synchronized")
+    @GroupThreads(7)
+    public String synchronizedRead(Probes probes) {
+        int key = probes.nextKey();
+        synchronized (synchronizedTree) {
+            return synchronizedTree.search(key);
+        }
+    }
+
+    @Benchmark
+    @Group("synchronized")
+    @GroupThreads(1)
+    public int synchronizedWrite(Probes probes) {
+        synchronized (synchronizedTree) {
+            return probes.nextWrite(synchronizedTree);
+        }
+    }
+
+    @Benchmark
+    @Group("readWriteLock")
+    @GroupThreads(7)
+    public String readWriteLockRead(Probes probes) {
+        int key = probes.nextKey();
+        readWriteLock.readLock().lock();
+        try {
+            return readWriteTree.search(key);
+        } finally {
+            readWriteLock.readLock().unlock();
+        }
+    }
+
+    @Benchmark
+    @Group("readWriteLock")
+    @GroupThreads(1)
+    public int readWriteLockWrite(Probes probes) {
+        readWriteLock.writeLock().lock();
+        try {
+            return probes.nextWrite(readWriteTree);
+        } finally {
+            readWriteLock.writeLock().unlock();
+        }
+    }
+}
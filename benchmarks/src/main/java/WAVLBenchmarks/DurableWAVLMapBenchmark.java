@@ -0,0 +1,83 @@
+package WAVLBenchmarks;
+
+import WAVLCore.DurableWAVLMap;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * DurableWAVLMapBenchmark
+ * <p>
+ * Throughput of logged changes (3 inserts per delete of random keys) on DurableWAVLMap for different group commit
+ * sizes: syncBatch = 1 forces the log on every change, larger batches trade the last changes before a crash for
+ * fewer fsyncs. The map lives in -Ddirectory (the temporary directory by default), which should be on the disk
+ * to measure.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+@State(Scope.Thread)
+public class DurableWAVLMapBenchmark {
+
+    private static final int KEYS = 1 << 20;
+
+    @Param({"1", "16", "256", "4096"})
+    public int syncBatch;
+
+    @Param({"1000000"})
+    public int checkpointInterval;
+
+    private Path directory;
+    private DurableWAVLMap map;
+    private int[] keys;
+    private int probe;
+
+    @Setup(Level.Trial)
+    public void open() throws IOException {
+        String parent = System.getProperty("directory", System.getProperty("java.io.tmpdir"));
+        directory = Files.createTempDirectory(Paths.get(parent), "wavl-durable");
+        map = new DurableWAVLMap(directory, syncBatch, checkpointInterval);
+        Random random = new Random(42);
+        keys = new int[WAVLTreeBenchmark.PROBES];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = random.nextInt(KEYS);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void close() throws IOException {
+        map.close();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(directory);
+    }
+
+    @Benchmark
+    public int change() throws IOException {
+        probe = (probe + 1) & (WAVLTreeBenchmark.PROBES - 1);
+        return (probe & 3) == 0 ? map.delete(keys[probe]) : map.insert(keys[probe], "info");
+    }
+}
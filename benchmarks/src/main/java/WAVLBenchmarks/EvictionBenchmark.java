@@ -0,0 +1,76 @@
+package WAVLBenchmarks;
+
+import WAVLCore.WAVLTree;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * EvictionBenchmark
+ * <p>
+ * Time to delete the evicted percent of the keys, the smallest ones, from a tree of size keys, one shot per
+ * iteration: WAVLTree.evictBelow against a loop of delete over the evicted keys, in increasing order as a retention
+ * job would. The tree is built again (with fromSorted) before every shot.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms8g", "-Xmx8g"})
+@State(Scope.Thread)
+public class EvictionBenchmark {
+
+    @Param({"1000000", "10000000"})
+    public int size;
+
+    @Param({"10", "50"})
+    public int evicted;
+
+    private int[] keys;
+    private String[] info;
+    private int watermark;
+    private WAVLTree tree;
+
+    @Setup(Level.Trial)
+    public void keys() {
+        keys = new int[size];
+        for (int i = 0; i < size; i++) {
+            keys[i] = 2 * i;
+        }
+        info = new String[size];
+        Arrays.fill(info, "info");
+        watermark = keys[(int) ((long) size * evicted / 100)];
+    }
+
+    @Setup(Level.Invocation)
+    public void load() {
+        tree = WAVLTree.fromSorted(keys, info);
+    }
+
+    @Benchmark
+    public int evictBelow() {
+        return tree.evictBelow(watermark);
+    }
+
+    @Benchmark
+    public int deleteLoop() {
+        int deleted = 0;
+        for (int i = 0; keys[i] < watermark; i++) {
+            tree.delete(keys[i]);
+            deleted++;
+        }
+        return deleted;
+    }
+}
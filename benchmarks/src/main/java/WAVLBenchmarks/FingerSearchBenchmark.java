@@ -0,0 +1,135 @@
+package WAVLBenchmarks;
+
+import WAVLCore.WAVLFinger;
+import WAVLCore.WAVLTree;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * FingerSearchBenchmark
+ * <p>
+ * A clustered workload: every key is at most maxStep keys away from the previous one (a random walk over the loaded
+ * keys). Compares WAVLFinger, which starts every search from the node of the previous one, against searching from the
+ * root. Besides the time, the nodeVisits counter reports the nodes each search visits (climbing and going down).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+@State(Scope.Thread)
+public class FingerSearchBenchmark {
+
+    private static final String INFO = "info";
+
+    @Param({"1000000", "10000000"})
+    public int size;
+
+    @Param({"1", "16", "1024"})
+    public int maxStep;
+
+    private WAVLTree tree;
+    private WAVLFinger finger;
+    private WAVLFinger rootFinger;
+    private int[] walk;
+    private int probe;
+    private boolean inserted;
+
+    @Setup(Level.Trial)
+    public void load() {
+        int[] keys = new int[size];
+        String[] info = new String[size];
+        for (int i = 0; i < size; i++) {
+            keys[i] = 2 * i;
+            info[i] = INFO;
+        }
+        tree = WAVLTree.fromSorted(keys, info);
+        finger = tree.finger();
+        rootFinger = tree.finger();
+
+        Random random = new Random(42);
+        walk = new int[WAVLTreeBenchmark.PROBES];
+        int position = size / 2;
+        for (int i = 0; i < walk.length; i++) {
+            position = Math.floorMod(position + random.nextInt(2 * maxStep + 1) - maxStep, size);
+            walk[i] = 2 * position;
+        }
+    }
+
+    /**
+     * The nodes visited by the searches of one thread, reported per operation.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Visits {
+        public long nodeVisits;
+    }
+
+    private int nextKey() {
+        probe = (probe + 1) & (WAVLTreeBenchmark.PROBES - 1);
+        return walk[probe];
+    }
+
+    @Benchmark
+    public String fingerSearch(Visits visits) {
+        long before = finger.visits();
+        String info = finger.search(nextKey());
+        visits.nodeVisits += finger.visits() - before;
+        return info;
+    }
+
+    @Benchmark
+    public String rootSearch(Visits visits) {
+        long before = rootFinger.visits();
+        rootFinger.reset();
+        String info = rootFinger.search(nextKey());
+        visits.nodeVisits += rootFinger.visits() - before;
+        return info;
+    }
+
+    /**
+     * Inserts the absent key next to the walk key and deletes it on the next invocation, through the finger.
+     */
+    @Benchmark
+    public int fingerInsertDelete(Visits visits) {
+        long before = finger.visits();
+        int result;
+        if (inserted) {
+            result = finger.delete(walk[probe] + 1);
+        } else {
+            result = finger.insert(nextKey() + 1, INFO);
+        }
+        inserted = !inserted;
+        visits.nodeVisits += finger.visits() - before;
+        return result;
+    }
+
+    @Benchmark
+    public int rootInsertDelete(Visits visits) {
+        long before = rootFinger.visits();
+        rootFinger.reset();
+        int result;
+        if (inserted) {
+            result = rootFinger.delete(walk[probe] + 1);
+        } else {
+            result = rootFinger.insert(nextKey() + 1, INFO);
+        }
+        inserted = !inserted;
+        visits.nodeVisits += rootFinger.visits() - before;
+        return result;
+    }
+}
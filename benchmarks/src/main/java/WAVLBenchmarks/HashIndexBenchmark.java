@@ -0,0 +1,80 @@
+package WAVLBenchmarks;
+
+import WAVLCore.WAVLTree;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * HashIndexBenchmark
+ * <p>
+ * Point lookups and delete/insert pairs of random keys on WAVLTree with and without the hash index
+ * (-p hashIndex=true,false). The memory side of the tradeoff is printed by MemoryTests (run from Tester),
+ * -prof gc shows the allocations of the index while it grows.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms8g", "-Xmx8g"})
+@State(Scope.Thread)
+public class HashIndexBenchmark {
+
+    private static final String INFO = "info";
+
+    @Param({"100000", "10000000"})
+    public int size;
+
+    @Param({"false", "true"})
+    public boolean hashIndex;
+
+    private WAVLTree tree;
+    private int[] probeKeys;
+    private int probe;
+    private boolean deleted;
+
+    @Setup(Level.Trial)
+    public void load() {
+        tree = new WAVLTree();
+        for (int key : KeyDistribution.RANDOM.loadOrder(size)) {
+            tree.insert(key, INFO);
+        }
+        if (hashIndex) {
+            tree.enableHashIndex();
+        }
+        probeKeys = KeyDistribution.RANDOM.probeKeys(size, WAVLTreeBenchmark.PROBES);
+    }
+
+    @Benchmark
+    public String search() {
+        probe = (probe + 1) & (WAVLTreeBenchmark.PROBES - 1);
+        return tree.search(probeKeys[probe]);
+    }
+
+    /**
+     * Deletes a loaded key and inserts it back on the next invocation.
+     */
+    @Benchmark
+    public int deleteInsert() {
+        int result;
+        if (deleted) {
+            result = tree.insert(probeKeys[probe], INFO);
+        } else {
+            probe = (probe + 1) & (WAVLTreeBenchmark.PROBES - 1);
+            result = tree.delete(probeKeys[probe]);
+        }
+        deleted = !deleted;
+        return result;
+    }
+}
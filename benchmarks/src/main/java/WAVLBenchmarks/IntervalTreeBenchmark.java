@@ -0,0 +1,105 @@
+package WAVLBenchmarks;
+
+import WAVLCore.WAVLIntervalTree;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * IntervalTreeBenchmark
+ * <p>
+ * Stabbing and window queries on size time intervals with lengths up to maxLength, spread over 100 * size time
+ * units. Compares WAVLIntervalTree against scanning the arrays of starts and ends.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+@State(Scope.Thread)
+public class IntervalTreeBenchmark {
+
+    private static final int WINDOW = 1000;
+
+    @Param({"10000", "1000000"})
+    public int size;
+
+    @Param({"100", "10000"})
+    public int maxLength;
+
+    private WAVLIntervalTree tree;
+    private int[] starts;
+    private int[] ends;
+    private int[] probes;
+    private int probe;
+
+    @Setup(Level.Trial)
+    public void load() {
+        tree = new WAVLIntervalTree();
+        starts = new int[size];
+        ends = new int[size];
+        Random random = new Random(42);
+        for (int i = 0; i < size; i++) {
+            starts[i] = random.nextInt(100 * size);
+            ends[i] = starts[i] + random.nextInt(maxLength);
+            tree.insert(starts[i], ends[i], "info");
+        }
+
+        probes = new int[WAVLTreeBenchmark.PROBES];
+        for (int i = 0; i < probes.length; i++) {
+            probes[i] = random.nextInt(100 * size);
+        }
+    }
+
+    private int nextProbe() {
+        probe = (probe + 1) & (WAVLTreeBenchmark.PROBES - 1);
+        return probes[probe];
+    }
+
+    @Benchmark
+    public int treeStab(Blackhole blackhole) {
+        int t = nextProbe();
+        return tree.overlapping(t, t, blackhole::consume);
+    }
+
+    @Benchmark
+    public int scanStab(Blackhole blackhole) {
+        return scan(nextProbe(), 0, blackhole);
+    }
+
+    @Benchmark
+    public int treeWindow(Blackhole blackhole) {
+        int lo = nextProbe();
+        return tree.overlapping(lo, lo + WINDOW, blackhole::consume);
+    }
+
+    @Benchmark
+    public int scanWindow(Blackhole blackhole) {
+        return scan(nextProbe(), WINDOW, blackhole);
+    }
+
+    private int scan(int lo, int window, Blackhole blackhole) {
+        int hi = lo + window;
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            if (starts[i] <= hi && ends[i] >= lo) {
+                blackhole.consume(i);
+                count++;
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,192 @@
+package WAVLBenchmarks;
+
+import java.util.Random;
+
+/**
+ * KeyDistribution
+ * <p>
+ * The key orders used by the benchmarks.
+ * A tree of size n is always loaded with the even keys 0, 2, ..., 2(n-1), the distribution decides
+ * the order they are inserted in and the order the loaded keys are probed in.
+ * Odd keys are never in a loaded tree, so they are used as keys to insert and delete.
+ */
+public enum KeyDistribution {
+
+    /**
+     * Uniformly shuffled insertions and probes.
+     */
+    RANDOM,
+
+    /**
+     * Increasing insertions and probes.
+     */
+    SEQUENTIAL,
+
+    /**
+     * Decreasing insertions and probes.
+     */
+    REVERSE,
+
+    /**
+     * Shuffled insertions, probes follow a zipfian distribution (a few keys are hit most of the time).
+     */
+    ZIPFIAN;
+
+    private static final long SEED = 42;
+
+    /**
+     * The zipfian skew, the YCSB default.
+     */
+    private static final double ZIPF_THETA = 0.99;
+
+    /**
+     * @return the n loaded keys in insertion order
+     */
+    public int[] loadOrder(int n) {
+        int[] keys = new int[n];
+        for (int i = 0; i < n; i++) {
+            keys[i] = 2 * i;
+        }
+
+        switch (this) {
+            case SEQUENTIAL:
+                break;
+            case REVERSE:
+                reverse(keys);
+                break;
+            default:
+                shuffle(keys, new Random(SEED));
+        }
+        return keys;
+    }
+
+    /**
+     * @return count positions in 0..n-1, in probe order
+     */
+    public int[] probePositions(int n, int count) {
+        int[] positions = new int[count];
+        Random random = new Random(SEED + 1);
+
+        switch (this) {
+            case SEQUENTIAL:
+                for (int i = 0; i < count; i++) {
+                    positions[i] = i % n;
+                }
+                break;
+            case REVERSE:
+                for (int i = 0; i < count; i++) {
+                    positions[i] = n - 1 - (i % n);
+                }
+                break;
+            case ZIPFIAN:
+                ZipfGenerator zipf = new ZipfGenerator(n, ZIPF_THETA);
+                // Scatter the hot positions over the key space instead of clustering them at the start:
+                int[] scatter = new int[n];
+                for (int i = 0; i < n; i++) {
+                    scatter[i] = i;
+                }
+                shuffle(scatter, new Random(SEED + 2));
+                for (int i = 0; i < count; i++) {
+                    positions[i] = scatter[zipf.next(random)];
+                }
+                break;
+            default:
+                for (int i = 0; i < count; i++) {
+                    positions[i] = random.nextInt(n);
+                }
+        }
+        return positions;
+    }
+
+    /**
+     * @return count loaded keys (2 * position), in probe order
+     */
+    public int[] probeKeys(int n, int count) {
+        int[] keys = probePositions(n, count);
+        for (int i = 0; i < count; i++) {
+            keys[i] *= 2;
+        }
+        return keys;
+    }
+
+    /**
+     * @return count distinct keys that are not loaded (odd keys), in probe order
+     */
+    public int[] absentKeys(int n, int count) {
+        int[] keys = new int[count];
+        int[] positions = probePositions(n, count);
+        boolean[] used = new boolean[Math.max(n, count)];
+        int size = 0;
+        for (int i = 0; i < count && size < count; i++) {
+            if (!used[positions[i]]) {
+                used[positions[i]] = true;
+                keys[size++] = 2 * positions[i] + 1;
+            }
+        }
+        // Skewed probes repeat positions (and small trees have few gaps), complete the batch with unused ones:
+        for (int position = 0; size < count && position < used.length; position++) {
+            if (!used[position]) {
+                used[position] = true;
+                keys[size++] = 2 * position + 1;
+            }
+        }
+        return keys;
+    }
+
+    private static void shuffle(int[] array, Random random) {
+        for (int i = array.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int temp = array[i];
+            array[i] = array[j];
+            array[j] = temp;
+        }
+    }
+
+    private static void reverse(int[] array) {
+        for (int i = 0, j = array.length - 1; i < j; i++, j--) {
+            int temp = array[i];
+            array[i] = array[j];
+            array[j] = temp;
+        }
+    }
+
+    /**
+     * Zipfian positions in 0..n-1 (position 0 is the most popular), following Gray et al.
+     * "Quickly generating billion-record synthetic databases".
+     */
+    static final class ZipfGenerator {
+        private final int n;
+        private final double theta;
+        private final double alpha;
+        private final double zetaN;
+        private final double eta;
+
+        ZipfGenerator(int n, double theta) {
+            this.n = n;
+            this.theta = theta;
+            this.alpha = 1 / (1 - theta);
+            this.zetaN = zeta(n, theta);
+            this.eta = (1 - Math.pow(2.0 / n, 1 - theta)) / (1 - zeta(2, theta) / zetaN);
+        }
+
+        private static double zeta(int n, double theta) {
+            double sum = 0;
+            for (int i = 1; i <= n; i++) {
+                sum += 1 / Math.pow(i, theta);
+            }
+            return sum;
+        }
+
+        int next(Random random) {
+            double u = random.nextDouble();
+            double uz = u * zetaN;
+            if (uz < 1) {
+                return 0;
+            }
+            if (uz < 1 + Math.pow(0.5, theta)) {
+                return Math.min(1, n - 1);
+            }
+            return Math.min(n - 1, (int) (n * Math.pow(eta * u - eta + 1, alpha)));
+        }
+    }
+}
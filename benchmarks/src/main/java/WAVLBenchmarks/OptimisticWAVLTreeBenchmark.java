@@ -0,0 +1,140 @@
+package WAVLBenchmarks;
+
+import WAVLCore.ConcurrentWAVLTree;
+import WAVLCore.OptimisticWAVLTree;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * OptimisticWAVLTreeBenchmark
+ * <p>
+ * A mixed workload on a shared map: every thread searches readPercent of the time, and otherwise inserts or deletes
+ * a random key of the loaded range, where every other key is loaded
+ * (so about half the writes succeed and the size stays the same).
+ * Compares OptimisticWAVLTree (per-node locks, no locks for readers) against ConcurrentSkipListMap and against the
+ * single write lock of ConcurrentWAVLTree. Runs on all the cores, use -t 1,2,4,... to see how it scales.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+@Threads(Threads.MAX)
+@State(Scope.Benchmark)
+public class OptimisticWAVLTreeBenchmark {
+
+    private static final String INFO = "info";
+
+    @Param({"1000", "1000000"})
+    public int size;
+
+    @Param({"50", "90"})
+    public int readPercent;
+
+    private OptimisticWAVLTree optimisticTree;
+    private ConcurrentSkipListMap<Integer, String> skipList;
+    private ConcurrentWAVLTree stampedTree;
+
+    @Setup(Level.Trial)
+    public void load() {
+        optimisticTree = new OptimisticWAVLTree();
+        skipList = new ConcurrentSkipListMap<>();
+        stampedTree = new ConcurrentWAVLTree();
+        for (int key : KeyDistribution.RANDOM.loadOrder(size)) {
+            optimisticTree.insert(key, INFO);
+            skipList.put(key, INFO);
+            stampedTree.insert(key, INFO);
+        }
+    }
+
+    /**
+     * The operations of one thread: a key and whether to search, insert or delete it.
+     */
+    @State(Scope.Thread)
+    public static class Operations {
+        private static final int SEARCH = 0;
+        private static final int INSERT = 1;
+        private static final int DELETE = 2;
+
+        private int[] keys;
+        private int[] kinds;
+        private int probe;
+
+        @Setup(Level.Trial)
+        public void generate(OptimisticWAVLTreeBenchmark benchmark) {
+            Random random = new Random(Thread.currentThread().getId());
+            keys = new int[WAVLTreeBenchmark.PROBES];
+            kinds = new int[WAVLTreeBenchmark.PROBES];
+            for (int i = 0; i < keys.length; i++) {
+                keys[i] = random.nextInt(2 * benchmark.size);
+                if (random.nextInt(100) < benchmark.readPercent) {
+                    kinds[i] = SEARCH;
+                } else {
+                    kinds[i] = random.nextBoolean() ? INSERT : DELETE;
+                }
+            }
+        }
+
+        int next() {
+            probe = (probe + 1) & (WAVLTreeBenchmark.PROBES - 1);
+            return probe;
+        }
+    }
+
+    @Benchmark
+    public Object optimistic(Operations operations) {
+        int probe = operations.next();
+        int key = operations.keys[probe];
+        switch (operations.kinds[probe]) {
+            case Operations.SEARCH:
+                return optimisticTree.search(key);
+            case Operations.INSERT:
+                return optimisticTree.insert(key, INFO);
+            default:
+                return optimisticTree.delete(key);
+        }
+    }
+
+    @Benchmark
+    public Object skipList(Operations operations) {
+        int probe = operations.next();
+        int key = operations.keys[probe];
+        switch (operations.kinds[probe]) {
+            case Operations.SEARCH:
+                return skipList.get(key);
+            case Operations.INSERT:
+                return skipList.putIfAbsent(key, INFO);
+            default:
+                return skipList.remove(key);
+        }
+    }
+
+    @Benchmark
+    public Object stamped(Operations operations) {
+        int probe = operations.next();
+        int key = operations.keys[probe];
+        switch (operations.kinds[probe]) {
+            case Operations.SEARCH:
+                return stampedTree.search(key);
+            case Operations.INSERT:
+                return stampedTree.insert(key, INFO);
+            default:
+                return stampedTree.delete(key);
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package WAVLBenchmarks;
+
+import WAVLCore.WAVLTree;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * RelaxedBalanceBenchmark
+ * <p>
+ * The latency distribution (p99, p999 in the sample mode output) of sustained random writes on a tree of size keys:
+ * every invocation inserts a key that is not loaded and deletes the key inserted PROBES / 2 invocations before.
+ * steps = -1 rebalances eagerly, otherwise the tree is in the relaxed balance with steps marked nodes fixed by every
+ * delete (WAVLTree.enableRelaxedBalance). The height of the tree and the marked nodes left are printed after every
+ * iteration.
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms8g", "-Xmx8g"})
+@State(Scope.Thread)
+public class RelaxedBalanceBenchmark {
+
+    private static final String INFO = "info";
+
+    @Param({"1000000", "10000000"})
+    public int size;
+
+    @Param({"-1", "1", "2", "4"})
+    public int steps;
+
+    private WAVLTree tree;
+    private int[] absentKeys;
+    private int probe;
+
+    @Setup(Level.Trial)
+    public void load() {
+        tree = new WAVLTree();
+        for (int key : KeyDistribution.RANDOM.loadOrder(size)) {
+            tree.insert(key, INFO);
+        }
+        if (steps >= 0) {
+            tree.enableRelaxedBalance(steps);
+        }
+        absentKeys = KeyDistribution.RANDOM.absentKeys(size, WAVLTreeBenchmark.PROBES);
+    }
+
+    @Benchmark
+    public int insertAndDelete() {
+        probe = (probe + 1) & (WAVLTreeBenchmark.PROBES - 1);
+        tree.insert(absentKeys[probe], INFO);
+        return tree.delete(absentKeys[(probe + WAVLTreeBenchmark.PROBES / 2) & (WAVLTreeBenchmark.PROBES - 1)]);
+    }
+
+    @TearDown(Level.Iteration)
+    public void printDepth() {
+        System.out.println("height " + tree.height() + ", marked nodes " + tree.pendingRebalances());
+    }
+}
@@ -0,0 +1,83 @@
+package WAVLBenchmarks;
+
+import WAVLCore.WAVLTree;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * SequentialIngestBenchmark
+ * <p>
+ * Time to ingest size increasing keys (timestamps) into an empty tree, one shot per iteration.
+ * Every key above the largest key is appended to WAVLTree without a search from the root; with latePerMillion > 0
+ * that many keys per million arrive late (below the largest key), which ends the run of appends and fixes the
+ * subtree sizes of the right spine. TreeMap ingests the same keys as the baseline.
+ * The 100M-key runs need a machine with more than 16GB of memory.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = {"-Xms24g", "-Xmx24g"})
+@State(Scope.Thread)
+public class SequentialIngestBenchmark {
+
+    private static final String INFO = "info";
+
+    @Param({"10000000", "100000000"})
+    public int size;
+
+    @Param({"0", "1000"})
+    public int latePerMillion;
+
+    private int[] keys;
+
+    @Setup(Level.Trial)
+    public void generate() {
+        keys = new int[size];
+        Random random = new Random(42);
+        for (int i = 0; i < size; i++) {
+            keys[i] = 2 * i;
+        }
+        // A late key is swapped with a key a little later in the stream
+        for (int i = 0; i < size - 64; i++) {
+            if (random.nextInt(1000000) < latePerMillion) {
+                int j = i + 1 + random.nextInt(64);
+                int key = keys[i];
+                keys[i] = keys[j];
+                keys[j] = key;
+            }
+        }
+    }
+
+    @Benchmark
+    public WAVLTree wavlTree() {
+        WAVLTree tree = new WAVLTree();
+        for (int key : keys) {
+            tree.insert(key, INFO);
+        }
+        return tree;
+    }
+
+    @Benchmark
+    public TreeMap<Integer, String> treeMap() {
+        TreeMap<Integer, String> map = new TreeMap<>();
+        for (int key : keys) {
+            map.put(key, INFO);
+        }
+        return map;
+    }
+}
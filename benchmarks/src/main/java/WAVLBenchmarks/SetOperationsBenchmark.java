@@ -0,0 +1,147 @@
+package WAVLBenchmarks;
+
+import WAVLCore.WAVLSetOperations;
+import WAVLCore.WAVLTree;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * SetOperationsBenchmark
+ * <p>
+ * Merges a delta tree of size / deltaRatio keys into a base tree of size keys.
+ * The split/join set operations run on the common pool and on a single thread pool (to separate the work bound
+ * from the scaling), the insert/search/delete loops over the delta keys are the sequential approach.
+ * The set operations consume their inputs, so both trees are rebuilt before every invocation (outside the measured time).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(value = 1, jvmArgsAppend = {"-Xms16g", "-Xmx16g"})
+@State(Scope.Thread)
+public class SetOperationsBenchmark {
+
+    private static final String INFO = "info";
+
+    @Param({"1000000", "10000000"})
+    public int size;
+
+    /**
+     * size / deltaRatio keys in the delta, about half of them in the base.
+     */
+    @Param({"1", "100", "10000"})
+    public int deltaRatio;
+
+    private int[] baseKeys;
+    private String[] baseInfo;
+    private int[] deltaKeys;
+    private String[] deltaInfo;
+    private ForkJoinPool singleThread;
+
+    private WAVLTree base;
+    private WAVLTree delta;
+
+    @Setup(Level.Trial)
+    public void generate() {
+        baseKeys = new int[size];
+        for (int i = 0; i < size; i++) {
+            baseKeys[i] = 2 * i;
+        }
+        baseInfo = new String[size];
+        Arrays.fill(baseInfo, INFO);
+
+        // Distinct keys in 0..2*size-1, even ones are in the base and odd ones are not:
+        int deltaSize = Math.max(1, size / deltaRatio);
+        Random random = new Random(42);
+        deltaKeys = random.ints(0, 2 * size).distinct().limit(deltaSize).sorted().toArray();
+        deltaInfo = new String[deltaKeys.length];
+        Arrays.fill(deltaInfo, INFO);
+
+        singleThread = new ForkJoinPool(1);
+    }
+
+    @TearDown(Level.Trial)
+    public void shutdown() {
+        singleThread.shutdown();
+    }
+
+    @Setup(Level.Invocation)
+    public void build() {
+        base = WAVLTree.fromSorted(baseKeys, baseInfo);
+        delta = WAVLTree.fromSorted(deltaKeys, deltaInfo);
+    }
+
+    @Benchmark
+    public WAVLTree union() {
+        return WAVLSetOperations.union(base, delta);
+    }
+
+    @Benchmark
+    public WAVLTree unionSingleThread() {
+        return WAVLSetOperations.union(base, delta, singleThread);
+    }
+
+    @Benchmark
+    public WAVLTree unionByInsert() {
+        for (int key : delta.keysToArray()) {
+            base.insert(key, INFO);
+        }
+        return base;
+    }
+
+    @Benchmark
+    public WAVLTree intersection() {
+        return WAVLSetOperations.intersection(base, delta);
+    }
+
+    @Benchmark
+    public WAVLTree intersectionSingleThread() {
+        return WAVLSetOperations.intersection(base, delta, singleThread);
+    }
+
+    @Benchmark
+    public WAVLTree intersectionBySearch() {
+        WAVLTree result = new WAVLTree();
+        for (int key : delta.keysToArray()) {
+            String info = base.search(key);
+            if (info != null) {
+                result.insert(key, info);
+            }
+        }
+        return result;
+    }
+
+    @Benchmark
+    public WAVLTree difference() {
+        return WAVLSetOperations.difference(base, delta);
+    }
+
+    @Benchmark
+    public WAVLTree differenceSingleThread() {
+        return WAVLSetOperations.difference(base, delta, singleThread);
+    }
+
+    @Benchmark
+    public WAVLTree differenceByDelete() {
+        for (int key : delta.keysToArray()) {
+            base.delete(key);
+        }
+        return base;
+    }
+}
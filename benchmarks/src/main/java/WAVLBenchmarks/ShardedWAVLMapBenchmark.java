@@ -0,0 +1,99 @@
+package WAVLBenchmarks;
+
+import WAVLCore.ConcurrentWAVLTree;
+import WAVLCore.ShardedWAVLMap;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ShardedWAVLMapBenchmark
+ * <p>
+ * Write throughput of ShardedWAVLMap against the single write lock of ConcurrentWAVLTree, with all the threads
+ * inserting and deleting keys in the given distribution (ZIPFIAN is the skewed one).
+ * Runs on all the cores, use -t 1,2,4,... to see how it scales.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+@Threads(Threads.MAX)
+@State(Scope.Benchmark)
+public class ShardedWAVLMapBenchmark {
+
+    private static final String INFO = "info";
+
+    @Param({"1000000"})
+    public int size;
+
+    @Param({"RANDOM", "ZIPFIAN"})
+    public KeyDistribution distribution;
+
+    private ShardedWAVLMap shardedMap;
+    private ConcurrentWAVLTree singleLockTree;
+
+    @Setup(Level.Trial)
+    public void load() {
+        shardedMap = new ShardedWAVLMap();
+        singleLockTree = new ConcurrentWAVLTree();
+        for (int key : distribution.loadOrder(size)) {
+            shardedMap.insert(key, INFO);
+            singleLockTree.insert(key, INFO);
+        }
+    }
+
+    /**
+     * The keys one thread inserts and then deletes (odd keys, which are not loaded), so the size of the map stays
+     * about the same. With a skewed distribution the threads keep writing to the same few key ranges.
+     */
+    @State(Scope.Thread)
+    public static class Writes {
+        private int[] keys;
+        private int probe;
+        private boolean inserted;
+
+        @Setup(Level.Trial)
+        public void generate(ShardedWAVLMapBenchmark benchmark) {
+            keys = benchmark.distribution.probePositions(benchmark.size, WAVLTreeBenchmark.PROBES);
+            for (int i = 0; i < keys.length; i++) {
+                keys[i] = 2 * keys[i] + 1;
+            }
+            probe = (int) (Thread.currentThread().getId() * 7919) & (WAVLTreeBenchmark.PROBES - 1);
+        }
+    }
+
+    @Benchmark
+    public int sharded(Writes writes) {
+        if (writes.inserted) {
+            writes.inserted = false;
+            return shardedMap.delete(writes.keys[writes.probe]);
+        }
+        writes.probe = (writes.probe + 1) & (WAVLTreeBenchmark.PROBES - 1);
+        writes.inserted = true;
+        return shardedMap.insert(writes.keys[writes.probe], INFO);
+    }
+
+    @Benchmark
+    public int singleLock(Writes writes) {
+        if (writes.inserted) {
+            writes.inserted = false;
+            return singleLockTree.delete(writes.keys[writes.probe]);
+        }
+        writes.probe = (writes.probe + 1) & (WAVLTreeBenchmark.PROBES - 1);
+        writes.inserted = true;
+        return singleLockTree.insert(writes.keys[writes.probe], INFO);
+    }
+}
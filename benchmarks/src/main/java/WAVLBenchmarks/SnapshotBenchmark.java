@@ -0,0 +1,76 @@
+package WAVLBenchmarks;
+
+import WAVLCore.WAVLSnapshot;
+import WAVLCore.WAVLTree;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * SnapshotBenchmark
+ * <p>
+ * Time to save a tree of size random keys with WAVLSnapshot and to load it back, one shot per iteration.
+ * The 50M-key runs need a machine with more than 16GB of memory.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = {"-Xms24g", "-Xmx24g"})
+@State(Scope.Thread)
+public class SnapshotBenchmark {
+
+    @Param({"10000000", "50000000"})
+    public int size;
+
+    private WAVLTree tree;
+    private Path file;
+
+    @Setup(Level.Trial)
+    public void load() throws IOException {
+        int[] keys = new int[size];
+        String[] info = new String[size];
+        Random random = new Random(42);
+        int key = 0;
+        for (int i = 0; i < size; i++) {
+            key += 1 + random.nextInt(64);
+            keys[i] = key;
+            info[i] = "info";
+        }
+        tree = WAVLTree.fromSorted(keys, info);
+        file = Files.createTempFile("wavl", ".snapshot");
+        WAVLSnapshot.save(tree, file);
+    }
+
+    @TearDown(Level.Trial)
+    public void delete() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public Path save() throws IOException {
+        WAVLSnapshot.save(tree, file);
+        return file;
+    }
+
+    @Benchmark
+    public WAVLTree restore() throws IOException {
+        return WAVLSnapshot.load(file);
+    }
+}
@@ -0,0 +1,148 @@
+package WAVLBenchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * TreeMapBenchmark
+ * <p>
+ * The java.util.TreeMap baseline for WAVLTreeBenchmark, same loads, probes and batches.
+ * TreeMap has no select, so there is no select benchmark here.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms16g", "-Xmx16g"})
+@State(Scope.Thread)
+public class TreeMapBenchmark {
+
+    private static final String INFO = "info";
+
+    @Param({"1000", "100000", "10000000", "100000000"})
+    public int size;
+
+    @Param({"RANDOM", "SEQUENTIAL", "REVERSE", "ZIPFIAN"})
+    public KeyDistribution distribution;
+
+    private TreeMap<Integer, String> map;
+    private int[] probeKeys;
+    private int[] batchKeys;
+    private boolean batchInserted;
+    private int probe;
+
+    @Setup(Level.Trial)
+    public void load() {
+        map = new TreeMap<>();
+        for (int key : distribution.loadOrder(size)) {
+            map.put(key, INFO);
+        }
+
+        probeKeys = distribution.probeKeys(size, WAVLTreeBenchmark.PROBES);
+        batchKeys = distribution.absentKeys(size, WAVLTreeBenchmark.BATCH);
+    }
+
+    public void removeBatch() {
+        if (batchInserted) {
+            for (int key : batchKeys) {
+                map.remove(key);
+            }
+            batchInserted = false;
+        }
+    }
+
+    public void addBatch() {
+        if (!batchInserted) {
+            for (int key : batchKeys) {
+                map.put(key, INFO);
+            }
+            batchInserted = true;
+        }
+    }
+
+    private int nextProbe() {
+        probe = (probe + 1) & (WAVLTreeBenchmark.PROBES - 1);
+        return probe;
+    }
+
+    @State(Scope.Thread)
+    public static class InsertBatch {
+        @Setup(Level.Invocation)
+        public void reset(TreeMapBenchmark benchmark) {
+            benchmark.removeBatch();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class DeleteBatch {
+        @Setup(Level.Invocation)
+        public void reset(TreeMapBenchmark benchmark) {
+            benchmark.addBatch();
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(WAVLTreeBenchmark.BATCH)
+    public void insert(InsertBatch reset, Blackhole blackhole) {
+        for (int key : batchKeys) {
+            blackhole.consume(map.put(key, INFO));
+        }
+        batchInserted = true;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(WAVLTreeBenchmark.BATCH)
+    public void delete(DeleteBatch reset, Blackhole blackhole) {
+        for (int key : batchKeys) {
+            blackhole.consume(map.remove(key));
+        }
+        batchInserted = false;
+    }
+
+    @Benchmark
+    public String search() {
+        return map.get(probeKeys[nextProbe()]);
+    }
+
+    @Benchmark
+    public void minMax(Blackhole blackhole) {
+        blackhole.consume(map.firstEntry().getValue());
+        blackhole.consume(map.lastEntry().getValue());
+    }
+
+    @Benchmark
+    public int[] keysToArray() {
+        int[] keys = new int[map.size()];
+        int index = 0;
+        for (Integer key : map.keySet()) {
+            keys[index++] = key;
+        }
+        return keys;
+    }
+
+    @Benchmark
+    public String[] infoToArray() {
+        String[] info = new String[map.size()];
+        int index = 0;
+        for (Map.Entry<Integer, String> entry : map.entrySet()) {
+            info[index++] = entry.getValue();
+        }
+        return info;
+    }
+}
@@ -0,0 +1,203 @@
+package WAVLBenchmarks;
+
+import WAVLCore.WAVLTree;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * WAVLTreeBenchmark
+ * <p>
+ * Throughput of every WAVLTree operation on a tree loaded with size keys in the given distribution.
+ * TreeMapBenchmark runs the same operations on java.util.TreeMap as the baseline.
+ * Run with -prof gc to get the allocation rate of every operation next to the timings.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms16g", "-Xmx16g"})
+@State(Scope.Thread)
+public class WAVLTreeBenchmark {
+
+    /**
+     * Number of keys inserted/deleted per invocation of the insert and delete benchmarks.
+     */
+    static final int BATCH = 1024;
+
+    /**
+     * Number of precomputed probes, cycled by the point benchmarks.
+     */
+    static final int PROBES = 1 << 16;
+
+    private static final String INFO = "info";
+
+    private static final double[] PERCENTILES = new double[99];
+
+    static {
+        for (int i = 0; i < PERCENTILES.length; i++) {
+            PERCENTILES[i] = (i + 1) / 100.0;
+        }
+    }
+
+    @Param({"1000", "100000", "10000000", "100000000"})
+    public int size;
+
+    @Param({"RANDOM", "SEQUENTIAL", "REVERSE", "ZIPFIAN"})
+    public KeyDistribution distribution;
+
+    private WAVLTree tree;
+    private int[] probeKeys;
+    private int[] probeRanks;
+    private int[] batchKeys;
+    private boolean batchInserted;
+    private int probe;
+
+    @Setup(Level.Trial)
+    public void load() {
+        tree = new WAVLTree();
+        for (int key : distribution.loadOrder(size)) {
+            tree.insert(key, INFO);
+        }
+
+        probeKeys = distribution.probeKeys(size, PROBES);
+        probeRanks = distribution.probePositions(size, PROBES);
+        for (int i = 0; i < PROBES; i++) {
+            probeRanks[i]++; // select is 1-based
+        }
+        batchKeys = distribution.absentKeys(size, BATCH);
+    }
+
+    /**
+     * Brings the batch keys back to the state the insert benchmark expects (absent)
+     */
+    public void removeBatch() {
+        if (batchInserted) {
+            for (int key : batchKeys) {
+                tree.delete(key);
+            }
+            batchInserted = false;
+        }
+    }
+
+    /**
+     * Brings the batch keys back to the state the delete benchmark expects (present)
+     */
+    public void addBatch() {
+        if (!batchInserted) {
+            for (int key : batchKeys) {
+                tree.insert(key, INFO);
+            }
+            batchInserted = true;
+        }
+    }
+
+    private int nextProbe() {
+        probe = (probe + 1) & (PROBES - 1);
+        return probe;
+    }
+
+    /**
+     * Per-invocation state reset for the batch benchmarks, it runs outside the measured time.
+     */
+    @State(Scope.Thread)
+    public static class InsertBatch {
+        @Setup(Level.Invocation)
+        public void reset(WAVLTreeBenchmark benchmark) {
+            benchmark.removeBatch();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class DeleteBatch {
+        @Setup(Level.Invocation)
+        public void reset(WAVLTreeBenchmark benchmark) {
+            benchmark.addBatch();
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public int insert(InsertBatch reset) {
+        int rebalances = 0;
+        for (int key : batchKeys) {
+            rebalances += tree.insert(key, INFO);
+        }
+        batchInserted = true;
+        return rebalances;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public int delete(DeleteBatch reset) {
+        int rebalances = 0;
+        for (int key : batchKeys) {
+            rebalances += tree.delete(key);
+        }
+        batchInserted = false;
+        return rebalances;
+    }
+
+    @Benchmark
+    public String search() {
+        return tree.search(probeKeys[nextProbe()]);
+    }
+
+    @Benchmark
+    public String select() {
+        return tree.select(probeRanks[nextProbe()]);
+    }
+
+    @Benchmark
+    public int rank() {
+        return tree.rank(probeKeys[nextProbe()]);
+    }
+
+    /**
+     * The 99 percentiles, selected together
+     */
+    @Benchmark
+    @OperationsPerInvocation(99)
+    public int[] percentiles() {
+        return tree.quantiles(PERCENTILES);
+    }
+
+    @Benchmark
+    public void minMax(Blackhole blackhole) {
+        blackhole.consume(tree.min());
+        blackhole.consume(tree.max());
+    }
+
+    @Benchmark
+    public int[] keysToArray() {
+        return tree.keysToArray();
+    }
+
+    @Benchmark
+    public String[] infoToArray() {
+        return tree.infoToArray();
+    }
+
+    @Benchmark
+    public long keyStreamSum() {
+        return tree.keyStream().asLongStream().sum();
+    }
+
+    @Benchmark
+    public long parallelKeyStreamSum() {
+        return tree.keyStream().parallel().asLongStream().sum();
+    }
+}
@@ -0,0 +1,82 @@
+package WAVLBenchmarks;
+
+import WAVLCore.WAVLCursor;
+import WAVLCore.WAVLMonoid;
+import WAVLCore.WAVLTree;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * WindowSumBenchmark
+ * <p>
+ * The sum of the keys in a window of window keys at a random position, by WAVLTree.aggregate on a tree augmented with
+ * WAVLMonoid.sum against a scan of the window with a WAVLCursor.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+@State(Scope.Thread)
+public class WindowSumBenchmark {
+
+    @Param({"1000000"})
+    public int size;
+
+    @Param({"16", "1024", "65536"})
+    public int window;
+
+    private WAVLTree tree;
+    private WAVLCursor cursor;
+    private int[] starts;
+    private int probe;
+
+    @Setup(Level.Trial)
+    public void load() {
+        tree = new WAVLTree(WAVLMonoid.sum((key, info) -> key));
+        Random random = new Random(42);
+        for (int i = 0; i < size; i++) {
+            tree.insert(2 * random.nextInt(size), "info");
+        }
+        cursor = tree.cursor();
+
+        starts = new int[WAVLTreeBenchmark.PROBES];
+        for (int i = 0; i < starts.length; i++) {
+            starts[i] = random.nextInt(2 * size);
+        }
+    }
+
+    private int nextStart() {
+        probe = (probe + 1) & (WAVLTreeBenchmark.PROBES - 1);
+        return starts[probe];
+    }
+
+    @Benchmark
+    public long aggregate() {
+        int lo = nextStart();
+        return tree.aggregate(lo, lo + 2 * window - 1);
+    }
+
+    @Benchmark
+    public long scan() {
+        int lo = nextStart();
+        long sum = 0;
+        for (boolean found = cursor.seekRange(lo, lo + 2 * window - 1); found; found = cursor.next()) {
+            sum += cursor.key();
+        }
+        return sum;
+    }
+}
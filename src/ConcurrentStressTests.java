@@ -0,0 +1,474 @@
+import WAVLCore.ConcurrentWAVLTree;
+import WAVLCore.OptimisticWAVLTree;
+import WAVLCore.ShardedWAVLMap;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Stress tests for OptimisticWAVLTree, ConcurrentWAVLTree and ShardedWAVLMap. Every round runs the threads of all the
+ * checks at the same time on one map:
+ * <p>
+ * owned keys - every writer inserts, deletes and searches keys that only it writes, so its own TreeMap is a
+ * sequential model of them and every result of the map must match it (a linearizable map can not differ from
+ * the model on keys no other thread writes, however the other threads rebalance the nodes around them).
+ * <p>
+ * contended keys - all the writers insert and delete a few shared keys, so for every key the successful inserts
+ * and deletes must alternate: at the end, inserts minus deletes is 1 if the key is in the map and 0 if it is not.
+ * <p>
+ * stable keys - the smallest keys, loaded before the round and never deleted, which the readers must always find,
+ * and (where the map has select) always at the same index.
+ * <p>
+ * For ShardedWAVLMap a rebalancer thread also calls rebalance() during the round, so the shards are split and merged
+ * under the writers and readers, and the stable keys start in two shards so select goes across shards.
+ * <p>
+ * At the end of a round the keys of the map must be exactly the keys of the models.
+ * Before the rounds the same maps are checked against a TreeMap on a single thread.
+ */
+public class ConcurrentStressTests {
+
+        private static final int WRITERS = 4;
+        private static final int READERS = 2;
+        private static final int OPERATIONS = 200000;
+        private static final int OWNED_KEYS = 4096;
+        private static final int CONTENDED_KEYS = 32;
+        private static final int STABLE_KEYS = 1024;
+
+        private static final int CONTENDED_BASE = 1 << 20;
+
+        /**
+         * The stable keys are spread over the negative keys, below all the other keys, so with 4 initial shards
+         * half of them are in the first shard and half in the second.
+         */
+        private static final int STABLE_STEP = 1 << 21;
+
+        private static final int SHARDS = 4;
+
+        /**
+         * ShardedWAVLMap.MAX_SHARD_SIZE, a shard of this size is split even when it is not hot.
+         */
+        private static final int MAX_SHARD_SIZE = 1 << 20;
+
+        private static final String[] MAPS = {"OptimisticWAVLTree", "ConcurrentWAVLTree", "ShardedWAVLMap"};
+
+        /**
+         * The operations of a map under test, insert and delete return 0 on success and -1 otherwise.
+         */
+        private abstract static class StressedMap {
+            abstract int insert(int k, String i);
+
+            abstract int delete(int k);
+
+            abstract String search(int k);
+
+            abstract int size();
+
+            abstract int[] keysToArray();
+
+            abstract String[] infoToArray();
+
+            boolean hasSelect() {
+                return false;
+            }
+
+            String select(int i) {
+                throw new UnsupportedOperationException();
+            }
+
+            /**
+             * Called in a loop by a thread of its own while the writers run.
+             *
+             * @return false if the map has nothing to run in the background
+             */
+            boolean background() {
+                return false;
+            }
+
+            /**
+             * returns a failure of the map specific checks at the end of a round, or null
+             */
+            String check() {
+                return null;
+            }
+        }
+
+        private static StressedMap optimistic() {
+            OptimisticWAVLTree tree = new OptimisticWAVLTree();
+            return new StressedMap() {
+                int insert(int k, String i) { return tree.insert(k, i); }
+                int delete(int k) { return tree.delete(k); }
+                String search(int k) { return tree.search(k); }
+                int size() { return tree.size(); }
+                int[] keysToArray() { return tree.keysToArray(); }
+                String[] infoToArray() { return tree.infoToArray(); }
+
+                @Override
+                String check() {
+                    // The rank of the root is its height, at most 1.45 log(n) for an AVL-balanced tree
+                    int size = tree.size();
+                    if (tree.rootRank() > 1.45 * Math.log(size + 2) / Math.log(2)) {
+                        return "the rank of the root is " + tree.rootRank() + " for " + size + " items";
+                    }
+                    return null;
+                }
+            };
+        }
+
+        private static StressedMap concurrent() {
+            ConcurrentWAVLTree tree = new ConcurrentWAVLTree();
+            return new StressedMap() {
+                int insert(int k, String i) { return tree.insert(k, i) < 0 ? -1 : 0; }
+                int delete(int k) { return tree.delete(k) < 0 ? -1 : 0; }
+                String search(int k) { return tree.search(k); }
+                int size() { return tree.size(); }
+                int[] keysToArray() { return tree.keysInRange(Integer.MIN_VALUE, Integer.MAX_VALUE); }
+                String[] infoToArray() { return tree.infoInRange(Integer.MIN_VALUE, Integer.MAX_VALUE); }
+                boolean hasSelect() { return true; }
+                String select(int i) { return tree.select(i); }
+            };
+        }
+
+        private static StressedMap sharded() {
+            ShardedWAVLMap map = new ShardedWAVLMap(SHARDS);
+            AtomicBoolean changed = new AtomicBoolean();
+            return new StressedMap() {
+                int insert(int k, String i) { return map.insert(k, i) < 0 ? -1 : 0; }
+                int delete(int k) { return map.delete(k) < 0 ? -1 : 0; }
+                String search(int k) { return map.search(k); }
+                int size() { return map.size(); }
+                int[] keysToArray() { return map.keysToArray(); }
+                String[] infoToArray() { return map.infoToArray(); }
+                boolean hasSelect() { return true; }
+                String select(int i) { return map.select(i); }
+
+                @Override
+                boolean background() {
+                    map.rebalance();
+                    if (map.shardCount() != SHARDS) {
+                        changed.set(true);
+                    }
+                    try {
+                        Thread.sleep(5); // Let the writers make some shards hot between the rebalances
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return false;
+                    }
+                    return true;
+                }
+
+                @Override
+                String check() {
+                    return changed.get() ? null : "the rebalances did not split or merge any shard";
+                }
+            };
+        }
+
+        private static StressedMap newMap(String name) {
+            switch (name) {
+                case "OptimisticWAVLTree":
+                    return optimistic();
+                case "ConcurrentWAVLTree":
+                    return concurrent();
+                case "ShardedWAVLMap":
+                    return sharded();
+                default:
+                    throw new IllegalArgumentException("No map named " + name);
+            }
+        }
+
+        public static void run() {
+            String failure = runSequential();
+            System.out.println("Single thread: " + (failure == null ? "OK" : "FAILED - " + failure));
+            for (int round = 1; round <= 5; round++) {
+                for (String name : MAPS) {
+                    failure = runRound(round, newMap(name));
+                    System.out.println(name + " round " + round + ": " + (failure == null ? "OK" : "FAILED - " + failure));
+                }
+            }
+        }
+
+        private static int stableKey(int index) {
+            return Integer.MIN_VALUE + index * STABLE_STEP;
+        }
+
+        private static String runRound(int round, StressedMap map) {
+            for (int i = 0; i < STABLE_KEYS; i++) {
+                map.insert(stableKey(i), "stable" + i);
+            }
+
+            AtomicReference<String> failure = new AtomicReference<>();
+            AtomicBoolean writing = new AtomicBoolean(true);
+            CountDownLatch start = new CountDownLatch(1);
+            List<TreeMap<Integer, String>> models = new ArrayList<>();
+            int[][] contendedCounts = new int[WRITERS][CONTENDED_KEYS];
+            List<Thread> threads = new ArrayList<>();
+
+            for (int w = 0; w < WRITERS; w++) {
+                int writer = w;
+                TreeMap<Integer, String> model = new TreeMap<>();
+                models.add(model);
+                Random random = new Random(round * 31 + writer);
+                threads.add(new Thread(() -> {
+                    await(start);
+                    for (int op = 0; op < OPERATIONS && failure.get() == null; op++) {
+                        if (random.nextInt(8) == 0) {
+                            int index = random.nextInt(CONTENDED_KEYS);
+                            if (random.nextBoolean()) {
+                                if (map.insert(CONTENDED_BASE + index, "contended") == 0) {
+                                    contendedCounts[writer][index]++;
+                                }
+                            } else if (map.delete(CONTENDED_BASE + index) == 0) {
+                                contendedCounts[writer][index]--;
+                            }
+                            continue;
+                        }
+
+                        int key = random.nextInt(OWNED_KEYS) * WRITERS + writer;
+                        String expected = model.get(key);
+                        String result;
+                        switch (random.nextInt(3)) {
+                            case 0:
+                                String info = "w" + writer + "op" + op;
+                                int inserted = map.insert(key, info);
+                                if (inserted != (expected == null ? 0 : -1)) {
+                                    failure.compareAndSet(null, "insert(" + key + ") returned " + inserted);
+                                }
+                                if (expected == null) {
+                                    model.put(key, info);
+                                }
+                                break;
+                            case 1:
+                                int deleted = map.delete(key);
+                                if (deleted != (expected == null ? -1 : 0)) {
+                                    failure.compareAndSet(null, "delete(" + key + ") returned " + deleted);
+                                }
+                                model.remove(key);
+                                break;
+                            default:
+                                result = map.search(key);
+                                if (expected == null ? result != null : !expected.equals(result)) {
+                                    failure.compareAndSet(null, "search(" + key + ") returned " + result
+                                            + " instead of " + expected);
+                                }
+                        }
+                    }
+                }));
+            }
+
+            for (int r = 0; r < READERS; r++) {
+                Random random = new Random(round * 37 + r);
+                threads.add(new Thread(() -> {
+                    await(start);
+                    while (writing.get() && failure.get() == null) {
+                        int index = random.nextInt(STABLE_KEYS);
+                        String result = map.search(stableKey(index));
+                        if (!("stable" + index).equals(result)) {
+                            failure.compareAndSet(null, "search(" + stableKey(index) + ") returned " + result);
+                        }
+                        if (map.hasSelect()) {
+                            result = map.select(index + 1);
+                            if (!("stable" + index).equals(result)) {
+                                failure.compareAndSet(null, "select(" + (index + 1) + ") returned " + result);
+                            }
+                        }
+                    }
+                }));
+            }
+
+            threads.add(new Thread(() -> {
+                await(start);
+                boolean working = true;
+                while (working && writing.get() && failure.get() == null) {
+                    working = map.background();
+                }
+            }));
+
+            for (Thread thread : threads) {
+                thread.start();
+            }
+            start.countDown();
+            try {
+                for (int w = 0; w < WRITERS; w++) {
+                    threads.get(w).join();
+                }
+                writing.set(false);
+                for (Thread thread : threads) {
+                    thread.join();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return "interrupted";
+            }
+            if (failure.get() != null) {
+                return failure.get();
+            }
+
+            TreeMap<Integer, String> expected = new TreeMap<>();
+            for (TreeMap<Integer, String> model : models) {
+                expected.putAll(model);
+            }
+            for (int index = 0; index < CONTENDED_KEYS; index++) {
+                int count = 0;
+                for (int w = 0; w < WRITERS; w++) {
+                    count += contendedCounts[w][index];
+                }
+                if (count != 0 && count != 1) {
+                    return "inserts minus deletes of " + (CONTENDED_BASE + index) + " is " + count;
+                }
+                if (count == 1) {
+                    expected.put(CONTENDED_BASE + index, "contended");
+                }
+            }
+            for (int i = 0; i < STABLE_KEYS; i++) {
+                expected.put(stableKey(i), "stable" + i);
+            }
+
+            String mismatch = compare(map, expected);
+            return mismatch != null ? mismatch : map.check();
+        }
+
+        /**
+         * returns the first difference between the items of map and expected, or null if they have the same items
+         */
+        private static String compare(StressedMap map, TreeMap<Integer, String> expected) {
+            int[] keys = map.keysToArray();
+            String[] info = map.infoToArray();
+            if (keys.length != expected.size() || info.length != expected.size() || map.size() != expected.size()) {
+                return "the map has " + keys.length + " keys and size " + map.size() + " instead of " + expected.size();
+            }
+            int index = 0;
+            for (Integer key : expected.keySet()) {
+                if (keys[index] != key || !expected.get(key).equals(info[index])) {
+                    return "item " + index + " is " + keys[index] + " instead of " + key;
+                }
+                if (map.hasSelect() && !expected.get(key).equals(map.select(index + 1))) {
+                    return "select(" + (index + 1) + ") returned " + map.select(index + 1);
+                }
+                index++;
+            }
+            if (map.hasSelect() && (map.select(0) != null || map.select(index + 1) != null)) {
+                return "select out of range returned an item";
+            }
+            return null;
+        }
+
+        /**
+         * Checks every map against a TreeMap on a single thread, and the split and merge of the shards of
+         * ShardedWAVLMap: a run of inserts into one shard makes it hot, rebalances without writes merge
+         * the cold shards, and steady writes that never make a shard hot split it once it is oversized.
+         */
+        private static String runSequential() {
+            Random random = new Random(7);
+            for (String name : MAPS) {
+                StressedMap map = newMap(name);
+                TreeMap<Integer, String> expected = new TreeMap<>();
+                for (int op = 0; op < OPERATIONS / 4; op++) {
+                    // Keys all over the int range, and a dense range in a single shard
+                    int key = random.nextBoolean() ? random.nextInt() : random.nextInt(OWNED_KEYS);
+                    boolean present = expected.containsKey(key);
+                    boolean failed;
+                    switch (random.nextInt(3)) {
+                        case 0:
+                            failed = map.insert(key, "i" + key) != (present ? -1 : 0);
+                            expected.putIfAbsent(key, "i" + key);
+                            break;
+                        case 1:
+                            failed = map.delete(key) != (present ? 0 : -1);
+                            expected.remove(key);
+                            break;
+                        default:
+                            String result = map.search(key);
+                            failed = present ? !expected.get(key).equals(result) : result != null;
+                    }
+                    if (failed) {
+                        return name + " differs from a TreeMap on key " + key;
+                    }
+                }
+                String mismatch = compare(map, expected);
+                if (mismatch != null) {
+                    return name + ": " + mismatch;
+                }
+            }
+
+            ShardedWAVLMap map = new ShardedWAVLMap(1); // A single shard, so no cold shard is merged before the split
+            TreeMap<Integer, String> expected = new TreeMap<>();
+            for (int key = 0; key < OPERATIONS / 4; key++) {
+                map.insert(key, "i" + key);
+                expected.put(key, "i" + key);
+            }
+            for (int i = 0; i < STABLE_KEYS; i++) {
+                map.insert(stableKey(i), "stable" + i);
+                expected.put(stableKey(i), "stable" + i);
+            }
+            int hot = map.shardCount();
+            if (hot == 1) {
+                return "the hot shard of ShardedWAVLMap was not split, there are " + hot + " shards";
+            }
+            String mismatch = compareSharded(map, expected);
+            if (mismatch != null) {
+                return "ShardedWAVLMap after the split: " + mismatch;
+            }
+            map.rebalance(); // The shards that took writes since the last rebalance are cold from the second one
+            map.rebalance();
+            if (map.shardCount() >= hot) {
+                return "the cold shards of ShardedWAVLMap were not merged, there are " + map.shardCount() + " shards";
+            }
+            mismatch = compareSharded(map, expected);
+            if (mismatch != null) {
+                return "ShardedWAVLMap after the merge: " + mismatch;
+            }
+
+            // Steady writes, with a rebalance before the shard gets hot, until the shard is oversized
+            map = new ShardedWAVLMap(1);
+            for (int key = 0; key <= MAX_SHARD_SIZE; key++) {
+                map.insert(key, "steady");
+                if (key % (OWNED_KEYS * 2) == 0) {
+                    map.rebalance();
+                }
+            }
+            if (map.shardCount() == 1) {
+                return "the oversized shard of ShardedWAVLMap was not split";
+            }
+            int[] keys = map.keysToArray();
+            if (map.size() != MAX_SHARD_SIZE + 1 || keys.length != MAX_SHARD_SIZE + 1 || keys[0] != 0
+                    || keys[MAX_SHARD_SIZE] != MAX_SHARD_SIZE) {
+                return "ShardedWAVLMap after the split of the oversized shard has " + map.size() + " items";
+            }
+            for (int i = 1; i <= MAX_SHARD_SIZE + 1; i += 1 + random.nextInt(1024)) {
+                if (!"steady".equals(map.select(i))) {
+                    return "select(" + i + ") returned " + map.select(i) + " after the split of the oversized shard";
+                }
+            }
+            return null;
+        }
+
+        private static String compareSharded(ShardedWAVLMap map, TreeMap<Integer, String> expected) {
+            if (map.size() != expected.size()
+                    || !Arrays.equals(map.keysToArray(), expected.keySet().stream().mapToInt(Integer::intValue).toArray())
+                    || !Arrays.equals(map.infoToArray(), expected.values().toArray())) {
+                return "the items differ from a TreeMap";
+            }
+            int index = 1;
+            for (String info : expected.values()) {
+                if (!info.equals(map.select(index))) {
+                    return "select(" + index + ") returned " + map.select(index);
+                }
+                index++;
+            }
+            return null;
+        }
+
+        private static void await(CountDownLatch latch) {
+            try {
+                latch.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+}
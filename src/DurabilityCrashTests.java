@@ -0,0 +1,226 @@
+import WAVLCore.DurableWAVLMap;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Crash injection tests for DurableWAVLMap. Every round starts a worker process that applies a seeded sequence of
+ * inserts and deletes to a map (with small sync batches and checkpoint intervals, so the kill can land in any of
+ * them) and prints the number of operations every time it synced. The worker is killed at a random moment, sometimes
+ * a torn record (random bytes) is appended to its log, and the directory is opened again:
+ * <p>
+ * the recovered map must be the result of a prefix of the sequence that holds all the operations synced before the
+ * kill, and it must keep working (changes after the recovery survive closing and opening it again).
+ */
+public class DurabilityCrashTests {
+
+    private static final int ROUNDS = 10;
+    private static final int OPERATIONS = 2000000;
+    private static final int KEYS = 2048;
+    private static final int SYNC_EVERY = 100;
+
+    public static void run() {
+        for (int round = 1; round <= ROUNDS; round++) {
+            String failure;
+            try {
+                failure = runRound(round);
+            } catch (IOException | InterruptedException e) {
+                failure = e.toString();
+            }
+            System.out.println("Round " + round + ": " + (failure == null ? "OK" : "FAILED - " + failure));
+        }
+    }
+
+    private static String runRound(int round) throws IOException, InterruptedException {
+        Path directory = Files.createTempDirectory("wavl-durable");
+        try {
+            return runRound(round, directory);
+        } finally {
+            deleteDirectory(directory);
+        }
+    }
+
+    private static String runRound(int round, Path directory) throws IOException, InterruptedException {
+        Random random = new Random(round);
+        long seed = random.nextLong();
+        int syncBatch = new int[]{1, 8, 64}[round % 3];
+        int checkpointInterval = 200 + random.nextInt(2000);
+
+        Process worker = new ProcessBuilder(Paths.get(System.getProperty("java.home"), "bin", "java").toString(),
+                "-cp", System.getProperty("java.class.path"), DurabilityCrashTests.class.getName(),
+                directory.toString(), Long.toString(seed), Integer.toString(syncBatch),
+                Integer.toString(checkpointInterval)).redirectError(ProcessBuilder.Redirect.INHERIT).start();
+        long killAfter = 200 + random.nextInt(1500);
+        AtomicBoolean killed = new AtomicBoolean();
+        Thread killer = new Thread(() -> {
+            try {
+                if (!worker.waitFor(killAfter, TimeUnit.MILLISECONDS)) {
+                    killed.set(true);
+                    worker.destroyForcibly();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        killer.start();
+
+        long durable = 0;
+        try (BufferedReader output = new BufferedReader(new InputStreamReader(worker.getInputStream()))) {
+            for (String line = output.readLine(); line != null; line = output.readLine()) {
+                durable = Long.parseLong(line);
+            }
+        } catch (IOException e) {
+            // Killing the worker closes its output under readLine, the last count read is still a lower bound
+            if (!killed.get()) {
+                throw e;
+            }
+        }
+        worker.waitFor();
+        killer.join();
+
+        if (random.nextBoolean()) {
+            appendTornRecord(directory, random);
+        }
+
+        try (DurableWAVLMap map = new DurableWAVLMap(directory, syncBatch, checkpointInterval)) {
+            String failure = checkPrefix(map, seed, durable);
+            if (failure == null) {
+                failure = checkReopen(map, directory, syncBatch, checkpointInterval);
+            }
+            return failure;
+        }
+    }
+
+    /**
+     * Checks that the map holds the items of some prefix of the operations of seed, of at least durable operations.
+     */
+    private static String checkPrefix(DurableWAVLMap map, long seed, long durable) {
+        int[] keys = map.keysToArray();
+        String[] info = map.infoToArray();
+        long hash = 0;
+        for (int i = 0; i < keys.length; i++) {
+            hash += hashOf(keys[i], info[i]);
+        }
+
+        TreeMap<Integer, String> model = new TreeMap<>();
+        long modelHash = 0;
+        Random random = new Random(seed);
+        for (int operation = 0; operation <= OPERATIONS; operation++) {
+            if (operation >= durable && model.size() == keys.length && modelHash == hash && matches(model, keys, info)) {
+                return null;
+            }
+            if (operation == OPERATIONS) {
+                break;
+            }
+            int key = random.nextInt(KEYS);
+            if (random.nextBoolean()) {
+                String value = "v" + operation;
+                if (model.putIfAbsent(key, value) == null) {
+                    modelHash += hashOf(key, value);
+                }
+            } else {
+                String removed = model.remove(key);
+                if (removed != null) {
+                    modelHash -= hashOf(key, removed);
+                }
+            }
+        }
+        return "the recovered " + keys.length + " items are not a prefix of at least " + durable + " operations";
+    }
+
+    private static boolean matches(TreeMap<Integer, String> model, int[] keys, String[] info) {
+        int i = 0;
+        for (Map.Entry<Integer, String> entry : model.entrySet()) {
+            if (entry.getKey() != keys[i] || !Objects.equals(entry.getValue(), info[i])) {
+                return false;
+            }
+            i++;
+        }
+        return true;
+    }
+
+    private static long hashOf(int key, String info) {
+        return key * 0x9E3779B97F4A7C15L + info.hashCode();
+    }
+
+    /**
+     * Checks that changes made after the recovery survive closing the map and opening it again.
+     */
+    private static String checkReopen(DurableWAVLMap map, Path directory, int syncBatch, int checkpointInterval)
+            throws IOException {
+        for (int key = KEYS; key < KEYS + 100; key++) {
+            map.insert(key, "after");
+        }
+        map.delete(KEYS);
+        int[] keys = map.keysToArray();
+        String[] info = map.infoToArray();
+        map.close();
+        try (DurableWAVLMap reopened = new DurableWAVLMap(directory, syncBatch, checkpointInterval)) {
+            if (!Arrays.equals(reopened.keysToArray(), keys) || !Arrays.equals(reopened.infoToArray(), info)) {
+                return "the changes after the recovery were lost";
+            }
+        }
+        return null;
+    }
+
+    private static void appendTornRecord(Path directory, Random random) throws IOException {
+        Path log = null;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "wal.*")) {
+            for (Path file : files) {
+                if (log == null || file.getFileName().toString().compareTo(log.getFileName().toString()) > 0) {
+                    log = file;
+                }
+            }
+        }
+        if (log != null) {
+            byte[] garbage = new byte[1 + random.nextInt(20)];
+            random.nextBytes(garbage);
+            Files.write(log, garbage, StandardOpenOption.APPEND);
+        }
+    }
+
+    private static void deleteDirectory(Path directory) throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(directory);
+    }
+
+    /**
+     * The worker: applies the operations of the seed and prints the number of operations after every sync.
+     */
+    public static void main(String[] args) throws IOException {
+        Path directory = Paths.get(args[0]);
+        Random random = new Random(Long.parseLong(args[1]));
+        try (DurableWAVLMap map = new DurableWAVLMap(directory, Integer.parseInt(args[2]), Integer.parseInt(args[3]))) {
+            for (int operation = 0; operation < OPERATIONS; operation++) {
+                int key = random.nextInt(KEYS);
+                if (random.nextBoolean()) {
+                    map.insert(key, "v" + operation);
+                } else {
+                    map.delete(key);
+                }
+                if ((operation + 1) % SYNC_EVERY == 0) {
+                    map.sync();
+                    System.out.println(operation + 1);
+                    System.out.flush();
+                }
+            }
+        }
+    }
+}
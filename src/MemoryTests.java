@@ -0,0 +1,60 @@
+import WAVLCore.WAVLArrayTree;
+import WAVLCore.WAVLTree;
+
+/**
+ * Compares the heap used per entry by the WAVLNode object layout (WAVLTree)
+ * and by the struct-of-arrays layout (WAVLArrayTree), and reports the cost of the hash index of WAVLTree.
+ * All entries share a single info string so only the tree structure is measured.
+ */
+public class MemoryTests {
+
+        private static final String INFO = "info";
+
+        private static long usedMemory() {
+            Runtime runtime = Runtime.getRuntime();
+            for (int i = 0; i < 3; i++) {
+                System.gc();
+                try {
+                    Thread.sleep(50);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return runtime.totalMemory() - runtime.freeMemory();
+        }
+
+        public static void run() {
+
+            for (int testIndex = 1; testIndex <= 5; testIndex++) {
+
+                int n = 200000 * testIndex;
+                System.out.println("Test index: " + testIndex + " (" + n + " entries)");
+
+                long before = usedMemory();
+                WAVLTree tree = new WAVLTree();
+                for (int i = 0; i < n; i++) {
+                    tree.insert(i * 7, INFO);
+                }
+                long objectBytes = usedMemory() - before;
+                System.out.println("WAVLTree:      " + (float) objectBytes / n + " bytes per entry, size " + tree.size());
+
+                before = usedMemory();
+                tree.enableHashIndex();
+                long indexBytes = usedMemory() - before;
+                System.out.println("Hash index:    " + (float) indexBytes / n + " bytes per entry on top of WAVLTree, size "
+                        + tree.size());
+                tree = null;
+
+                before = usedMemory();
+                WAVLArrayTree arrayTree = new WAVLArrayTree();
+                for (int i = 0; i < n; i++) {
+                    arrayTree.insert(i * 7, INFO);
+                }
+                long arrayBytes = usedMemory() - before;
+                System.out.println("WAVLArrayTree: " + (float) arrayBytes / n + " bytes per entry, size " + arrayTree.size());
+                arrayTree = null;
+
+                System.out.println("");
+            }
+        }
+}
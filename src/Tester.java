@@ -17,10 +17,28 @@ public class Tester {
         WAVLTree tree = new WAVLTree();
 
         boolean testClass = true; // Should we test the class functionality or the asymptotic performance
+        boolean testMemory = false; // Should we compare the memory per entry of the tree engines instead
+        boolean testConcurrency = false; // Should we stress test OptimisticWAVLTree with concurrent threads instead
+        boolean testDurability = false; // Should we kill DurableWAVLMap workers and check their recovery instead
 
         // WAVLTree Test:
 
-        if (testClass) {
+        if (testMemory) {
+
+            MemoryTests.run();
+
+        }
+        else if (testConcurrency) {
+
+            ConcurrentStressTests.run();
+
+        }
+        else if (testDurability) {
+
+            DurabilityCrashTests.run();
+
+        }
+        else if (testClass) {
 
             WAVLClassTester tester = new WAVLClassTester();
             try {
@@ -1,12 +1,42 @@
 /**
  * Created by Leon on 03/06/2017.
  */
+import java.io.IOException;
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.text.DecimalFormat;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Comparator;
 import java.util.Random;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+import WAVLCore.BufferedWAVLTree;
+import WAVLCore.Int2IntWAVLMap;
+import WAVLCore.Int2ObjectWAVLMap;
+import WAVLCore.Long2DoubleWAVLMap;
+import WAVLCore.Long2LongWAVLMap;
+import WAVLCore.Long2ObjectWAVLMap;
+import WAVLCore.PersistentWAVLTree;
+import WAVLCore.WAVLArrayTree;
+import WAVLCore.WAVLCursor;
+import WAVLCore.WAVLFinger;
+import WAVLCore.WAVLIntervalTree;
+import WAVLCore.WAVLMap;
+import WAVLCore.WAVLMonoid;
+import WAVLCore.WAVLOffHeapTree;
+import WAVLCore.WAVLSetOperations;
+import WAVLCore.WAVLSnapshot;
 import WAVLCore.WAVLTree;
 
 public class WAVLClassTester {
@@ -247,6 +277,1266 @@ public class WAVLClassTester {
         System.out.println("infoToArray & keysToArray methods work.");
 
     }
+    //Checks the WAVL invariants of the whole tree: rank differences, leaf ranks, subtree sizes, father links and key order
+    public boolean invariantsTest(WAVLTree tree){
+        if(tree.getRoot()==null)
+            return true;
+        if(tree.getRoot().getFather()!=null)
+            return false;
+        return invariantsTest(tree.getRoot(),Long.MIN_VALUE,Long.MAX_VALUE)>=0;
+    }
+
+    //Returns the subtree size of node, or -1 if an invariant is broken in its subtree
+    private int invariantsTest(WAVLTree.WAVLNode node,long lowerBound,long upperBound){
+        if(node==null)
+            return 0;
+        if(node.getKey()<=lowerBound||node.getKey()>=upperBound)
+            return -1;
+        int leftRank=node.getLeft()!=null?node.getLeft().getRank():-1;
+        int rightRank=node.getRight()!=null?node.getRight().getRank():-1;
+        int leftDiff=node.getRank()-leftRank;
+        int rightDiff=node.getRank()-rightRank;
+        if(leftDiff<1||leftDiff>2||rightDiff<1||rightDiff>2)
+            return -1;
+        if(node.getLeft()==null&&node.getRight()==null&&node.getRank()!=0)
+            return -1;
+        if((node.getLeft()!=null&&node.getLeft().getFather()!=node)||(node.getRight()!=null&&node.getRight().getFather()!=node))
+            return -1;
+        int leftSize=invariantsTest(node.getLeft(),lowerBound,node.getKey());
+        int rightSize=invariantsTest(node.getRight(),node.getKey(),upperBound);
+        if(leftSize<0||rightSize<0||leftSize+rightSize+1!=node.getSubtreeSize())
+            return -1;
+        return node.getSubtreeSize();
+    }
+
+    //Checks the same invariants for the trees on int handles (WAVLArrayTree, WAVLOffHeapTree, WAVLMap and the primitive maps).
+    //Their rebalancing is the second implementation in IndexedWAVLTree, which is package private, so it is read through reflection
+    public boolean indexedInvariantsTest(Object tree){
+        try{
+            Class<?> indexed=Class.forName("WAVLCore.IndexedWAVLTree");
+            Field root=indexed.getDeclaredField("root");
+            Method size=indexed.getMethod("size");
+            root.setAccessible(true);
+            size.setAccessible(true);
+            Method[] accessors=new Method[5]; // rank, subtree size, left, right, father
+            String[] names={"getRank","getSubtreeSize","getLeft","getRight","getFather"};
+            for(int i=0;i<names.length;i++){
+                accessors[i]=indexed.getDeclaredMethod(names[i],int.class);
+                accessors[i].setAccessible(true);
+            }
+            int node=root.getInt(tree);
+            if(node==-1)
+                return (Integer)size.invoke(tree)==0;
+            if((Integer)accessors[4].invoke(tree,node)!=-1)
+                return false;
+            return indexedInvariantsTest(tree,accessors,node)==(Integer)size.invoke(tree);
+        }catch(ReflectiveOperationException e){
+            System.err.println("Problem with reading the int handle tree: "+e);
+            return false;
+        }
+    }
+
+    //Returns the subtree size of node, or -1 if an invariant is broken in its subtree
+    private int indexedInvariantsTest(Object tree,Method[] accessors,int node) throws ReflectiveOperationException{
+        if(node==-1)
+            return 0;
+        int rank=(Integer)accessors[0].invoke(tree,node);
+        int left=(Integer)accessors[2].invoke(tree,node);
+        int right=(Integer)accessors[3].invoke(tree,node);
+        int leftDiff=rank-(left!=-1?(Integer)accessors[0].invoke(tree,left):-1);
+        int rightDiff=rank-(right!=-1?(Integer)accessors[0].invoke(tree,right):-1);
+        if(leftDiff<1||leftDiff>2||rightDiff<1||rightDiff>2)
+            return -1;
+        if(left==-1&&right==-1&&rank!=0)
+            return -1;
+        if((left!=-1&&(Integer)accessors[4].invoke(tree,left)!=node)||(right!=-1&&(Integer)accessors[4].invoke(tree,right)!=node))
+            return -1;
+        int leftSize=indexedInvariantsTest(tree,accessors,left);
+        int rightSize=indexedInvariantsTest(tree,accessors,right);
+        int subtreeSize=(Integer)accessors[1].invoke(tree,node);
+        if(leftSize<0||rightSize<0||leftSize+rightSize+1!=subtreeSize)
+            return -1;
+        return subtreeSize;
+    }
+
+    public void testFromSorted(){
+        int[] keys=new int[keysInTree.size()];
+        String[] info=new String[keysInTree.size()];
+        for(int i=0;i<keys.length;i++){
+            keys[i]=keysInTree.get(i);
+            info[i]=Integer.toString(keys[i]);
+        }
+        WAVLTree tree=WAVLTree.fromSorted(keys,info);
+        if(tree.size()!=keys.length||!invariantsTest(tree)){
+            System.err.println("Problem with fromSorted method! :/");
+            return;
+        }
+        int[] keysToArray=tree.keysToArray();
+        for(int i=0;i<keys.length;i++){
+            if(keysToArray[i]!=keys[i]||!tree.search(keys[i]).equals(info[i])){
+                System.err.println("Problem with fromSorted method! :/");
+                return;
+            }
+        }
+        System.out.println("fromSorted method works!");
+    }
+
+    public void testStreams(){
+        int[] sequential=generatedTree.keyStream().toArray();
+        int[] parallel=generatedTree.keyStream().parallel().toArray();
+        long sum=0;
+        for(int key:keysInTree)
+            sum+=key;
+        if(sequential.length!=keysInTree.size()||!Arrays.equals(sequential,parallel)
+                ||generatedTree.keyStream().parallel().asLongStream().sum()!=sum
+                ||generatedTree.keySpliterator().getExactSizeIfKnown()!=keysInTree.size()){
+            System.err.println("Problem with keyStream method! :/");
+            return;
+        }
+        for(int i=0;i<sequential.length;i++){
+            if(sequential[i]!=keysInTree.get(i)){
+                System.err.println("Problem with keyStream method! :/");
+                return;
+            }
+        }
+        List<Map.Entry<Integer,String>> entries=generatedTree.entryStream().parallel().collect(Collectors.toList());
+        if(entries.size()!=keysInTree.size()){
+            System.err.println("Problem with entryStream method! :/");
+            return;
+        }
+        for(int i=0;i<entries.size();i++){
+            if(!entries.get(i).getKey().equals(keysInTree.get(i))||!entries.get(i).getValue().equals(Integer.toString(keysInTree.get(i)))){
+                System.err.println("Problem with entryStream method! :/");
+                return;
+            }
+        }
+        System.out.println("keyStream & entryStream methods work!");
+    }
+
+    public void testJoinAndSplit(){
+        List<Integer> shuffled=new ArrayList<Integer>(keysInTree);
+        Random random=new Random(System.nanoTime());
+        Collections.shuffle(shuffled,random);
+        WAVLTree tree=new WAVLTree();
+        for(int key:shuffled)
+            tree.insert(key,Integer.toString(key));
+
+        int maxKey=keysInTree.get(keysInTree.size()-1);
+        for(int round=0;round<20;round++){
+            int k=random.nextInt(maxKey+2);
+            WAVLTree[] parts=tree.split(k);
+            if(!tree.empty()||!invariantsTest(parts[0])||!invariantsTest(parts[1])
+                    ||parts[0].size()+parts[1].size()!=keysInTree.size()){
+                System.err.println("Problem with split method! :/");
+                return;
+            }
+            int[] smaller=parts[0].keysToArray();
+            int[] rest=parts[1].keysToArray();
+            if((smaller.length>0&&smaller[smaller.length-1]>=k)||(rest.length>0&&rest[0]<k)){
+                System.err.println("Problem with split method! :/");
+                return;
+            }
+
+            // Join the parts back, around the smallest key of rest (or the largest key of smaller):
+            int middle=rest.length>0?rest[0]:smaller[smaller.length-1];
+            if(rest.length>0)
+                parts[1].delete(middle);
+            else
+                parts[0].delete(middle);
+            tree=WAVLTree.join(parts[0],middle,Integer.toString(middle),parts[1]);
+            if(!parts[0].empty()||!parts[1].empty()||!invariantsTest(tree)||tree.size()!=keysInTree.size()){
+                System.err.println("Problem with join method! :/");
+                return;
+            }
+        }
+
+        int[] keysToArray=tree.keysToArray();
+        for(int i=0;i<keysToArray.length;i++){
+            if(keysToArray[i]!=keysInTree.get(i)||!tree.search(keysToArray[i]).equals(Integer.toString(keysToArray[i]))){
+                System.err.println("Problem with join method! :/");
+                return;
+            }
+        }
+        try{
+            WAVLTree.join(tree,keysInTree.get(0),"",new WAVLTree());
+            System.err.println("Problem with join method, overlapping keys were accepted! :/");
+            return;
+        }catch(IllegalArgumentException e){
+            // Expected
+        }
+        System.out.println("join & split methods work!");
+    }
+
+    public void testSetOperations(){
+        Random random=new Random(System.nanoTime());
+        int maxKey=keysInTree.get(keysInTree.size()-1);
+        TreeSet<Integer> others=new TreeSet<Integer>();
+        int othersSize=random.nextInt(keysInTree.size())+1;
+        while(others.size()<othersSize)
+            others.add(random.nextInt(maxKey+2));
+
+        String[] operations={"union","intersection","difference"};
+        for(String operation:operations){
+            WAVLTree a=new WAVLTree();
+            for(int key:keysInTree)
+                a.insert(key,Integer.toString(key));
+            WAVLTree b=new WAVLTree();
+            for(int key:others)
+                b.insert(key,"b");
+
+            TreeSet<Integer> expected=new TreeSet<Integer>(keysInTree);
+            WAVLTree result;
+            if(operation.equals("union")){
+                expected.addAll(others);
+                result=WAVLSetOperations.union(a,b);
+            }else if(operation.equals("intersection")){
+                expected.retainAll(others);
+                result=WAVLSetOperations.intersection(a,b);
+            }else{
+                expected.removeAll(others);
+                result=WAVLSetOperations.difference(a,b);
+            }
+
+            if(!a.empty()||!b.empty()||!invariantsTest(result)||result.size()!=expected.size()){
+                System.err.println("Problem with "+operation+" method! :/");
+                return;
+            }
+            int[] keysToArray=result.keysToArray();
+            int i=0;
+            for(int key:expected){
+                String info=others.contains(key)&&!operation.equals("intersection")?"b":Integer.toString(key);
+                if(keysToArray[i++]!=key||!result.search(key).equals(info)){
+                    System.err.println("Problem with "+operation+" method! :/");
+                    return;
+                }
+            }
+        }
+        System.out.println("union & intersection & difference methods work!");
+    }
+
+    public void testCursor(){
+        WAVLCursor cursor=generatedTree.cursor();
+        int i=0;
+        for(boolean valid=cursor.seekFirst();valid;valid=cursor.next()){
+            if(i>=keysInTree.size()||cursor.key()!=keysInTree.get(i)||!cursor.value().equals(Integer.toString(cursor.key()))){
+                System.err.println("Problem with cursor next! :/");
+                return;
+            }
+            i++;
+        }
+        for(boolean valid=cursor.seekLast();valid;valid=cursor.prev()){
+            i--;
+            if(i<0||cursor.key()!=keysInTree.get(i)){
+                System.err.println("Problem with cursor prev! :/");
+                return;
+            }
+        }
+        if(i!=0){
+            System.err.println("Problem with cursor! :/");
+            return;
+        }
+
+        Random random=new Random(System.nanoTime());
+        int maxKey=keysInTree.get(keysInTree.size()-1);
+        for(int round=0;round<100;round++){
+            int lo=random.nextInt(maxKey+2);
+            int hi=lo+random.nextInt(maxKey/4+2);
+            int first=Collections.binarySearch(keysInTree,lo);
+            first=first<0?-first-1:first;
+            int last=first;
+            for(boolean valid=cursor.seekRange(lo,hi);valid;valid=cursor.next()){
+                if(cursor.key()!=keysInTree.get(last)){
+                    System.err.println("Problem with cursor range! :/");
+                    return;
+                }
+                last++;
+            }
+            if(last<keysInTree.size()&&keysInTree.get(last)<=hi){
+                System.err.println("Problem with cursor range! :/");
+                return;
+            }
+            if(cursor.seek(lo)!=(first<keysInTree.size())||(cursor.valid()&&cursor.key()!=keysInTree.get(first))){
+                System.err.println("Problem with cursor seek! :/");
+                return;
+            }
+        }
+        System.out.println("cursor works!");
+    }
+
+    public void testFinger(){
+        WAVLFinger finger=generatedTree.finger();
+        WAVLFinger rootFinger=generatedTree.finger();
+        for(int key:keysInTree){
+            rootFinger.reset();
+            if(!Integer.toString(key).equals(finger.search(key))||!Integer.toString(key).equals(rootFinger.search(key))
+                    ||finger.key()!=key){
+                System.err.println("Problem with finger search! :/");
+                return;
+            }
+        }
+        if(keysInTree.size()>100&&finger.visits()>=rootFinger.visits()){
+            System.err.println("Finger search in order visits "+finger.visits()+" nodes, search from the root "
+                    +rootFinger.visits()+" :/");
+            return;
+        }
+
+        // Clustered inserts and deletes on a copy of the tree:
+        int[] keys=new int[keysInTree.size()];
+        String[] info=new String[keys.length];
+        TreeMap<Integer,String> expected=new TreeMap<>();
+        for(int i=0;i<keys.length;i++){
+            keys[i]=keysInTree.get(i);
+            info[i]=Integer.toString(keys[i]);
+            expected.put(keys[i],info[i]);
+        }
+        WAVLTree tree=WAVLTree.fromSorted(keys,info);
+        finger=tree.finger();
+        Random random=new Random(System.nanoTime());
+        int key=keys[keys.length/2];
+        for(int i=0;i<4*keys.length;i++){
+            key+=random.nextInt(21)-10;
+            boolean exists=expected.containsKey(key);
+            switch(random.nextInt(3)){
+                case 0:
+                    if((finger.insert(key,"f"+key)>=0)==exists||finger.key()!=key){
+                        System.err.println("Problem with finger insert! :/");
+                        return;
+                    }
+                    expected.putIfAbsent(key,"f"+key);
+                    break;
+                case 1:
+                    if((finger.delete(key)>=0)!=exists){
+                        System.err.println("Problem with finger delete! :/");
+                        return;
+                    }
+                    expected.remove(key);
+                    break;
+                default:
+                    String found=finger.search(key);
+                    if(found==null?exists:!found.equals(expected.get(key))){
+                        System.err.println("Problem with finger search! :/");
+                        return;
+                    }
+            }
+            if(i%1000==0){
+                // Deleting around the finger (maybe its own node) without it must not break it
+                int other=key+random.nextInt(5)-2;
+                tree.delete(other);
+                expected.remove(other);
+            }
+        }
+        int[] expectedKeys=expected.keySet().stream().mapToInt(Integer::intValue).toArray();
+        if(!Arrays.equals(tree.keysToArray(),expectedKeys)||!invariantsTest(tree)){
+            System.err.println("Problem with finger insert and delete! :/");
+            return;
+        }
+        System.out.println("finger works!");
+    }
+
+    public void testAppend(){
+        int[] keys=new int[keysInTree.size()];
+        String[] info=new String[keys.length];
+        TreeMap<Integer,String> expected=new TreeMap<>();
+        for(int i=0;i<keys.length;i++){
+            keys[i]=keysInTree.get(i);
+            info[i]=Integer.toString(keys[i]);
+            expected.put(keys[i],info[i]);
+        }
+        WAVLTree tree=WAVLTree.fromSorted(keys,info);
+        Random random=new Random(System.nanoTime());
+        int key=keys[keys.length-1];
+        for(int run=0;run<20;run++){
+            // A sorted run of appends, then an operation that needs the subtree sizes
+            int length=random.nextInt(keys.length+1);
+            if(!expected.isEmpty()){
+                key=Math.max(key,expected.lastKey());
+            }
+            for(int i=0;i<length;i++){
+                key+=1+random.nextInt(3);
+                if(tree.insert(key,"a"+key)<0){
+                    System.err.println("Problem with append! :/");
+                    return;
+                }
+                expected.put(key,"a"+key);
+            }
+            if(tree.size()!=expected.size()){
+                System.err.println("Problem with size after appends! :/");
+                return;
+            }
+            int rank=expected.isEmpty()?0:1+random.nextInt(expected.size());
+            int other=keys[random.nextInt(keys.length)]+random.nextInt(3)-1;
+            switch(rank==0?1+random.nextInt(2):random.nextInt(3)){
+                case 0:
+                    if(!tree.select(rank).equals(expected.values().toArray()[rank-1])){
+                        System.err.println("Problem with select after appends! :/");
+                        return;
+                    }
+                    break;
+                case 1:
+                    if((tree.delete(other)>=0)!=expected.containsKey(other)){
+                        System.err.println("Problem with delete after appends! :/");
+                        return;
+                    }
+                    expected.remove(other);
+                    break;
+                default:
+                    if((tree.insert(other,"i"+other)>=0)==expected.containsKey(other)){
+                        System.err.println("Problem with insert after appends! :/");
+                        return;
+                    }
+                    expected.putIfAbsent(other,"i"+other);
+            }
+        }
+        int[] expectedKeys=expected.keySet().stream().mapToInt(Integer::intValue).toArray();
+        if(!Arrays.equals(tree.keysToArray(),expectedKeys)||!invariantsTest(tree)){
+            System.err.println("Problem with append! :/");
+            return;
+        }
+        System.out.println("append works!");
+    }
+
+    public void testAggregate(){
+        // A sum and a non commutative monoid (the last key of the range), kept through inserts, appends and deletes
+        WAVLMonoid last=WAVLMonoid.of(Long.MIN_VALUE,(key,info)->key,(x,y)->y==Long.MIN_VALUE?x:y);
+        WAVLTree sums=new WAVLTree(WAVLMonoid.sum((key,info)->key));
+        WAVLTree lasts=new WAVLTree(last);
+        TreeMap<Integer,String> expected=new TreeMap<>();
+        Random random=new Random(System.nanoTime());
+        List<Integer> keys=new ArrayList<>(keysInTree);
+        Collections.shuffle(keys,random);
+        int appended=keys.isEmpty()?0:Collections.max(keys);
+        for(int key:keys){
+            sums.insert(key,"");
+            lasts.insert(key,"");
+            expected.put(key,"");
+            if(random.nextInt(4)==0){
+                appended+=1+random.nextInt(3);
+                sums.insert(appended,"");
+                lasts.insert(appended,"");
+                expected.put(appended,"");
+            }
+            if(random.nextInt(3)==0){
+                int other=keys.get(random.nextInt(keys.size()));
+                sums.delete(other);
+                lasts.delete(other);
+                expected.remove(other);
+            }
+        }
+        int bound=appended+2;
+        for(int i=0;i<200;i++){
+            int lo=random.nextInt(bound)-1;
+            int hi=lo+random.nextInt(bound/(1+random.nextInt(100))+1);
+            NavigableMap<Integer,String> range=expected.subMap(lo,true,hi,true);
+            long sum=range.keySet().stream().mapToLong(Integer::longValue).sum();
+            long lastKey=range.isEmpty()?Long.MIN_VALUE:range.lastKey();
+            if(sums.aggregate(lo,hi)!=sum||lasts.aggregate(lo,hi)!=lastKey){
+                System.err.println("Problem with aggregate! :/");
+                return;
+            }
+        }
+        long total=expected.keySet().stream().mapToLong(Integer::longValue).sum();
+        if(sums.aggregate()!=total||!invariantsTest(sums)){
+            System.err.println("Problem with aggregate! :/");
+            return;
+        }
+
+        // The aggregates of the parts of a split and of their join
+        if(!expected.isEmpty()){
+            int k=keys.get(random.nextInt(keys.size()));
+            WAVLTree[] parts=sums.split(k);
+            long smaller=expected.headMap(k).keySet().stream().mapToLong(Integer::longValue).sum();
+            if(parts[0].aggregate()!=smaller||parts[1].aggregate()!=total-smaller){
+                System.err.println("Problem with aggregate after split! :/");
+                return;
+            }
+            WAVLTree joined=WAVLTree.join(new WAVLTree(),Integer.MIN_VALUE,"",parts[0]);
+            WAVLTree other=new WAVLTree(last);
+            other.insert(Integer.MAX_VALUE,"");
+            try{
+                WAVLTree.join(joined,Integer.MAX_VALUE-1,"",other);
+                System.err.println("Problem with join of different monoids! :/");
+                return;
+            }catch(IllegalArgumentException e){
+                // Expected
+            }
+            if(joined.aggregate()!=smaller+Integer.MIN_VALUE
+                    ||joined.aggregate(Integer.MIN_VALUE+1,k)!=smaller){
+                System.err.println("Problem with aggregate after join! :/");
+                return;
+            }
+        }
+        System.out.println("aggregate works!");
+    }
+
+    public void testOrderStatistics(){
+        int[] keys=keysInTree.stream().mapToInt(Integer::intValue).sorted().toArray();
+        String[] info=new String[keys.length];
+        for(int i=0;i<keys.length;i++){
+            info[i]=Integer.toString(keys[i]);
+        }
+        WAVLTree tree=WAVLTree.fromSorted(keys,info);
+        Random random=new Random(System.nanoTime());
+        if(tree.select(0)!=null||tree.select(keys.length+1)!=null){
+            System.err.println("Problem with select out of range! :/");
+            return;
+        }
+        for(int j=0;j<1000;j++){
+            int i=random.nextInt(keys.length);
+            int k=keys[i]+random.nextInt(3)-1;
+            int lo=random.nextInt(keys[keys.length-1]+2)-1;
+            int hi=lo+random.nextInt(keys[keys.length-1]+2)-1;
+            int below=Arrays.binarySearch(keys,k);
+            int rank=below>=0?below+1:-below-1;
+            int count=0;
+            for(int key:keys){
+                if(key>=lo&&key<=hi){
+                    count++;
+                }
+            }
+            if(!tree.select(i+1).equals(info[i])||tree.rank(k)!=rank||tree.rank(keys[i])!=i+1||tree.countInRange(lo,hi)!=count){
+                System.err.println("Problem with select, rank or countInRange! :/");
+                return;
+            }
+        }
+
+        double[] qs=new double[100];
+        for(int j=0;j<qs.length;j++){
+            qs[j]=random.nextInt(4)==0?random.nextInt(2):random.nextDouble();
+        }
+        int[] quantiles=tree.quantiles(qs);
+        for(int j=0;j<qs.length;j++){
+            int expected=keys[Math.max(1,(int) Math.ceil(qs[j]*keys.length))-1];
+            if(quantiles[j]!=expected||tree.quantile(qs[j])!=expected){
+                System.err.println("Problem with quantiles! :/");
+                return;
+            }
+        }
+
+        for(int m:new int[]{0,1,keys.length/2,keys.length,keys.length+5}){
+            int[] sample=tree.sampleUniform(m,random);
+            if(sample.length!=Math.min(m,keys.length)){
+                System.err.println("Problem with sampleUniform! :/");
+                return;
+            }
+            for(int j=0;j<sample.length;j++){
+                if(Arrays.binarySearch(keys,sample[j])<0||(j>0&&sample[j]<=sample[j-1])){
+                    System.err.println("Problem with sampleUniform! :/");
+                    return;
+                }
+            }
+        }
+        System.out.println("order statistics work!");
+    }
+
+    public void testHashIndex(){
+        WAVLTree tree=new WAVLTree();
+        TreeMap<Integer,String> expected=new TreeMap<>();
+        Random random=new Random(System.nanoTime());
+        int bound=2*keysInTree.size()+10;
+        for(int i=0;i<keysInTree.size()/2;i++){
+            int key=random.nextInt(bound);
+            tree.insert(key,"i"+key);
+            expected.putIfAbsent(key,"i"+key);
+        }
+        tree.enableHashIndex();
+        WAVLFinger finger=tree.finger();
+        for(int i=0;i<2*keysInTree.size();i++){
+            int key=random.nextInt(bound+10);
+            boolean present=expected.containsKey(key);
+            boolean failed;
+            switch(random.nextInt(5)){
+                case 0:
+                    failed=(tree.insert(key,"i"+key)<0)!=present;
+                    expected.putIfAbsent(key,"i"+key);
+                    break;
+                case 1:
+                    failed=(finger.insert(key,"f"+key)<0)!=present;
+                    expected.putIfAbsent(key,"f"+key);
+                    break;
+                case 2:
+                    failed=(tree.delete(key)<0)==present;
+                    expected.remove(key);
+                    break;
+                case 3:
+                    failed=(finger.delete(key)<0)==present;
+                    expected.remove(key);
+                    break;
+                default:
+                    String info=tree.search(key);
+                    failed=present?!expected.get(key).equals(info):info!=null;
+            }
+            if(failed){
+                System.err.println("Problem with the hash index! :/");
+                return;
+            }
+        }
+        for(Map.Entry<Integer,String> entry:expected.entrySet()){
+            if(!entry.getValue().equals(tree.search(entry.getKey()))){
+                System.err.println("Problem with the hash index! :/");
+                return;
+            }
+        }
+        int[] expectedKeys=expected.keySet().stream().mapToInt(Integer::intValue).toArray();
+        if(!Arrays.equals(tree.keysToArray(),expectedKeys)||!invariantsTest(tree)){
+            System.err.println("Problem with the hash index! :/");
+            return;
+        }
+
+        // The nodes moved by split leave the index of the tree empty
+        WAVLTree[] parts=tree.split(bound/2);
+        if(!tree.hasHashIndex()||tree.search(expectedKeys.length>0?expectedKeys[0]:0)!=null||parts[0].hasHashIndex()){
+            System.err.println("Problem with the hash index after split! :/");
+            return;
+        }
+        tree.insert(1,"after split");
+        if(!"after split".equals(tree.search(1))){
+            System.err.println("Problem with the hash index after split! :/");
+            return;
+        }
+        System.out.println("hash index works!");
+    }
+
+    public void testBatchLookups(){
+        Random random=new Random(System.nanoTime());
+        int bound=2*keysInTree.size()+10;
+        for(int round=0;round<2;round++){
+            WAVLTree tree=new WAVLTree();
+            TreeMap<Integer,String> expected=new TreeMap<>();
+            for(int key=0;key<bound;key+=1+random.nextInt(3)){ // Appends, some of them are still pending
+                tree.insert(key,"i"+key);
+                expected.put(key,"i"+key);
+            }
+            if(round==1){
+                tree.enableHashIndex();
+            }
+
+            // Random keys, then a clustered run, both with repeated keys and keys that are not in the tree
+            int[] keys=new int[keysInTree.size()+20];
+            int start=random.nextInt(bound);
+            for(int j=0;j<keys.length;j++){
+                keys[j]=j<keys.length/2?random.nextInt(bound+10)-5:start+random.nextInt(20);
+            }
+            String[] info=tree.searchAll(keys);
+            boolean all=true;
+            for(int j=0;j<keys.length;j++){
+                all&=expected.containsKey(keys[j]);
+                if(!Objects.equals(info[j],expected.get(keys[j]))){
+                    System.err.println("Problem with searchAll! :/");
+                    return;
+                }
+            }
+            int[] present=expected.keySet().stream().mapToInt(Integer::intValue).filter(key->random.nextBoolean()).toArray();
+            if(tree.containsAll(keys)!=all||!tree.containsAll(present)||!tree.containsAll(new int[0])){
+                System.err.println("Problem with containsAll! :/");
+                return;
+            }
+
+            int deleted=tree.deleteAll(keys);
+            int count=0;
+            for(int key:keys){
+                if(expected.remove(key)!=null){
+                    count++;
+                }
+            }
+            int[] expectedKeys=expected.keySet().stream().mapToInt(Integer::intValue).toArray();
+            if(deleted!=count||!Arrays.equals(tree.keysToArray(),expectedKeys)||tree.size()!=expectedKeys.length
+                    ||!invariantsTest(tree)){
+                System.err.println("Problem with deleteAll! :/");
+                return;
+            }
+            if(tree.deleteAll(expectedKeys)!=expectedKeys.length||!tree.empty()||tree.searchAll(keys)[0]!=null){
+                System.err.println("Problem with deleteAll! :/");
+                return;
+            }
+        }
+        System.out.println("batch lookups work!");
+    }
+
+    public void testInsertAll(){
+        Random random=new Random(System.nanoTime());
+        int bound=4*keysInTree.size()+10;
+        WAVLTree tree=new WAVLTree();
+        WAVLTree expected=new WAVLTree();
+        for(int round=0;round<4;round++){
+            // Random keys, a clustered run, repeated keys and keys already in the tree
+            int[] keys=new int[keysInTree.size()/2+10];
+            String[] info=new String[keys.length];
+            int start=random.nextInt(bound);
+            for(int j=0;j<keys.length;j++){
+                keys[j]=j%2==0?random.nextInt(bound):start+random.nextInt(keys.length);
+                info[j]="r"+round+"j"+j;
+            }
+            int inserted=0;
+            for(int j=0;j<keys.length;j++){
+                if(expected.insert(keys[j],info[j])>=0){
+                    inserted++;
+                }
+            }
+            if(tree.insertAll(keys,info)!=inserted||!Arrays.equals(tree.keysToArray(),expected.keysToArray())
+                    ||!Arrays.equals(tree.infoToArray(),expected.infoToArray())||tree.size()!=expected.size()
+                    ||!invariantsTest(tree)){
+                System.err.println("Problem with insertAll! :/");
+                return;
+            }
+        }
+        int[] sortedKeys=tree.keysToArray();
+        String[] sortedInfo=tree.infoToArray();
+        for(int i=1;i<=sortedKeys.length;i++){
+            if(tree.rank(sortedKeys[i-1])!=i||!sortedInfo[i-1].equals(tree.select(i))){
+                System.err.println("Problem with the subtree sizes after insertAll! :/");
+                return;
+            }
+        }
+        System.out.println("insertAll works!");
+    }
+
+    public void testRelaxedBalance(){
+        Random random=new Random(System.nanoTime());
+        int bound=2*keysInTree.size()+10;
+        WAVLTree tree=new WAVLTree();
+        TreeMap<Integer,String> expected=new TreeMap<>();
+        for(int key:keysInTree){
+            tree.insert(key,"i"+key);
+            expected.put(key,"i"+key);
+        }
+        tree.enableRelaxedBalance(random.nextInt(3));
+        for(int i=0;i<4*keysInTree.size();i++){
+            int key=random.nextInt(bound);
+            switch(random.nextInt(8)){
+                case 0:
+                case 1:
+                case 2:
+                    tree.insert(key,"i"+key);
+                    expected.putIfAbsent(key,"i"+key);
+                    break;
+                case 3:
+                    tree.rebalance(random.nextInt(4));
+                    break;
+                default:
+                    if((tree.delete(key)>=0)!=(expected.remove(key)!=null)){
+                        System.err.println("Problem with the relaxed balance! :/");
+                        return;
+                    }
+            }
+        }
+        int[] expectedKeys=expected.keySet().stream().mapToInt(Integer::intValue).toArray();
+        if(!Arrays.equals(tree.keysToArray(),expectedKeys)||tree.size()!=expectedKeys.length
+                ||(tree.getRoot()!=null&&tree.height()>tree.getRoot().getRank())){
+            System.err.println("Problem with the relaxed balance! :/");
+            return;
+        }
+        for(int i=1;i<=expectedKeys.length;i++){
+            if(tree.rank(expectedKeys[i-1])!=i){
+                System.err.println("Problem with the subtree sizes in the relaxed balance! :/");
+                return;
+            }
+        }
+        tree.disableRelaxedBalance();
+        if(tree.isRelaxedBalance()||tree.pendingRebalances()!=0||!invariantsTest(tree)
+                ||!Arrays.equals(tree.keysToArray(),expectedKeys)){
+            System.err.println("Problem with the rebalancing of the relaxed balance! :/");
+            return;
+        }
+        System.out.println("relaxed balance works!");
+    }
+
+    public void testRangeDeletion(){
+        Random random=new Random(System.nanoTime());
+        int bound=2*keysInTree.size()+10;
+        for(int round=0;round<2;round++){
+            WAVLTree tree=new WAVLTree();
+            TreeMap<Integer,String> expected=new TreeMap<>();
+            for(int key:keysInTree){
+                tree.insert(key,"i"+key);
+                expected.put(key,"i"+key);
+            }
+            if(round==1){
+                tree.enableHashIndex();
+            }
+            for(int i=0;i<8;i++){
+                int lo=random.nextInt(bound)-5;
+                int hi=lo+random.nextInt(bound/4+1);
+                int deleted;
+                NavigableMap<Integer,String> removed;
+                switch(i%4){
+                    case 0:
+                        deleted=tree.deleteRange(lo,hi);
+                        removed=expected.subMap(lo,true,hi,true);
+                        break;
+                    case 1:
+                        deleted=tree.deleteRange(hi,lo); // Empty range, unless lo == hi
+                        removed=lo==hi?expected.subMap(lo,true,hi,true):new TreeMap<Integer,String>();
+                        break;
+                    case 2:
+                        deleted=tree.evictBelow(lo);
+                        removed=expected.headMap(lo,false);
+                        break;
+                    default:
+                        deleted=tree.evictAbove(hi+bound/2);
+                        removed=expected.tailMap(hi+bound/2,false);
+                }
+                int count=removed.size();
+                removed.clear();
+                int[] expectedKeys=expected.keySet().stream().mapToInt(Integer::intValue).toArray();
+                if(deleted!=count||tree.size()!=expectedKeys.length||!Arrays.equals(tree.keysToArray(),expectedKeys)
+                        ||!invariantsTest(tree)||(expectedKeys.length>0&&tree.search(expectedKeys[0])==null)
+                        ||(i%4==0&&tree.search(lo)!=null)){
+                    System.err.println("Problem with deleteRange! :/");
+                    return;
+                }
+                tree.insert(lo,"again"); // The tree is still usable
+                expected.putIfAbsent(lo,"again");
+            }
+            if(tree.evictBelow(Integer.MIN_VALUE)!=0||tree.evictAbove(Integer.MAX_VALUE)!=0
+                    ||tree.deleteRange(Integer.MIN_VALUE,Integer.MAX_VALUE)!=expected.size()||!tree.empty()
+                    ||tree.deleteRange(0,1)!=0){
+                System.err.println("Problem with deleteRange! :/");
+                return;
+            }
+        }
+        System.out.println("range deletion works!");
+    }
+
+    public void testPersistent(){
+        Random random=new Random(System.nanoTime());
+        int bound=2*keysInTree.size()+10;
+        List<PersistentWAVLTree> versions=new ArrayList<>();
+        List<int[]> versionKeys=new ArrayList<>();
+        PersistentWAVLTree tree=PersistentWAVLTree.empty();
+        TreeMap<Integer,String> expected=new TreeMap<>();
+        for(int i=0;i<4*keysInTree.size();i++){
+            int key=random.nextInt(bound);
+            if(random.nextInt(3)>0){
+                PersistentWAVLTree next=tree.insert(key,"i"+key);
+                if((next==tree)!=expected.containsKey(key)){
+                    System.err.println("Problem with the persistent insert! :/");
+                    return;
+                }
+                tree=next;
+                expected.putIfAbsent(key,"i"+key);
+            }
+            else{
+                PersistentWAVLTree next=tree.delete(key);
+                if((next==tree)==expected.containsKey(key)){
+                    System.err.println("Problem with the persistent delete! :/");
+                    return;
+                }
+                tree=next;
+                expected.remove(key);
+            }
+            if(i%(keysInTree.size()/4+1)==0){ // Keep a version, it must not change with the later versions
+                versions.add(tree);
+                versionKeys.add(expected.keySet().stream().mapToInt(Integer::intValue).toArray());
+            }
+        }
+        versions.add(tree);
+        versionKeys.add(expected.keySet().stream().mapToInt(Integer::intValue).toArray());
+        for(int v=0;v<versions.size();v++){
+            PersistentWAVLTree version=versions.get(v);
+            int[] keys=versionKeys.get(v);
+            if(!Arrays.equals(version.keysToArray(),keys)||version.size()!=keys.length||version.isEmpty()!=(keys.length==0)
+                    ||version.select(0)!=null||version.select(keys.length+1)!=null){
+                System.err.println("Problem with the persistent versions! :/");
+                return;
+            }
+            for(int i=0;i<keys.length;i++){
+                if(!("i"+keys[i]).equals(version.select(i+1))||!("i"+keys[i]).equals(version.search(keys[i]))){
+                    System.err.println("Problem with select in the persistent versions! :/");
+                    return;
+                }
+            }
+        }
+        System.out.println("persistent tree works!");
+    }
+
+    public void testArrayTree(){
+        Random random=new Random(System.nanoTime());
+        int bound=2*keysInTree.size()+10;
+        WAVLArrayTree tree=new WAVLArrayTree();
+        TreeMap<Integer,String> expected=new TreeMap<>();
+        for(int i=0;i<6*keysInTree.size();i++){
+            int key=random.nextInt(bound);
+            boolean present=expected.containsKey(key);
+            boolean failed;
+            switch(random.nextInt(4)){
+                case 0:
+                case 1:
+                    failed=(tree.insert(key,"i"+key)<0)!=present;
+                    expected.putIfAbsent(key,"i"+key);
+                    break;
+                case 2:
+                    failed=(tree.delete(key)<0)==present;
+                    expected.remove(key);
+                    break;
+                default:
+                    failed=!Objects.equals(tree.search(key),expected.get(key));
+            }
+            if(failed||(i%keysInTree.size()==0&&!indexedInvariantsTest(tree))){
+                System.err.println("Problem with the array tree! :/");
+                return;
+            }
+        }
+        if(!sameItems(expected,tree.keysToArray(),tree.infoToArray(),tree.size())||tree.empty()!=expected.isEmpty()
+                ||!indexedInvariantsTest(tree)
+                ||!Objects.equals(tree.min(),expected.isEmpty()?null:expected.firstEntry().getValue())
+                ||!Objects.equals(tree.max(),expected.isEmpty()?null:expected.lastEntry().getValue())){
+            System.err.println("Problem with the array tree! :/");
+            return;
+        }
+        int i=1;
+        for(String info:expected.values()){
+            if(!info.equals(tree.select(i++))){
+                System.err.println("Problem with select in the array tree! :/");
+                return;
+            }
+        }
+        tree.clear();
+        if(!tree.empty()||tree.size()!=0||tree.insert(1,"after clear")!=0||!"after clear".equals(tree.search(1))){
+            System.err.println("Problem with clear in the array tree! :/");
+            return;
+        }
+        System.out.println("array tree works!");
+    }
+
+    public void testOffHeapTree(){
+        Random random=new Random(System.nanoTime());
+        int bound=2*keysInTree.size()+10;
+        WAVLOffHeapTree tree=new WAVLOffHeapTree();
+        TreeMap<Integer,String> expected=new TreeMap<>();
+        for(int i=0;i<6*keysInTree.size();i++){
+            int key=random.nextInt(bound);
+            String info=key%7==0?null:"\u00e9\u4e2d"+key; // null and multi-byte UTF-8 infos
+            boolean present=expected.containsKey(key);
+            boolean failed;
+            switch(random.nextInt(4)){
+                case 0:
+                case 1:
+                    failed=(tree.insert(key,info)<0)!=present;
+                    if(!present){
+                        expected.put(key,info);
+                    }
+                    break;
+                case 2:
+                    failed=(tree.delete(key)<0)==present;
+                    expected.remove(key);
+                    break;
+                default:
+                    failed=!Objects.equals(tree.search(key),expected.get(key));
+            }
+            if(failed||(i%keysInTree.size()==0&&!indexedInvariantsTest(tree))){
+                System.err.println("Problem with the off-heap tree! :/");
+                return;
+            }
+        }
+        if(!sameItems(expected,tree.keysToArray(),tree.infoToArray(),tree.size())||tree.empty()!=expected.isEmpty()
+                ||!indexedInvariantsTest(tree)
+                ||!Objects.equals(tree.min(),expected.isEmpty()?null:expected.firstEntry().getValue())
+                ||!Objects.equals(tree.max(),expected.isEmpty()?null:expected.lastEntry().getValue())){
+            System.err.println("Problem with the off-heap tree! :/");
+            return;
+        }
+        int i=1;
+        for(String info:expected.values()){
+            if(!Objects.equals(info,tree.select(i++))){
+                System.err.println("Problem with select in the off-heap tree! :/");
+                return;
+            }
+        }
+        tree.close();
+        tree.close(); // Closing a closed tree has no effect
+        try{
+            tree.search(0);
+            System.err.println("Problem with close in the off-heap tree! :/");
+            return;
+        }catch(IllegalStateException e){
+            // Expected, the tree was closed
+        }
+
+        // close and the arena compaction free their pages at once, not when the buffers are collected
+        long before=directMemoryUsed();
+        WAVLOffHeapTree large=new WAVLOffHeapTree();
+        char[] chars=new char[1000];
+        Arrays.fill(chars,'x');
+        String longInfo=new String(chars);
+        for(int key=0;key<4096;key++){
+            large.insert(key,longInfo); // About 4MB of arena
+        }
+        long filled=directMemoryUsed();
+        for(int key=0;key<3*4096/4;key++){
+            large.delete(key); // Most of the arena is garbage, so it is compacted
+        }
+        long compacted=directMemoryUsed();
+        boolean valid=indexedInvariantsTest(large);
+        large.close();
+        if(!valid){
+            System.err.println("Problem with the off-heap tree after the compaction! :/");
+            return;
+        }
+        if(filled-before<(4<<20)||filled-compacted<(2<<20)||directMemoryUsed()>before){
+            System.err.println("Problem with freeing the pages of the off-heap tree! :/");
+            return;
+        }
+        System.out.println("off-heap tree works!");
+    }
+
+    //Returns the bytes of the direct buffers in the JVM
+    public static long directMemoryUsed(){
+        for(BufferPoolMXBean pool:ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class)){
+            if(pool.getName().equals("direct")){
+                return pool.getMemoryUsed();
+            }
+        }
+        return 0;
+    }
+
+    public void testMaps(){
+        Random random=new Random(System.nanoTime());
+        int bound=2*keysInTree.size()+10;
+        // Every map gets the same operations, with keys and values derived from an int key,
+        // long keys are key<<32 so they keep the order of the int keys
+        WAVLMap<Integer,String> map=new WAVLMap<>(Comparator.reverseOrder());
+        Int2IntWAVLMap int2Int=new Int2IntWAVLMap(-1);
+        Int2ObjectWAVLMap<String> int2Object=new Int2ObjectWAVLMap<>();
+        Long2LongWAVLMap long2Long=new Long2LongWAVLMap(-1);
+        Long2ObjectWAVLMap<String> long2Object=new Long2ObjectWAVLMap<>();
+        Long2DoubleWAVLMap long2Double=new Long2DoubleWAVLMap(-1);
+        TreeMap<Integer,String> expected=new TreeMap<>();
+        for(int i=0;i<6*keysInTree.size();i++){
+            int key=random.nextInt(bound);
+            long longKey=(long) key<<32;
+            boolean present=expected.containsKey(key);
+            boolean failed;
+            switch(random.nextInt(4)){
+                case 0:
+                case 1:
+                    failed=(map.insert(key,"i"+key)<0)!=present|(int2Int.insert(key,3*key)<0)!=present
+                            |(int2Object.insert(key,"i"+key)<0)!=present|(long2Long.insert(longKey,longKey+1)<0)!=present
+                            |(long2Object.insert(longKey,"i"+key)<0)!=present|(long2Double.insert(longKey,key/2.0)<0)!=present;
+                    expected.putIfAbsent(key,"i"+key);
+                    break;
+                case 2:
+                    failed=(map.delete(key)<0)==present|(int2Int.delete(key)<0)==present|(int2Object.delete(key)<0)==present
+                            |(long2Long.delete(longKey)<0)==present|(long2Object.delete(longKey)<0)==present
+                            |(long2Double.delete(longKey)<0)==present;
+                    expected.remove(key);
+                    break;
+                default:
+                    String info=present?"i"+key:null;
+                    failed=!Objects.equals(map.search(key),info)||int2Int.search(key)!=(present?3*key:-1)
+                            ||!Objects.equals(int2Object.search(key),info)||long2Long.search(longKey)!=(present?longKey+1:-1)
+                            ||!Objects.equals(long2Object.search(longKey),info)||long2Double.search(longKey)!=(present?key/2.0:-1)
+                            ||map.contains(key)!=present||int2Int.contains(key)!=present||long2Double.contains(longKey)!=present;
+            }
+            if(failed||(i%keysInTree.size()==0&&!(indexedInvariantsTest(map)&&indexedInvariantsTest(int2Int)
+                    &&indexedInvariantsTest(int2Object)&&indexedInvariantsTest(long2Long)
+                    &&indexedInvariantsTest(long2Object)&&indexedInvariantsTest(long2Double)))){
+                System.err.println("Problem with the maps! :/");
+                return;
+            }
+        }
+        int[] keys=expected.keySet().stream().mapToInt(Integer::intValue).toArray();
+        long[] longKeys=Arrays.stream(keys).mapToLong(key->(long) key<<32).toArray();
+        Object[] reversedKeys=expected.descendingKeySet().toArray();
+        if(!Arrays.equals(map.keysToArray(),reversedKeys)||!Arrays.equals(int2Int.keysToArray(),keys)
+                ||!Arrays.equals(int2Object.keysToArray(),keys)||!Arrays.equals(long2Long.keysToArray(),longKeys)
+                ||!Arrays.equals(long2Object.keysToArray(),longKeys)||!Arrays.equals(long2Double.keysToArray(),longKeys)
+                ||!Arrays.equals(int2Object.valuesToArray(),expected.values().toArray())
+                ||!Arrays.equals(long2Double.valuesToArray(),Arrays.stream(keys).mapToDouble(key->key/2.0).toArray())
+                ||map.size()!=keys.length||long2Double.size()!=keys.length||!indexedInvariantsTest(map)
+                ||!indexedInvariantsTest(int2Int)||!indexedInvariantsTest(int2Object)||!indexedInvariantsTest(long2Long)
+                ||!indexedInvariantsTest(long2Object)||!indexedInvariantsTest(long2Double)){
+            System.err.println("Problem with the maps! :/");
+            return;
+        }
+        for(int i=1;i<=keys.length;i++){
+            int key=keys[i-1];
+            long longKey=longKeys[i-1];
+            if(!("i"+keys[keys.length-i]).equals(map.select(i))||int2Int.select(i)!=3*key
+                    ||!("i"+key).equals(int2Object.select(i))||long2Long.select(i)!=longKey+1
+                    ||!("i"+key).equals(long2Object.select(i))||long2Double.select(i)!=key/2.0){
+                System.err.println("Problem with select in the maps! :/");
+                return;
+            }
+        }
+        if(keys.length>0&&(map.minKey()!=keys[keys.length-1]||int2Int.maxKey()!=keys[keys.length-1]
+                ||long2Double.minKey()!=longKeys[0]||long2Object.maxKey()!=longKeys[keys.length-1])){
+            System.err.println("Problem with minKey or maxKey in the maps! :/");
+            return;
+        }
+        System.out.println("maps work!");
+    }
+
+    public void testIntervalTree(){
+        Random random=new Random(System.nanoTime());
+        int bound=2*keysInTree.size()+10;
+        WAVLIntervalTree tree=new WAVLIntervalTree();
+        // {start, end} of the intervals in the tree, in the order of the results: by start, then by decreasing end
+        TreeSet<int[]> expected=new TreeSet<>((a,b)->a[0]!=b[0]?Integer.compare(a[0],b[0]):Integer.compare(b[1],a[1]));
+        for(int i=0;i<4*keysInTree.size();i++){
+            // Short and long intervals, with many equal starts
+            int start=random.nextInt(bound);
+            int end=start+(random.nextInt(4)==0?random.nextInt(bound/4+1):random.nextInt(4));
+            boolean present=expected.contains(new int[]{start,end});
+            boolean failed;
+            if(random.nextInt(3)>0){
+                failed=(tree.insert(start,end,start+"-"+end)<0)!=present;
+                expected.add(new int[]{start,end});
+            }
+            else{
+                failed=(tree.delete(start,end)<0)==present;
+                expected.remove(new int[]{start,end});
+            }
+            if(failed||tree.size()!=expected.size()){
+                System.err.println("Problem with the interval tree! :/");
+                return;
+            }
+        }
+        for(int i=0;i<200;i++){
+            int lo=random.nextInt(bound+10)-5;
+            int hi=i%2==0?lo:lo+random.nextInt(bound/8+1);
+            List<WAVLIntervalTree.Interval> result=i%2==0?tree.stab(lo):tree.overlapping(lo,hi);
+            List<String> scan=new ArrayList<>();
+            for(int[] interval:expected){
+                if(interval[0]<=hi&&interval[1]>=lo){
+                    scan.add(interval[0]+"-"+interval[1]);
+                }
+            }
+            List<String> found=new ArrayList<>();
+            for(WAVLIntervalTree.Interval interval:result){
+                found.add(interval.getStart()+"-"+interval.getEnd());
+                if(!interval.getInfo().equals(interval.getStart()+"-"+interval.getEnd())){
+                    System.err.println("Problem with the info of the interval tree! :/");
+                    return;
+                }
+            }
+            if(!found.equals(scan)||tree.overlapping(lo,hi,interval->{})!=scan.size()){
+                System.err.println("Problem with overlapping or stab in the interval tree! :/");
+                return;
+            }
+        }
+        try{
+            tree.insert(1,0,"backwards");
+            System.err.println("Problem with the interval tree! :/");
+            return;
+        }catch(IllegalArgumentException e){
+            // Expected, the end is smaller than the start
+        }
+        System.out.println("interval tree works!");
+    }
+
+    public void testSnapshot(){
+        Random random=new Random(System.nanoTime());
+        Path path=null;
+        try{
+            path=Files.createTempFile("wavl-snapshot",".bin");
+            // An empty tree, then a tree with the extreme keys, null infos, repeated infos and multi-byte infos
+            WAVLTree tree=new WAVLTree();
+            for(int round=0;round<2;round++){
+                WAVLSnapshot.save(tree,path);
+                WAVLTree loaded=WAVLSnapshot.load(path);
+                if(!Arrays.equals(loaded.keysToArray(),tree.keysToArray())||!Arrays.equals(loaded.infoToArray(),tree.infoToArray())
+                        ||loaded.size()!=tree.size()||!invariantsTest(loaded)){
+                    System.err.println("Problem with the snapshot round trip! :/");
+                    return;
+                }
+                tree.insert(Integer.MIN_VALUE,"min");
+                tree.insert(Integer.MAX_VALUE,null);
+                for(int key:keysInTree){
+                    int kind=random.nextInt(4);
+                    tree.insert(key,kind==0?null:kind==1?"same":"\u00e9\u4e2d"+key);
+                }
+            }
+
+            byte[] bytes=Files.readAllBytes(path);
+            byte[] flipped=bytes.clone();
+            flipped[flipped.length/2]^=1;
+            byte[][] corrupted={flipped,Arrays.copyOf(bytes,bytes.length-3),Arrays.copyOf(bytes,bytes.length/2),
+                    Arrays.copyOf(bytes,4)};
+            for(byte[] file:corrupted){
+                Files.write(path,file);
+                try{
+                    WAVLSnapshot.load(path);
+                    System.err.println("Problem with the snapshot, a corrupted or truncated file was loaded! :/");
+                    return;
+                }catch(IOException e){
+                    // Expected, the file is corrupted or truncated
+                }
+            }
+        }catch(IOException e){
+            System.err.println("Problem with the snapshot: "+e+" :/");
+            return;
+        }finally{
+            try{
+                if(path!=null){
+                    Files.deleteIfExists(path);
+                }
+            }catch(IOException e){
+                // The temporary file is left behind
+            }
+        }
+        System.out.println("snapshot works!");
+    }
+
+    public void testBufferedTree(){
+        Random random=new Random(System.nanoTime());
+        int bound=2*keysInTree.size()+10;
+        BufferedWAVLTree tree=new BufferedWAVLTree(1+random.nextInt(64)); // Small, so the buffer fills up and flushes
+        TreeMap<Integer,String> expected=new TreeMap<>();
+        for(int i=0;i<6*keysInTree.size();i++){
+            int key=random.nextInt(bound);
+            switch(random.nextInt(6)){
+                case 0:
+                case 1:
+                    String info=random.nextInt(8)==0?null:"r"+i; // put also replaces the info of a key
+                    tree.put(key,info);
+                    expected.put(key,info);
+                    break;
+                case 2:
+                    tree.delete(key);
+                    expected.remove(key);
+                    break;
+                case 3:
+                    if(random.nextInt(64)==0){
+                        tree.flush();
+                        if(tree.buffered()!=0){
+                            System.err.println("Problem with flush in the buffered tree! :/");
+                            return;
+                        }
+                    }
+                    break;
+                default:
+                    // The writes are visible whether they are still in the buffer or already in the tree
+                    if(!Objects.equals(tree.search(key),expected.get(key))||tree.contains(key)!=expected.containsKey(key)){
+                        System.err.println("Problem with search or contains in the buffered tree! :/");
+                        return;
+                    }
+            }
+        }
+        int flushes=tree.flushes();
+        boolean pending=tree.buffered()>0;
+        if(!sameItems(expected,tree.keysToArray(),tree.infoToArray(),tree.size())||tree.buffered()!=0
+                ||tree.flushes()!=flushes+(pending?1:0)||!invariantsTest(tree.tree())
+                ||!Objects.equals(tree.min(),expected.isEmpty()?null:expected.firstEntry().getValue())
+                ||!Objects.equals(tree.max(),expected.isEmpty()?null:expected.lastEntry().getValue())){
+            System.err.println("Problem with the buffered tree after flush! :/");
+            return;
+        }
+        try{
+            new BufferedWAVLTree(0);
+            System.err.println("Problem with the capacity of the buffered tree! :/");
+            return;
+        }catch(IllegalArgumentException e){
+            // Expected, the capacity must be positive
+        }
+        System.out.println("buffered tree works!");
+    }
+
+    //Checks that keys and info hold the items of expected in key order, and that size is their number
+    public static boolean sameItems(TreeMap<Integer,String> expected,int[] keys,Object[] info,int size){
+        return size==expected.size()&&Arrays.equals(keys,expected.keySet().stream().mapToInt(Integer::intValue).toArray())
+                &&Arrays.equals(info,expected.values().toArray());
+    }
+
     public void printTree(){
         TreePrint printer=new TreePrint();
         printer.printNode(generatedTree.getRoot());
@@ -289,6 +1579,27 @@ public class WAVLClassTester {
         testExistanceOfElements();
         testKeysToArrayAndInfoToArray();
         testMinAndMax();
+        testFromSorted();
+        testCursor();
+        testFinger();
+        testAppend();
+        testAggregate();
+        testOrderStatistics();
+        testHashIndex();
+        testBatchLookups();
+        testInsertAll();
+        testRelaxedBalance();
+        testRangeDeletion();
+        testPersistent();
+        testArrayTree();
+        testOffHeapTree();
+        testMaps();
+        testIntervalTree();
+        testSnapshot();
+        testBufferedTree();
+        testStreams();
+        testJoinAndSplit();
+        testSetOperations();
         if(shuffle)
             treeDeleteShuffle();
         else
@@ -0,0 +1,239 @@
+package WAVLCore;
+
+import WAVLCore.WAVLTree.WAVLNode;
+
+import java.util.Arrays;
+
+/**
+ * BufferedWAVLTree
+ * <p>
+ * A WAVLTree with a write buffer in front of it, for bursts of writes.
+ * put and delete do not touch the tree: they record the last change of the key (its new item, or its deletion) in a
+ * small sorted buffer of primitive arrays. When the buffer is full it is merged into the tree as a batch, with
+ * WAVLTree.deleteAll for the deletions and WAVLTree.insertAll (replacing the info of the keys in the tree) for the
+ * items, which find all their keys together in one interleaved pass over the tree and fix the subtree sizes once per
+ * batch instead of once per item.
+ * <p>
+ * search and contains look at the buffer before the tree, so every write is visible as soon as it is made.
+ * The reads of the whole tree (size, keysToArray, min, ...) flush the buffer first.
+ */
+public class BufferedWAVLTree {
+
+    static final int DEFAULT_CAPACITY = 4096;
+
+    private final WAVLTree tree = new WAVLTree();
+
+    /**
+     * The buffered changes by increasing key, deleted[j] marks a deletion of keys[j] (its info is null).
+     */
+    private final int[] keys;
+    private final String[] info;
+    private final boolean[] deleted;
+    private int buffered;
+
+    private int flushes;
+
+    public BufferedWAVLTree() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * public BufferedWAVLTree(int capacity)
+     * <p>
+     * A tree whose buffer holds up to capacity changes.
+     * @throws IllegalArgumentException if capacity is not positive
+     */
+    public BufferedWAVLTree(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("The capacity must be positive, got " + capacity);
+        }
+        keys = new int[capacity];
+        info = new String[capacity];
+        deleted = new boolean[capacity];
+    }
+
+    /**
+     * public String search(int k)
+     * <p>
+     * returns the info of the item with key k if it exists, otherwise returns null
+     *
+     * Complexity O(log(b) + log(n)), where b is the size of the buffer and n the number of nodes in the tree
+     */
+    public String search(int k) {
+        int j = Arrays.binarySearch(keys, 0, buffered, k);
+        if (j >= 0) {
+            return info[j];
+        }
+        return tree.search(k);
+    }
+
+    /**
+     * public boolean contains(int k)
+     * <p>
+     * returns true if and only if there is an item with key k (also when its info is null)
+     *
+     * Complexity O(log(b) + log(n)), where b is the size of the buffer and n the number of nodes in the tree
+     */
+    public boolean contains(int k) {
+        int j = Arrays.binarySearch(keys, 0, buffered, k);
+        if (j >= 0) {
+            return !deleted[j];
+        }
+        WAVLNode node = tree.searchNode(k);
+        return node != null && node.getKey() == k;
+    }
+
+    /**
+     * public void put(int k, String i)
+     * <p>
+     * sets the item of key k to (k, i), inserting it or replacing the info of the item with key k.
+     *
+     * Complexity O(b) for the buffer (it shifts the larger keys), where b is the size of the buffer,
+     * plus the merge of the buffer when it is full (see flush)
+     */
+    public void put(int k, String i) {
+        write(k, i, false);
+    }
+
+    /**
+     * public void delete(int k)
+     * <p>
+     * deletes the item with key k if it exists.
+     *
+     * Complexity the same as put
+     */
+    public void delete(int k) {
+        write(k, null, true);
+    }
+
+    private void write(int k, String i, boolean deletion) {
+        int j = Arrays.binarySearch(keys, 0, buffered, k);
+        if (j < 0) {
+            if (buffered == keys.length) {
+                flush();
+            }
+            j = -Arrays.binarySearch(keys, 0, buffered, k) - 1;
+            System.arraycopy(keys, j, keys, j + 1, buffered - j);
+            System.arraycopy(info, j, info, j + 1, buffered - j);
+            System.arraycopy(deleted, j, deleted, j + 1, buffered - j);
+            keys[j] = k;
+            buffered++;
+        }
+        info[j] = i;
+        deleted[j] = deletion;
+    }
+
+    /**
+     * public void flush()
+     * <p>
+     * Merges the buffered changes into the tree and empties the buffer: deletes the buffered deletions from the tree
+     * (deleteAll), then inserts the buffered items or replaces the info of their keys (insertAll).
+     *
+     * Complexity O(b log(n/b + 1)) plus the rebalancing, where b is the number of buffered changes and n the number
+     * of nodes in the tree
+     */
+    public void flush() {
+        if (buffered == 0) {
+            return;
+        }
+        int deletions = 0;
+        for (int j = 0; j < buffered; j++) {
+            if (deleted[j]) {
+                deletions++;
+            }
+        }
+        int[] deletedKeys = new int[deletions];
+        int[] itemKeys = new int[buffered - deletions];
+        String[] itemInfo = new String[buffered - deletions];
+        int d = 0;
+        int a = 0;
+        for (int j = 0; j < buffered; j++) {
+            if (deleted[j]) {
+                deletedKeys[d++] = keys[j];
+            } else {
+                itemKeys[a] = keys[j];
+                itemInfo[a++] = info[j];
+            }
+        }
+
+        tree.deleteAll(deletedKeys);
+        tree.insertAll(itemKeys, itemInfo, true);
+        Arrays.fill(info, 0, buffered, null);
+        buffered = 0;
+        flushes++;
+    }
+
+    /**
+     * @return the number of changes in the buffer
+     * Complexity O(1)
+     */
+    public int buffered() {
+        return buffered;
+    }
+
+    /**
+     * @return the number of times the buffer was merged into the tree
+     * Complexity O(1)
+     */
+    public int flushes() {
+        return flushes;
+    }
+
+    /**
+     * Flushes the buffer and returns the number of items.
+     */
+    public int size() {
+        flush();
+        return tree.size();
+    }
+
+    /**
+     * Flushes the buffer and returns true if and only if there are no items.
+     */
+    public boolean empty() {
+        flush();
+        return tree.empty();
+    }
+
+    /**
+     * Flushes the buffer and returns the info of the item with the smallest key, or null if there are no items.
+     */
+    public String min() {
+        flush();
+        return tree.min();
+    }
+
+    /**
+     * Flushes the buffer and returns the info of the item with the largest key, or null if there are no items.
+     */
+    public String max() {
+        flush();
+        return tree.max();
+    }
+
+    /**
+     * Flushes the buffer and returns the sorted keys.
+     * Complexity O(n + b log(n/b + 1))
+     */
+    public int[] keysToArray() {
+        flush();
+        return tree.keysToArray();
+    }
+
+    /**
+     * Flushes the buffer and returns the info of the items, sorted by their keys.
+     * Complexity O(n + b log(n/b + 1))
+     */
+    public String[] infoToArray() {
+        flush();
+        return tree.infoToArray();
+    }
+
+    /**
+     * Flushes the buffer and returns the tree. The tree must not be changed directly while it is buffered.
+     */
+    public WAVLTree tree() {
+        flush();
+        return tree;
+    }
+}
@@ -0,0 +1,286 @@
+package WAVLCore;
+
+import WAVLCore.WAVLTree.WAVLNode;
+
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Supplier;
+
+/**
+ * ConcurrentWAVLTree
+ * <p>
+ * A thread-safe WAVLTree. Writers are serialized by the write lock of a StampedLock, readers do not lock:
+ * they walk the tree under an optimistic read stamp and validate it at the end, and only when a writer ran
+ * in the meantime they retry under the read lock.
+ * <p>
+ * A reader racing a writer may see the nodes in the middle of a rotation, so every walk is bounded
+ * (a WAVL tree of less than 2^31 nodes is at most 62 levels deep, and range walks must visit increasing keys),
+ * and a walk that breaks the bound or fails on the inconsistent nodes is retried like any other invalidated read.
+ */
+public class ConcurrentWAVLTree {
+
+    /**
+     * A bound on the depth of a WAVL tree with less than 2^31 nodes (its height is at most 2 log(n)).
+     */
+    private static final int MAX_DEPTH = 64;
+
+    private final WAVLTree tree = new WAVLTree();
+    private final StampedLock lock = new StampedLock();
+
+    /**
+     * Runs reader under an optimistic read stamp, or under the read lock if the stamp is invalidated.
+     */
+    private <T> T read(Supplier<T> reader) {
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0) {
+            try {
+                T result = reader.get();
+                if (lock.validate(stamp)) {
+                    return result;
+                }
+            } catch (RuntimeException e) {
+                // A writer changed the nodes under the reader, retry under the read lock
+            }
+        }
+
+        stamp = lock.readLock();
+        try {
+            return reader.get();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * inserts an item with key k and info i, see WAVLTree.insert.
+     *
+     * Complexity O(log(n)), where n is the number of nodes in the tree
+     */
+    public int insert(int k, String i) {
+        long stamp = lock.writeLock();
+        try {
+            int rebalances = tree.insert(k, i);
+            tree.flushAppends(); // So getRoot finds nothing to fix in the readers, which must not write
+            return rebalances;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * deletes the item with key k, see WAVLTree.delete.
+     *
+     * Complexity O(log(n)), where n is the number of nodes in the tree
+     */
+    public int delete(int k) {
+        long stamp = lock.writeLock();
+        try {
+            return tree.delete(k);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * returns the info of the item with key k if it exists in the tree, otherwise null
+     *
+     * Complexity O(log(n)), where n is the number of nodes in the tree
+     */
+    public String search(int k) {
+        return read(() -> {
+            WAVLNode node = tree.getRoot();
+            for (int depth = 0; node != null; depth++) {
+                checkDepth(depth);
+                int key = node.getKey();
+                if (k == key) {
+                    return node.getValue();
+                }
+                node = k < key ? node.getLeft() : node.getRight();
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Returns the info of the i'th smallest key, or null if i is not in 1..size()
+     *
+     * Complexity O(log(n)), where n is the number of nodes in the tree
+     */
+    public String select(int i) {
+        return read(() -> {
+            WAVLNode node = tree.getRoot();
+            int rank = i;
+            for (int depth = 0; node != null; depth++) {
+                checkDepth(depth);
+                int leftSize = node.getLeft() == null ? 0 : node.getLeft().getSubtreeSize();
+                if (rank == leftSize + 1) {
+                    return node.getValue();
+                } else if (rank <= leftSize) {
+                    node = node.getLeft();
+                } else {
+                    rank -= leftSize + 1;
+                    node = node.getRight();
+                }
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Returns the info of the item with the smallest key in the tree, or null if the tree is empty
+     *
+     * Complexity O(log(n)), where n is the number of nodes in the tree
+     */
+    public String min() {
+        return read(() -> {
+            WAVLNode node = leftmost(tree.getRoot(), 0);
+            return node == null ? null : node.getValue();
+        });
+    }
+
+    /**
+     * Returns the info of the item with the largest key in the tree, or null if the tree is empty
+     *
+     * Complexity O(log(n)), where n is the number of nodes in the tree
+     */
+    public String max() {
+        return read(() -> {
+            WAVLNode node = tree.getRoot();
+            for (int depth = 0; node != null && node.getRight() != null; depth++) {
+                checkDepth(depth);
+                node = node.getRight();
+            }
+            return node == null ? null : node.getValue();
+        });
+    }
+
+    /**
+     * Returns the number of nodes in the tree
+     *
+     * Complexity O(1)
+     */
+    public int size() {
+        return read(tree::size);
+    }
+
+    /**
+     * returns true if and only if the tree is empty
+     *
+     * Complexity O(1)
+     */
+    public boolean empty() {
+        return size() == 0;
+    }
+
+    /**
+     * Returns the keys in lo..hi (inclusive) in increasing order, from one consistent state of the tree.
+     *
+     * Complexity O(log(n) + k), where k is the number of keys in the range
+     */
+    public int[] keysInRange(int lo, int hi) {
+        return read(() -> {
+            int[] keys = new int[16];
+            int count = 0;
+            long last = Long.MIN_VALUE;
+            for (WAVLNode node = rangeStart(lo, hi); node != null && node.getKey() <= hi; node = successor(node)) {
+                last = checkIncreasing(last, node.getKey());
+                if (count == keys.length) {
+                    keys = Arrays.copyOf(keys, 2 * count);
+                }
+                keys[count++] = node.getKey();
+            }
+            return Arrays.copyOf(keys, count);
+        });
+    }
+
+    /**
+     * Returns the info of the keys in lo..hi (inclusive) sorted by their keys, from one consistent state of the tree.
+     *
+     * Complexity O(log(n) + k), where k is the number of keys in the range
+     */
+    public String[] infoInRange(int lo, int hi) {
+        return read(() -> {
+            String[] info = new String[16];
+            int count = 0;
+            long last = Long.MIN_VALUE;
+            for (WAVLNode node = rangeStart(lo, hi); node != null && node.getKey() <= hi; node = successor(node)) {
+                last = checkIncreasing(last, node.getKey());
+                if (count == info.length) {
+                    info = Arrays.copyOf(info, 2 * count);
+                }
+                info[count++] = node.getValue();
+            }
+            return Arrays.copyOf(info, count);
+        });
+    }
+
+    /**
+     * returns the node with the smallest key larger than or equal to lo, or null if there is none or lo > hi
+     */
+    private WAVLNode rangeStart(int lo, int hi) {
+        if (lo > hi) {
+            return null;
+        }
+        WAVLNode ceiling = null;
+        WAVLNode node = tree.getRoot();
+        for (int depth = 0; node != null; depth++) {
+            checkDepth(depth);
+            int key = node.getKey();
+            if (lo == key) {
+                return node;
+            } else if (lo < key) {
+                ceiling = node;
+                node = node.getLeft();
+            } else {
+                node = node.getRight();
+            }
+        }
+        return ceiling;
+    }
+
+    /**
+     * WAVLTree.getSuccessor with bounded loops
+     */
+    private static WAVLNode successor(WAVLNode node) {
+        if (node.getRight() != null) {
+            return leftmost(node.getRight(), 1);
+        }
+        WAVLNode current = node;
+        for (int depth = 0; current.isRightChild(); depth++) {
+            checkDepth(depth);
+            current = current.getFather();
+        }
+        return current.getFather();
+    }
+
+    private static WAVLNode leftmost(WAVLNode node, int depth) {
+        for (; node != null && node.getLeft() != null; depth++) {
+            checkDepth(depth);
+            node = node.getLeft();
+        }
+        return node;
+    }
+
+    /**
+     * A walk deeper than MAX_DEPTH can only be a walk over nodes a writer is changing.
+     */
+    private static void checkDepth(int depth) {
+        if (depth > MAX_DEPTH) {
+            throw new ConcurrentModificationException();
+        }
+    }
+
+    /**
+     * An in-order walk that does not increase can only be a walk over nodes a writer is changing.
+     * Checking it also bounds a range walk by the width of the range, even if the nodes form a cycle.
+     *
+     * @return key
+     */
+    private static long checkIncreasing(long last, int key) {
+        if (key <= last) {
+            throw new ConcurrentModificationException();
+        }
+        return key;
+    }
+}
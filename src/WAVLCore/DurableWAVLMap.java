@@ -0,0 +1,468 @@
+package WAVLCore;
+
+import WAVLCore.WAVLTree.WAVLNode;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * DurableWAVLMap
+ * <p>
+ * A WAVLTree kept in a directory: every insert and delete that changes the tree is appended to a write-ahead log
+ * before it is applied, and the tree is rebuilt from the directory when it is opened again.
+ * <p>
+ * Group commit: the log is forced to the disk (fsync) once every syncBatch records, so with syncBatch = 1 every
+ * change is durable when its method returns, and with larger batches a crash loses at most the last syncBatch - 1
+ * changes, for fewer fsyncs. sync() forces the log at any time, close() forces it too.
+ * <p>
+ * Checkpoints: every checkpointInterval records the tree is saved with WAVLSnapshot and the log starts over.
+ * Generation g of the directory is the snapshot "snapshot.g" (none for generation 0) and the log "wal.g" of the
+ * changes after it. A checkpoint writes and forces the snapshot of generation g + 1 under a temporary name, renames it
+ * and only then starts "wal.g+1" and deletes generation g, so at every moment the latest complete snapshot and its
+ * log describe the map. Opening the directory loads the latest snapshot, replays its log up to the first torn or
+ * corrupt record (which is cut off) and deletes the files of the other generations.
+ * <p>
+ * Log record: byte type (1 insert, 2 delete), int key, for an insert int length of the UTF-8 bytes of the info
+ * (-1 for null) and the bytes, then the CRC32 of the record. The methods are synchronized.
+ */
+public class DurableWAVLMap implements Closeable {
+
+    private static final String SNAPSHOT = "snapshot.";
+    private static final String LOG = "wal.";
+    private static final String TEMPORARY = ".tmp";
+
+    private static final int MAGIC = 0x57414C31; // "WAL1"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 2 * Integer.BYTES;
+
+    private static final byte INSERT = 1;
+    private static final byte DELETE = 2;
+
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    private final Path directory;
+    private final int syncBatch;
+    private final int checkpointInterval;
+
+    private WAVLTree tree;
+    private long generation;
+    private FileChannel log;
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    private final CRC32 checksum = new CRC32();
+
+    /**
+     * The records since the last fsync, and in the current log.
+     */
+    private int unsynced;
+    private int logged;
+
+    private boolean closed;
+
+    /**
+     * Opens the map in directory with an fsync for every change and a checkpoint every million changes.
+     */
+    public DurableWAVLMap(Path directory) throws IOException {
+        this(directory, 1, 1 << 20);
+    }
+
+    /**
+     * Opens the map in directory (created if it does not exist), recovering its content.
+     *
+     * @param syncBatch          the number of changes per fsync of the log
+     * @param checkpointInterval the number of changes after which the tree is saved and the log starts over
+     * Complexity O(n + m), where n is the number of items in the latest snapshot and m the number of records of its log
+     */
+    public DurableWAVLMap(Path directory, int syncBatch, int checkpointInterval) throws IOException {
+        if (syncBatch < 1 || checkpointInterval < 1) {
+            throw new IllegalArgumentException("syncBatch and checkpointInterval must be positive");
+        }
+        this.directory = directory;
+        this.syncBatch = syncBatch;
+        this.checkpointInterval = checkpointInterval;
+        Files.createDirectories(directory);
+        recover();
+    }
+
+    /**
+     * public String search(int k)
+     * <p>
+     * returns the info of the item with key k if it exists in the map, otherwise null.
+     *
+     * Complexity O(log(n)), where n is the number of items in the map
+     */
+    public synchronized String search(int k) {
+        checkOpen();
+        return tree.search(k);
+    }
+
+    /**
+     * public int insert(int k, String i)
+     * <p>
+     * inserts an item with key k and info i if there is no item with key k, logging it first.
+     * returns the number of rebalancing operations, or -1 if an item with key k already exists (nothing is logged).
+     *
+     * Complexity O(log(n)) plus the amortized cost of the fsyncs and checkpoints
+     */
+    public synchronized int insert(int k, String i) throws IOException {
+        checkOpen();
+        WAVLNode node = tree.searchNode(k);
+        if (node != null && node.getKey() == k) {
+            return -1;
+        }
+        byte[] info = i == null ? null : i.getBytes(StandardCharsets.UTF_8);
+        int length = 1 + Integer.BYTES + Integer.BYTES + (info == null ? 0 : info.length) + Integer.BYTES;
+        ByteBuffer record = recordBuffer(length);
+        int start = record.position();
+        record.put(INSERT).putInt(k).putInt(info == null ? -1 : info.length);
+        if (info != null) {
+            record.put(info);
+        }
+        endRecord(record, start);
+
+        int rebalances = tree.insert(k, i);
+        logged();
+        return rebalances;
+    }
+
+    /**
+     * public int delete(int k)
+     * <p>
+     * deletes the item with key k if it exists, logging it first.
+     * returns the number of rebalancing operations, or -1 if there is no item with key k (nothing is logged).
+     *
+     * Complexity O(log(n)) plus the amortized cost of the fsyncs and checkpoints
+     */
+    public synchronized int delete(int k) throws IOException {
+        checkOpen();
+        WAVLNode node = tree.searchNode(k);
+        if (node == null || node.getKey() != k) {
+            return -1;
+        }
+        ByteBuffer record = recordBuffer(1 + Integer.BYTES + Integer.BYTES);
+        int start = record.position();
+        record.put(DELETE).putInt(k);
+        endRecord(record, start);
+
+        int rebalances = tree.deleteNode(node);
+        logged();
+        return rebalances;
+    }
+
+    /**
+     * Forces the log to the disk, every change made before is durable when it returns.
+     *
+     * Complexity O(b) for the b bytes logged since the last sync, plus one fsync
+     */
+    public synchronized void sync() throws IOException {
+        checkOpen();
+        flush();
+        log.force(false);
+        unsynced = 0;
+    }
+
+    /**
+     * Saves the tree as the snapshot of the next generation and starts its empty log.
+     *
+     * Complexity O(n), where n is the number of items in the map (calls WAVLSnapshot.save)
+     */
+    public synchronized void checkpoint() throws IOException {
+        sync();
+        long next = generation + 1;
+        Path temporary = directory.resolve(SNAPSHOT + next + TEMPORARY);
+        WAVLSnapshot.save(tree, temporary);
+        try (FileChannel snapshot = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+            snapshot.force(true);
+        }
+        Files.move(temporary, snapshotPath(next), StandardCopyOption.ATOMIC_MOVE);
+        forceDirectory();
+
+        FileChannel nextLog = openLog(next, 0);
+        log.close();
+        log = nextLog;
+        Files.deleteIfExists(logPath(generation));
+        Files.deleteIfExists(snapshotPath(generation));
+        generation = next;
+        logged = 0;
+    }
+
+    /**
+     * public int size()
+     * <p>
+     * returns the number of items in the map
+     *
+     * Complexity O(1)
+     */
+    public synchronized int size() {
+        checkOpen();
+        return tree.size();
+    }
+
+    /**
+     * public boolean empty()
+     * <p>
+     * returns true if and only if the map is empty
+     *
+     * Complexity O(1)
+     */
+    public synchronized boolean empty() {
+        checkOpen();
+        return tree.empty();
+    }
+
+    /**
+     * returns a sorted array of the keys in the map, see WAVLTree.keysToArray
+     *
+     * Complexity O(n), where n is the number of items in the map
+     */
+    public synchronized int[] keysToArray() {
+        checkOpen();
+        return tree.keysToArray();
+    }
+
+    /**
+     * returns an array of the infos in the map, sorted by their keys, see WAVLTree.infoToArray
+     *
+     * Complexity O(n), where n is the number of items in the map
+     */
+    public synchronized String[] infoToArray() {
+        checkOpen();
+        return tree.infoToArray();
+    }
+
+    /**
+     * Forces the log and closes it, the map can not be used after that.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        sync();
+        log.close();
+        closed = true;
+    }
+
+    private void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException("The map is closed");
+        }
+    }
+
+    /**
+     * Loads the latest snapshot, replays its log and deletes the files of the other generations.
+     */
+    private void recover() throws IOException {
+        generation = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, SNAPSHOT + "*")) {
+            for (Path file : files) {
+                long fileGeneration = generationOf(file, SNAPSHOT);
+                if (fileGeneration > generation) {
+                    generation = fileGeneration;
+                }
+            }
+        }
+        tree = generation == 0 ? new WAVLTree() : WAVLSnapshot.load(snapshotPath(generation));
+
+        long end = replay(logPath(generation));
+        log = openLog(generation, end);
+
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                boolean stale = name.endsWith(TEMPORARY)
+                        || (name.startsWith(SNAPSHOT) && generationOf(file, SNAPSHOT) != generation)
+                        || (name.startsWith(LOG) && generationOf(file, LOG) != generation);
+                if (stale) {
+                    Files.delete(file);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the generation in the name of file, which starts with prefix, or -1 if it is not a generation number
+     */
+    private static long generationOf(Path file, String prefix) {
+        try {
+            return Long.parseLong(file.getFileName().toString().substring(prefix.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Applies the records of the log at path to the tree, up to the first incomplete or corrupt record.
+     *
+     * @return the length of the valid part of the log, 0 if it does not exist or has no valid header
+     */
+    private long replay(Path path) throws IOException {
+        if (!Files.exists(path)) {
+            return 0;
+        }
+        try (InputStream file = Files.newInputStream(path);
+             DataInputStream input = new DataInputStream(new BufferedInputStream(file, BUFFER_SIZE))) {
+            // openLog forces the header before the first record, so a log without a valid header was torn while it
+            // was created and holds no synced record: it is written again from the start
+            try {
+                if (input.readInt() != MAGIC) {
+                    return 0;
+                }
+                if (input.readInt() != VERSION) {
+                    throw new IOException(path + " is not a log of a known version");
+                }
+            } catch (EOFException e) {
+                return 0;
+            }
+            long end = HEADER_SIZE;
+            byte[] record = new byte[1 + 3 * Integer.BYTES];
+            ByteBuffer fields = ByteBuffer.wrap(record);
+            while (true) {
+                try {
+                    input.readFully(record, 0, 1 + Integer.BYTES);
+                    byte type = record[0];
+                    int k = fields.getInt(1);
+                    checksum.reset();
+                    checksum.update(record, 0, 1 + Integer.BYTES);
+                    long length = 1 + Integer.BYTES + Integer.BYTES;
+                    String info = null;
+                    if (type == INSERT) {
+                        input.readFully(record, 0, Integer.BYTES);
+                        checksum.update(record, 0, Integer.BYTES);
+                        int size = fields.getInt(0);
+                        if (size < -1 || size > Files.size(path)) {
+                            return end;
+                        }
+                        if (size >= 0) {
+                            byte[] bytes = new byte[size];
+                            input.readFully(bytes);
+                            checksum.update(bytes, 0, size);
+                            info = new String(bytes, StandardCharsets.UTF_8);
+                            length += Integer.BYTES + size;
+                        } else {
+                            length += Integer.BYTES;
+                        }
+                    } else if (type != DELETE) {
+                        return end;
+                    }
+                    if (input.readInt() != (int) checksum.getValue()) {
+                        return end;
+                    }
+                    if (type == INSERT) {
+                        tree.insert(k, info);
+                    } else {
+                        tree.delete(k);
+                    }
+                    logged++;
+                    end += length;
+                } catch (EOFException e) {
+                    return end;
+                }
+            }
+        }
+    }
+
+    /**
+     * Opens the log of generation, cut to its valid length end (a new log with just the header if end is 0).
+     */
+    private FileChannel openLog(long generation, long end) throws IOException {
+        FileChannel channel = FileChannel.open(logPath(generation), StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        if (end == 0) {
+            channel.truncate(0);
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC).putInt(VERSION).flip();
+            while (header.hasRemaining()) {
+                channel.write(header, HEADER_SIZE - header.remaining());
+            }
+            end = HEADER_SIZE;
+        } else {
+            channel.truncate(end);
+        }
+        channel.force(true);
+        forceDirectory();
+        channel.position(end);
+        return channel;
+    }
+
+    /**
+     * @return the buffer to write a record of length bytes into: the log buffer, flushed if needed,
+     * or a buffer of its own for a record larger than the log buffer
+     */
+    private ByteBuffer recordBuffer(int length) throws IOException {
+        if (buffer.remaining() < length) {
+            flush();
+        }
+        return length <= buffer.capacity() ? buffer : ByteBuffer.allocate(length);
+    }
+
+    /**
+     * Appends the CRC32 of the record that starts at start, and writes the record if it has a buffer of its own.
+     */
+    private void endRecord(ByteBuffer record, int start) throws IOException {
+        checksum.reset();
+        checksum.update(record.array(), start, record.position() - start);
+        record.putInt((int) checksum.getValue());
+        if (record != buffer) {
+            record.flip();
+            write(record);
+        }
+    }
+
+    /**
+     * Counts a logged record, syncs at the end of a batch and checkpoints at the end of an interval.
+     */
+    private void logged() throws IOException {
+        logged++;
+        if (++unsynced >= syncBatch) {
+            sync();
+        }
+        if (logged >= checkpointInterval) {
+            checkpoint();
+        }
+    }
+
+    private void flush() throws IOException {
+        buffer.flip();
+        write(buffer);
+        buffer.clear();
+    }
+
+    private void write(ByteBuffer bytes) throws IOException {
+        while (bytes.hasRemaining()) {
+            log.write(bytes);
+        }
+    }
+
+    /**
+     * Forces the directory, so the files created, renamed and deleted in it are durable.
+     * Not every platform can open a directory, there the rename is as durable as the file system makes it.
+     */
+    private void forceDirectory() {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // The directory can not be forced on this platform
+        }
+    }
+
+    private Path snapshotPath(long generation) {
+        return directory.resolve(SNAPSHOT + generation);
+    }
+
+    private Path logPath(long generation) {
+        return directory.resolve(LOG + generation);
+    }
+}
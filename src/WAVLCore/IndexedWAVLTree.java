@@ -0,0 +1,425 @@
+package WAVLCore;
+
+/**
+ * IndexedWAVLTree
+ * <p>
+ * The WAVL rebalancing core for trees whose nodes are int handles into some
+ * backing storage instead of WAVLNode objects.
+ * This class only knows ranks, subtree sizes and links, the subclasses own the
+ * storage itself together with the keys and the values.
+ * <p>
+ * This is a deliberate second implementation of the rebalancing, written by hand, and not shared with WAVLTree:
+ * attach, insertRebalance, deleteNode and postDeletionRebalancing follow the same promote, rotate and demote cases
+ * as the methods of WAVLTree, but on handles, so a fix to the cases of one must be made in the other as well.
+ * WAVLClassTester checks the rank, size and link invariants of both.
+ */
+abstract class IndexedWAVLTree {
+
+    /**
+     * The handle of a missing node (the external leaf), it has rank -1 and subtree size 0.
+     */
+    static final int NIL = -1;
+
+    /**
+     * The root node of the tree, in an empty tree this is NIL.
+     */
+    int root = NIL;
+
+    // Storage accessors, implemented by the concrete engines:
+
+    abstract int getRank(int node);
+
+    abstract void setRank(int node, int rank);
+
+    abstract int getSubtreeSize(int node);
+
+    abstract void setSubtreeSize(int node, int subtreeSize);
+
+    abstract int getLeft(int node);
+
+    abstract void setLeft(int node, int left);
+
+    abstract int getRight(int node);
+
+    abstract void setRight(int node, int right);
+
+    abstract int getFather(int node);
+
+    abstract void setFather(int node, int father);
+
+    /**
+     * Copies the key and the value of the node from into the node to.
+     * Used when a binary node is deleted and replaced by its successor.
+     */
+    abstract void copyEntry(int from, int to);
+
+    /**
+     * Releases the storage of a node that was already unlinked from the tree.
+     */
+    abstract void freeNode(int node);
+
+    /**
+     * public boolean empty()
+     * <p>
+     * returns true if and only if the tree is empty
+     *
+     * Complexity O(1)
+     */
+    public boolean empty() {
+        return root == NIL;
+    }
+
+    /**
+     * public int size()
+     * <p>
+     * Returns the number of nodes in the tree.
+     *
+     * Complexity O(1)
+     */
+    public int size() {
+        return subtreeSizeOf(root);
+    }
+
+    /**
+     * @return the rank of node, -1 for NIL
+     * Complexity O(1)
+     */
+    final int rankOf(int node) {
+        return node == NIL ? -1 : getRank(node);
+    }
+
+    /**
+     * @return the subtree size of node, 0 for NIL
+     * Complexity O(1)
+     */
+    final int subtreeSizeOf(int node) {
+        return node == NIL ? 0 : getSubtreeSize(node);
+    }
+
+    /**
+     * Initialize a freshly allocated node as a leaf under father.
+     * Complexity O(1)
+     */
+    final void initLeaf(int node, int father) {
+        setRank(node, 0);
+        setSubtreeSize(node, 1);
+        setLeft(node, NIL);
+        setRight(node, NIL);
+        setFather(node, father);
+    }
+
+    /**
+     * Links the leaf node as a child of father (or as the root if father is NIL) and re-balances the tree.
+     * returns the number of re-balancing operations preformed.
+     *
+     * Complexity O(log(n)), where n is the number of nodes in the tree (subtree sizes are updated up to the root).
+     */
+    final int attach(int father, int node, boolean asLeftChild) {
+        initLeaf(node, father);
+
+        if (father == NIL) {
+            root = node;
+            return 0;
+        }
+
+        if (asLeftChild) {
+            setLeft(father, node);
+        } else {
+            setRight(father, node);
+        }
+
+        for (int ancestor = father; ancestor != NIL; ancestor = getFather(ancestor)) {
+            setSubtreeSize(ancestor, getSubtreeSize(ancestor) + 1);
+        }
+
+        return insertRebalance(node);
+    }
+
+    /**
+     * Re-balance the tree defined by node after an insert.
+     * returns the number of re-balancing operations preformed.
+     *
+     * Complexity O(d), where d is the depth of node (in w.c we promote until the root).
+     */
+    final int insertRebalance(int node) {
+        int rebalances = 0;
+
+        while (true) {
+            int father = getFather(node);
+
+            // No need to re-balance, node is the root or has a legit rank:
+            if (father == NIL || getRank(father) != getRank(node)) {
+                return rebalances;
+            }
+
+            boolean isLeftChild = getLeft(father) == node;
+            int sibling = isLeftChild ? getRight(father) : getLeft(father);
+
+            if (getRank(father) - rankOf(sibling) == 1) { // Case 1: Promote.
+                setRank(father, getRank(father) + 1);
+                rebalances++;
+                node = father;
+                continue;
+            }
+
+            int inner = isLeftChild ? getRight(node) : getLeft(node);
+
+            if (getRank(node) - rankOf(inner) == 2) { // Case 2: Single rotate
+                rotateUp(node);
+                setRank(father, getRank(father) - 1);
+                return rebalances + 1;
+            }
+
+            // Case 3: Double rotate.
+            rotateUp(inner);
+            rotateUp(inner);
+            setRank(inner, getRank(inner) + 1);
+            setRank(node, getRank(node) - 1);
+            setRank(father, getRank(father) - 1);
+            return rebalances + 2;
+        }
+    }
+
+    /**
+     * Deletes node from the tree and re-balances it.
+     * returns the number of re-balancing operations preformed.
+     *
+     * Complexity O(log(n)), where n is the number of nodes in the tree.
+     */
+    final int deleteNode(int node) {
+
+        // A binary node takes the entry of its successor, which is then removed instead:
+        if (getLeft(node) != NIL && getRight(node) != NIL) {
+            int successor = minNode(getRight(node));
+            copyEntry(successor, node);
+            node = successor;
+        }
+
+        int child = getLeft(node) != NIL ? getLeft(node) : getRight(node);
+        int father = getFather(node);
+        boolean wasLeftChild = father != NIL && getLeft(father) == node;
+
+        if (child != NIL) {
+            setFather(child, father);
+        }
+        if (father == NIL) {
+            root = child;
+        } else if (wasLeftChild) {
+            setLeft(father, child);
+        } else {
+            setRight(father, child);
+        }
+        freeNode(node);
+
+        for (int ancestor = father; ancestor != NIL; ancestor = getFather(ancestor)) {
+            setSubtreeSize(ancestor, getSubtreeSize(ancestor) - 1);
+        }
+
+        return postDeletionRebalancing(father, wasLeftChild);
+    }
+
+    /**
+     * Rebalance the tree after deletion, starting at father whose child on the given side was removed.
+     * returns the number of rebalancing operations.
+     *
+     * Complexity O(log(n)), where n is the number of nodes in this tree. (in the w.c we will travel all the way to the root
+     * preforming O(1) operations in each step)
+     */
+    final int postDeletionRebalancing(int father, boolean isLeftChild) {
+        int rebalances = 0;
+
+        if (father == NIL) {
+            return 0;
+        }
+
+        // Leaf has rank of 0, rank differences must be 1,1
+        if (getLeft(father) == NIL && getRight(father) == NIL && getRank(father) == 1) {
+            setRank(father, 0);
+            rebalances++;
+            int node = father;
+            father = getFather(node);
+            if (father == NIL) {
+                return rebalances;
+            }
+            isLeftChild = getLeft(father) == node;
+        }
+
+        while (father != NIL) {
+            int node = isLeftChild ? getLeft(father) : getRight(father);
+
+            // if false no further actions required.
+            if (getRank(father) - rankOf(node) != 3) {
+                return rebalances;
+            }
+
+            int sibling = isLeftChild ? getRight(father) : getLeft(father);
+
+            if (getRank(father) - rankOf(sibling) == 2) { // Demote
+                setRank(father, getRank(father) - 1);
+                rebalances++;
+            } else {
+                int outer = isLeftChild ? getRight(sibling) : getLeft(sibling);
+                int inner = isLeftChild ? getLeft(sibling) : getRight(sibling);
+
+                if (getRank(sibling) - rankOf(outer) == 2 && getRank(sibling) - rankOf(inner) == 2) { // DoubleDemote
+                    setRank(sibling, getRank(sibling) - 1);
+                    setRank(father, getRank(father) - 1);
+                    rebalances += 2;
+                } else if (getRank(sibling) - rankOf(outer) == 1) { // Single rotate
+                    rotateUp(sibling);
+                    setRank(sibling, getRank(sibling) + 1);
+                    setRank(father, getRank(father) - 1);
+                    if (getLeft(father) == NIL && getRight(father) == NIL) {
+                        setRank(father, getRank(father) - 1);
+                        return rebalances + 2;
+                    }
+                    return rebalances + 1;
+                } else { // Double rotate
+                    rotateUp(inner);
+                    rotateUp(inner);
+                    setRank(inner, getRank(inner) + 2);
+                    setRank(sibling, getRank(sibling) - 1);
+                    setRank(father, getRank(father) - 2);
+                    return rebalances + 2;
+                }
+            }
+
+            // Continue from the father, which might be a 3-child now:
+            int demoted = father;
+            father = getFather(demoted);
+            isLeftChild = father != NIL && getLeft(father) == demoted;
+        }
+
+        return rebalances;
+    }
+
+    /**
+     * Rotates node above its father, keeping the in-order of the tree.
+     * Complexity O(1)
+     */
+    final void rotateUp(int node) {
+        int father = getFather(node);
+        int grandfather = getFather(father);
+
+        if (getLeft(father) == node) {
+            int inner = getRight(node);
+            setLeft(father, inner);
+            if (inner != NIL) {
+                setFather(inner, father);
+            }
+            setRight(node, father);
+        } else {
+            int inner = getLeft(node);
+            setRight(father, inner);
+            if (inner != NIL) {
+                setFather(inner, father);
+            }
+            setLeft(node, father);
+        }
+
+        setFather(father, node);
+        setFather(node, grandfather);
+
+        if (grandfather == NIL) {
+            root = node;
+        } else if (getLeft(grandfather) == father) {
+            setLeft(grandfather, node);
+        } else {
+            setRight(grandfather, node);
+        }
+
+        reSetSubtreeSize(father);
+        reSetSubtreeSize(node);
+    }
+
+    /**
+     * Resetting the subtree size of node according to its children
+     * Complexity O(1)
+     */
+    final void reSetSubtreeSize(int node) {
+        setSubtreeSize(node, subtreeSizeOf(getLeft(node)) + subtreeSizeOf(getRight(node)) + 1);
+    }
+
+    /**
+     * @return the node with the smallest key in the subtree of node, NIL for NIL
+     * Complexity O(log(n))
+     */
+    final int minNode(int node) {
+        if (node == NIL) {
+            return NIL;
+        }
+        while (getLeft(node) != NIL) {
+            node = getLeft(node);
+        }
+        return node;
+    }
+
+    /**
+     * @return the node with the largest key in the subtree of node, NIL for NIL
+     * Complexity O(log(n))
+     */
+    final int maxNode(int node) {
+        if (node == NIL) {
+            return NIL;
+        }
+        while (getRight(node) != NIL) {
+            node = getRight(node);
+        }
+        return node;
+    }
+
+    /**
+     * @return the in-order successor of node, NIL if node holds the largest key
+     * Complexity O(log(n)), O(1) amortized over an in-order walk
+     */
+    final int successor(int node) {
+        if (getRight(node) != NIL) {
+            return minNode(getRight(node));
+        }
+        int father = getFather(node);
+        while (father != NIL && getRight(father) == node) {
+            node = father;
+            father = getFather(node);
+        }
+        return father;
+    }
+
+    /**
+     * @return the in-order predecessor of node, NIL if node holds the smallest key
+     * Complexity O(log(n)), O(1) amortized over an in-order walk
+     */
+    final int predecessor(int node) {
+        if (getLeft(node) != NIL) {
+            return maxNode(getLeft(node));
+        }
+        int father = getFather(node);
+        while (father != NIL && getLeft(father) == node) {
+            node = father;
+            father = getFather(node);
+        }
+        return father;
+    }
+
+    /**
+     * get the i'th smallest node, 1 <= i <= size()
+     * @return the i'th smallest node or NIL if i is out of range
+     * Complexity O(log(n)), where n is the number of nodes in the tree
+     */
+    final int selectNode(int i) {
+        if (i < 1 || i > size()) {
+            return NIL;
+        }
+        int node = root;
+        while (true) {
+            int r = subtreeSizeOf(getLeft(node)) + 1;
+            if (i == r) {
+                return node;
+            } else if (i < r) {
+                node = getLeft(node);
+            } else {
+                i -= r;
+                node = getRight(node);
+            }
+        }
+    }
+}
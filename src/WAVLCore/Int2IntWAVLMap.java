@@ -0,0 +1,211 @@
+package WAVLCore;
+
+import java.util.NoSuchElementException;
+
+/**
+ * Int2IntWAVLMap
+ * <p>
+ * A WAVL Tree map with distinct int keys and int values.
+ * Keys and values live in primitive pages next to the node arrays of PagedWAVLTree,
+ * so no operation allocates a wrapper object.
+ */
+public class Int2IntWAVLMap extends PagedWAVLTree {
+
+    private int[][] keys = new int[1][];
+    private int[][] values = new int[1][];
+
+    /**
+     * The value returned for keys that are not in the map.
+     */
+    private final int defaultValue;
+
+    public Int2IntWAVLMap() {
+        this(0);
+    }
+
+    /**
+     * @param defaultValue the value search and select return when there is no matching item
+     */
+    public Int2IntWAVLMap(int defaultValue) {
+        this.defaultValue = defaultValue;
+    }
+
+    @Override
+    void allocateEntryPage(int page) {
+        keys = growPageTable(keys, page);
+        values = growPageTable(values, page);
+        keys[page] = new int[PAGE_SIZE];
+        values[page] = new int[PAGE_SIZE];
+    }
+
+    @Override
+    void clearEntry(int node) {
+    }
+
+    @Override
+    void copyEntry(int from, int to) {
+        setEntry(to, getKey(from), getValue(from));
+    }
+
+    private int getKey(int node) {
+        return keys[node >>> PAGE_SHIFT][node & PAGE_MASK];
+    }
+
+    private int getValue(int node) {
+        return values[node >>> PAGE_SHIFT][node & PAGE_MASK];
+    }
+
+    private void setEntry(int node, int k, int v) {
+        keys[node >>> PAGE_SHIFT][node & PAGE_MASK] = k;
+        values[node >>> PAGE_SHIFT][node & PAGE_MASK] = v;
+    }
+
+    /**
+     * returns the node with key k if it exists in the map, otherwise the node that would be its father,
+     * or NIL if the map is empty
+     *
+     * Complexity O(log(n)), where n is the number of items in the map
+     */
+    private int searchNode(int k) {
+        int node = root;
+        int last = NIL;
+        while (node != NIL) {
+            last = node;
+            int key = getKey(node);
+            if (k == key) {
+                return node;
+            }
+            node = k < key ? getLeft(node) : getRight(node);
+        }
+        return last;
+    }
+
+    /**
+     * returns true if and only if an item with key k is in the map
+     *
+     * Complexity O(log(n)), where n is the number of items in the map (calls searchNode).
+     */
+    public boolean contains(int k) {
+        int node = searchNode(k);
+        return node != NIL && getKey(node) == k;
+    }
+
+    /**
+     * returns the value of the item with key k if it exists in the map, otherwise the default value
+     *
+     * Complexity O(log(n)), where n is the number of items in the map (calls searchNode).
+     */
+    public int search(int k) {
+        int node = searchNode(k);
+        return node != NIL && getKey(node) == k ? getValue(node) : defaultValue;
+    }
+
+    /**
+     * inserts an item with key k and value v to the map.
+     * returns the number of rebalancing operations, or 0 if no rebalancing operations were necessary.
+     * returns -1 if an item with key k already exists in the map.
+     *
+     * Complexity O(log(n)), where n is the number of items in the map (calls searchNode, attach).
+     */
+    public int insert(int k, int v) {
+        int father = searchNode(k);
+        if (father != NIL && getKey(father) == k) {
+            return -1; // Already exists
+        }
+
+        int node = allocateNode();
+        setEntry(node, k, v);
+        return attach(father, node, father != NIL && k < getKey(father));
+    }
+
+    /**
+     * deletes the item with key k from the map, if it is there.
+     * returns the number of rebalancing operations, or 0 if no rebalancing operations were needed.
+     * returns -1 if an item with key k was not found in the map.
+     *
+     * Complexity O(log(n)), where n is the number of items in the map (calls searchNode, deleteNode)
+     */
+    public int delete(int k) {
+        int node = searchNode(k);
+        if (node == NIL || getKey(node) != k) {
+            return -1;
+        }
+        return deleteNode(node);
+    }
+
+    /**
+     * Returns the smallest key in the map
+     * @throws NoSuchElementException if the map is empty
+     *
+     * Complexity O(log(n)), where n is the number of items in the map
+     */
+    public int minKey() {
+        if (empty()) {
+            throw new NoSuchElementException("The map is empty");
+        }
+        return getKey(minNode(root));
+    }
+
+    /**
+     * Returns the largest key in the map
+     * @throws NoSuchElementException if the map is empty
+     *
+     * Complexity O(log(n)), where n is the number of items in the map
+     */
+    public int maxKey() {
+        if (empty()) {
+            throw new NoSuchElementException("The map is empty");
+        }
+        return getKey(maxNode(root));
+    }
+
+    /**
+     * Returns the value of the i'th smallest key, or the default value if i is not in 1..size()
+     *
+     * Complexity O(log(n)), where n is the number of items in the map (calls selectNode)
+     */
+    public int select(int i) {
+        int node = selectNode(i);
+        return node == NIL ? defaultValue : getValue(node);
+    }
+
+    /**
+     * Returns a sorted array which contains all keys in the map.
+     *
+     * Complexity O(n), where n is the number of items in the map (an in-order walk using the father links).
+     */
+    public int[] keysToArray() {
+        int[] result = new int[size()];
+        int index = 0;
+        for (int node = minNode(root); node != NIL; node = successor(node)) {
+            result[index++] = getKey(node);
+        }
+        return result;
+    }
+
+    /**
+     * Returns an array which contains all values in the map, sorted by their respective keys.
+     *
+     * Complexity O(n), where n is the number of items in the map (an in-order walk using the father links).
+     */
+    public int[] valuesToArray() {
+        int[] result = new int[size()];
+        int index = 0;
+        for (int node = minNode(root); node != NIL; node = successor(node)) {
+            result[index++] = getValue(node);
+        }
+        return result;
+    }
+
+    /**
+     * Removes all the items and releases the storage.
+     *
+     * Complexity O(1)
+     */
+    @Override
+    public void clear() {
+        super.clear();
+        keys = new int[1][];
+        values = new int[1][];
+    }
+}
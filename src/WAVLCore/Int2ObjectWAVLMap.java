@@ -0,0 +1,197 @@
+package WAVLCore;
+
+import java.util.NoSuchElementException;
+
+/**
+ * Int2ObjectWAVLMap
+ * <p>
+ * A WAVL Tree map with distinct int keys and object values.
+ * Keys and values live in primitive pages next to the node arrays of PagedWAVLTree,
+ * so no operation allocates a wrapper object for a key.
+ */
+public class Int2ObjectWAVLMap<V> extends PagedWAVLTree {
+
+    private int[][] keys = new int[1][];
+    private Object[][] values = new Object[1][];
+
+    @Override
+    void allocateEntryPage(int page) {
+        keys = growPageTable(keys, page);
+        values = growPageTable(values, page);
+        keys[page] = new int[PAGE_SIZE];
+        values[page] = new Object[PAGE_SIZE];
+    }
+
+    @Override
+    void clearEntry(int node) {
+        values[node >>> PAGE_SHIFT][node & PAGE_MASK] = null;
+    }
+
+    @Override
+    void copyEntry(int from, int to) {
+        setEntry(to, getKey(from), getValue(from));
+    }
+
+    private int getKey(int node) {
+        return keys[node >>> PAGE_SHIFT][node & PAGE_MASK];
+    }
+
+    @SuppressWarnings("unchecked")
+    private V getValue(int node) {
+        return (V) values[node >>> PAGE_SHIFT][node & PAGE_MASK];
+    }
+
+    private void setEntry(int node, int k, V v) {
+        keys[node >>> PAGE_SHIFT][node & PAGE_MASK] = k;
+        values[node >>> PAGE_SHIFT][node & PAGE_MASK] = v;
+    }
+
+    /**
+     * returns the node with key k if it exists in the map, otherwise the node that would be its father,
+     * or NIL if the map is empty
+     *
+     * Complexity O(log(n)), where n is the number of items in the map
+     */
+    private int searchNode(int k) {
+        int node = root;
+        int last = NIL;
+        while (node != NIL) {
+            last = node;
+            int key = getKey(node);
+            if (k == key) {
+                return node;
+            }
+            node = k < key ? getLeft(node) : getRight(node);
+        }
+        return last;
+    }
+
+    /**
+     * returns true if and only if an item with key k is in the map
+     *
+     * Complexity O(log(n)), where n is the number of items in the map (calls searchNode).
+     */
+    public boolean contains(int k) {
+        int node = searchNode(k);
+        return node != NIL && getKey(node) == k;
+    }
+
+    /**
+     * returns the value of the item with key k if it exists in the map, otherwise null
+     *
+     * Complexity O(log(n)), where n is the number of items in the map (calls searchNode).
+     */
+    public V search(int k) {
+        int node = searchNode(k);
+        return node != NIL && getKey(node) == k ? getValue(node) : null;
+    }
+
+    /**
+     * inserts an item with key k and value v to the map.
+     * returns the number of rebalancing operations, or 0 if no rebalancing operations were necessary.
+     * returns -1 if an item with key k already exists in the map.
+     *
+     * Complexity O(log(n)), where n is the number of items in the map (calls searchNode, attach).
+     */
+    public int insert(int k, V v) {
+        int father = searchNode(k);
+        if (father != NIL && getKey(father) == k) {
+            return -1; // Already exists
+        }
+
+        int node = allocateNode();
+        setEntry(node, k, v);
+        return attach(father, node, father != NIL && k < getKey(father));
+    }
+
+    /**
+     * deletes the item with key k from the map, if it is there.
+     * returns the number of rebalancing operations, or 0 if no rebalancing operations were needed.
+     * returns -1 if an item with key k was not found in the map.
+     *
+     * Complexity O(log(n)), where n is the number of items in the map (calls searchNode, deleteNode)
+     */
+    public int delete(int k) {
+        int node = searchNode(k);
+        if (node == NIL || getKey(node) != k) {
+            return -1;
+        }
+        return deleteNode(node);
+    }
+
+    /**
+     * Returns the smallest key in the map
+     * @throws NoSuchElementException if the map is empty
+     *
+     * Complexity O(log(n)), where n is the number of items in the map
+     */
+    public int minKey() {
+        if (empty()) {
+            throw new NoSuchElementException("The map is empty");
+        }
+        return getKey(minNode(root));
+    }
+
+    /**
+     * Returns the largest key in the map
+     * @throws NoSuchElementException if the map is empty
+     *
+     * Complexity O(log(n)), where n is the number of items in the map
+     */
+    public int maxKey() {
+        if (empty()) {
+            throw new NoSuchElementException("The map is empty");
+        }
+        return getKey(maxNode(root));
+    }
+
+    /**
+     * Returns the value of the i'th smallest key, or null if i is not in 1..size()
+     *
+     * Complexity O(log(n)), where n is the number of items in the map (calls selectNode)
+     */
+    public V select(int i) {
+        int node = selectNode(i);
+        return node == NIL ? null : getValue(node);
+    }
+
+    /**
+     * Returns a sorted array which contains all keys in the map.
+     *
+     * Complexity O(n), where n is the number of items in the map (an in-order walk using the father links).
+     */
+    public int[] keysToArray() {
+        int[] result = new int[size()];
+        int index = 0;
+        for (int node = minNode(root); node != NIL; node = successor(node)) {
+            result[index++] = getKey(node);
+        }
+        return result;
+    }
+
+    /**
+     * Returns an array which contains all values in the map, sorted by their respective keys.
+     *
+     * Complexity O(n), where n is the number of items in the map (an in-order walk using the father links).
+     */
+    public Object[] valuesToArray() {
+        Object[] result = new Object[size()];
+        int index = 0;
+        for (int node = minNode(root); node != NIL; node = successor(node)) {
+            result[index++] = getValue(node);
+        }
+        return result;
+    }
+
+    /**
+     * Removes all the items and releases the storage.
+     *
+     * Complexity O(1)
+     */
+    @Override
+    public void clear() {
+        super.clear();
+        keys = new int[1][];
+        values = new Object[1][];
+    }
+}
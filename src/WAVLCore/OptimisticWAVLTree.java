@@ -0,0 +1,810 @@
+package WAVLCore;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * OptimisticWAVLTree
+ * <p>
+ * A thread-safe tree with distinct int keys and String info, with fine-grained locking in the style of
+ * Bronson, Casper, Chafi and Olukotun (A Practical Concurrent Binary Search Tree, PPoPP 2010).
+ * <p>
+ * Despite the name, this is not a WAVL tree but the relaxed AVL tree of that paper (SnapTree): the rank of a node
+ * is its height, deleted items with two children stay as routing nodes, and balance is repaired lazily.
+ * It shares the operations of WAVLTree, not its rank rules or its rebalancing cases.
+ * <p>
+ * Readers do not lock and do not write. Every node has a version that a rotation changes when the node moves down
+ * (the key range of its subtree shrinks), and a reader going down from a node to its child validates the version of
+ * the node after reading the child, hand over hand, so it never leaves the subtree that holds its key.
+ * A reader that fails the validation retries from the parent of the node.
+ * <p>
+ * Writers lock a node with its monitor, and only lock the nodes they change: an insert locks the father of the new
+ * leaf, and a promote, rotate or double rotate locks the node, its father and the one or two children that move,
+ * always from the top down. Balance is relaxed: the writer that damages a node repairs it (and then its ancestors)
+ * after it is linked, so other writers may see a node that is out of balance for a while.
+ * The rank of every node is its height (1,1 and 1,2 nodes, leaves of rank 0, also after deletions, where a WAVL tree
+ * would allow 2,2 nodes): the rank is a function of the ranks of the children, so writers that repair the same node
+ * concurrently agree on it.
+ * <p>
+ * A deleted item with two children stays in the tree as a routing node (its info is null) until one of its
+ * children is unlinked, so a delete never has to move an item. size() is a counter next to the tree, and the
+ * array methods walk the tree without a lock, so they are exact only when the tree is not changed concurrently.
+ */
+public class OptimisticWAVLTree {
+
+    /**
+     * The version bits: a node that was unlinked has version UNLINKED, and the version of a node in the middle
+     * of a rotation has CHANGING set. endChange clears CHANGING and increments the version.
+     */
+    private static final long UNLINKED = 1L;
+    private static final long CHANGING = 2L;
+
+    private static final int RETRY = 2;
+    private static final Object RETRY_SEARCH = new Object();
+
+    /**
+     * The results of nodeCondition besides a new rank.
+     */
+    private static final int NOTHING_REQUIRED = -3;
+    private static final int UNLINK_REQUIRED = -2;
+    private static final int REBALANCE_REQUIRED = -4;
+
+    static final class Node {
+        final int key;
+        volatile String value;
+        volatile int rank;
+        volatile long version;
+        volatile Node father;
+        volatile Node left;
+        volatile Node right;
+
+        Node(int key, String value, Node father) {
+            this.key = key;
+            this.value = value;
+            this.father = father;
+        }
+
+        Node child(boolean goLeft) {
+            return goLeft ? left : right;
+        }
+    }
+
+    /**
+     * The root of the tree is the right child of the holder, which is never rotated or unlinked.
+     */
+    private final Node holder = new Node(Integer.MIN_VALUE, null, null);
+    private final LongAdder size = new LongAdder();
+
+    /**
+     * returns the info of the item with key k if it exists in the tree, otherwise null
+     *
+     * Complexity O(log(n)), where n is the number of nodes in the tree (without contention)
+     */
+    public String search(int k) {
+        while (true) {
+            Object result = attemptSearch(k, holder, false, holder.version);
+            if (result != RETRY_SEARCH) {
+                return (String) result;
+            }
+        }
+    }
+
+    private Object attemptSearch(int k, Node node, boolean goLeft, long nodeVersion) {
+        while (true) {
+            Node child = node.child(goLeft);
+            if (child == null) {
+                return node.version != nodeVersion ? RETRY_SEARCH : null;
+            }
+            if (k == child.key) {
+                return child.value;
+            }
+            long childVersion = child.version;
+            if ((childVersion & (CHANGING | UNLINKED)) != 0) {
+                waitUntilChanged(child, childVersion);
+                if (node.version != nodeVersion) {
+                    return RETRY_SEARCH;
+                }
+            } else if (child != node.child(goLeft)) {
+                if (node.version != nodeVersion) {
+                    return RETRY_SEARCH;
+                }
+            } else {
+                if (node.version != nodeVersion) {
+                    return RETRY_SEARCH;
+                }
+                Object result = attemptSearch(k, child, k < child.key, childVersion);
+                if (result != RETRY_SEARCH) {
+                    return result;
+                }
+            }
+        }
+    }
+
+    /**
+     * inserts an item with key k and info i
+     *
+     * @return 0 if the item was inserted, -1 if an item with key k already exists in the tree
+     * (the rebalancing of a concurrent tree is not counted, it may be shared with other writers)
+     * Complexity O(log(n)), where n is the number of nodes in the tree (without contention)
+     */
+    public int insert(int k, String i) {
+        if (i == null) {
+            throw new IllegalArgumentException("The info of an item can not be null");
+        }
+        while (true) {
+            int result = attemptInsert(k, i, holder, false, holder.version);
+            if (result != RETRY) {
+                if (result == 0) {
+                    size.increment();
+                }
+                return result;
+            }
+        }
+    }
+
+    private int attemptInsert(int k, String i, Node node, boolean goLeft, long nodeVersion) {
+        while (true) {
+            Node child = node.child(goLeft);
+            if (node.version != nodeVersion) {
+                return RETRY;
+            }
+            if (child == null) {
+                boolean linked = false;
+                synchronized (node) {
+                    if (node.version != nodeVersion) {
+                        return RETRY;
+                    }
+                    if (node.child(goLeft) == null) {
+                        Node leaf = new Node(k, i, node);
+                        if (goLeft) {
+                            node.left = leaf;
+                        } else {
+                            node.right = leaf;
+                        }
+                        linked = true;
+                    }
+                }
+                if (linked) {
+                    fixAndRebalance(node);
+                    return 0;
+                }
+                continue;
+            }
+            if (k == child.key) {
+                synchronized (child) {
+                    if (child.version != UNLINKED) {
+                        if (child.value != null) {
+                            return -1;
+                        }
+                        // A routing node becomes an item again
+                        child.value = i;
+                        return 0;
+                    }
+                }
+                continue;
+            }
+            long childVersion = child.version;
+            if ((childVersion & (CHANGING | UNLINKED)) != 0) {
+                waitUntilChanged(child, childVersion);
+                if (node.version != nodeVersion) {
+                    return RETRY;
+                }
+            } else if (child != node.child(goLeft)) {
+                if (node.version != nodeVersion) {
+                    return RETRY;
+                }
+            } else {
+                if (node.version != nodeVersion) {
+                    return RETRY;
+                }
+                int result = attemptInsert(k, i, child, k < child.key, childVersion);
+                if (result != RETRY) {
+                    return result;
+                }
+            }
+        }
+    }
+
+    /**
+     * deletes the item with key k if it exists in the tree
+     *
+     * @return 0 if the item was deleted, -1 if an item with key k was not found in the tree
+     * Complexity O(log(n)), where n is the number of nodes in the tree (without contention)
+     */
+    public int delete(int k) {
+        while (true) {
+            int result = attemptDelete(k, holder, false, holder.version);
+            if (result != RETRY) {
+                if (result == 0) {
+                    size.decrement();
+                }
+                return result;
+            }
+        }
+    }
+
+    private int attemptDelete(int k, Node node, boolean goLeft, long nodeVersion) {
+        while (true) {
+            Node child = node.child(goLeft);
+            if (node.version != nodeVersion) {
+                return RETRY;
+            }
+            if (child == null) {
+                return -1;
+            }
+            if (k == child.key) {
+                int result = attemptDeleteNode(node, child);
+                if (result != RETRY) {
+                    return result;
+                }
+                continue;
+            }
+            long childVersion = child.version;
+            if ((childVersion & (CHANGING | UNLINKED)) != 0) {
+                waitUntilChanged(child, childVersion);
+                if (node.version != nodeVersion) {
+                    return RETRY;
+                }
+            } else if (child != node.child(goLeft)) {
+                if (node.version != nodeVersion) {
+                    return RETRY;
+                }
+            } else {
+                if (node.version != nodeVersion) {
+                    return RETRY;
+                }
+                int result = attemptDelete(k, child, k < child.key, childVersion);
+                if (result != RETRY) {
+                    return result;
+                }
+            }
+        }
+    }
+
+    /**
+     * Deletes the item of node, a child of father: a node with two children becomes a routing node,
+     * any other node is unlinked.
+     */
+    private int attemptDeleteNode(Node father, Node node) {
+        if (node.value == null) {
+            return -1;
+        }
+        if (node.left != null && node.right != null) {
+            synchronized (node) {
+                if (node.version == UNLINKED || node.left == null || node.right == null) {
+                    return RETRY;
+                }
+                if (node.value == null) {
+                    return -1;
+                }
+                node.value = null;
+                return 0;
+            }
+        }
+
+        synchronized (father) {
+            if (father.version == UNLINKED || node.father != father) {
+                return RETRY;
+            }
+            synchronized (node) {
+                if (node.value == null) {
+                    return -1;
+                }
+                node.value = null;
+                if (node.left != null && node.right != null) {
+                    // It got a second child in the meantime
+                    return 0;
+                }
+                unlink(father, node);
+            }
+        }
+        fixAndRebalance(father);
+        return 0;
+    }
+
+    /**
+     * Replaces node, which has at most one child, by its child. Both node and father are locked.
+     *
+     * @return false if node is not a child of father or has two children
+     */
+    private static boolean unlink(Node father, Node node) {
+        Node left = node.left;
+        Node right = node.right;
+        if ((father.left != node && father.right != node) || (left != null && right != null)) {
+            return false;
+        }
+        Node splice = left != null ? left : right;
+        if (father.left == node) {
+            father.left = splice;
+        } else {
+            father.right = splice;
+        }
+        if (splice != null) {
+            splice.father = father;
+        }
+        node.version = UNLINKED;
+        node.value = null;
+        return true;
+    }
+
+    /**
+     * Returns the number of items in the tree
+     *
+     * Complexity O(p), where p is the number of processors
+     */
+    public int size() {
+        return size.intValue();
+    }
+
+    /**
+     * returns true if and only if the tree is empty
+     *
+     * Complexity O(p), where p is the number of processors
+     */
+    public boolean empty() {
+        return size() == 0;
+    }
+
+    /**
+     * Returns a sorted array which contains all keys in the tree (exact when the tree is not changed concurrently)
+     *
+     * Complexity O(n), where n is the number of nodes in the tree
+     */
+    public int[] keysToArray() {
+        int[] keys = new int[Math.max(16, size())];
+        int count = 0;
+        for (Node node = leftmost(holder.right); node != null; node = successor(node)) {
+            if (node.value != null) {
+                if (count == keys.length) {
+                    keys = Arrays.copyOf(keys, 2 * count);
+                }
+                keys[count++] = node.key;
+            }
+        }
+        return Arrays.copyOf(keys, count);
+    }
+
+    /**
+     * Returns an array which contains all info in the tree, sorted by their respective keys
+     * (exact when the tree is not changed concurrently)
+     *
+     * Complexity O(n), where n is the number of nodes in the tree
+     */
+    public String[] infoToArray() {
+        String[] info = new String[Math.max(16, size())];
+        int count = 0;
+        for (Node node = leftmost(holder.right); node != null; node = successor(node)) {
+            String value = node.value;
+            if (value != null) {
+                if (count == info.length) {
+                    info = Arrays.copyOf(info, 2 * count);
+                }
+                info[count++] = value;
+            }
+        }
+        return Arrays.copyOf(info, count);
+    }
+
+    private static Node leftmost(Node node) {
+        while (node != null && node.left != null) {
+            node = node.left;
+        }
+        return node;
+    }
+
+    private Node successor(Node node) {
+        if (node.right != null) {
+            return leftmost(node.right);
+        }
+        Node current = node;
+        while (current.father != holder && current.father.right == current) {
+            current = current.father;
+        }
+        return current.father == holder ? null : current.father;
+    }
+
+    /**
+     * Returns the rank of the root, -1 for an empty tree
+     *
+     * Complexity O(1)
+     */
+    public int rootRank() {
+        return rankOf(holder.right);
+    }
+
+    private static int rankOf(Node node) {
+        return node == null ? -1 : node.rank;
+    }
+
+    private static void waitUntilChanged(Node node, long version) {
+        if ((version & CHANGING) == 0) {
+            return;
+        }
+        for (int spins = 0; node.version == version; spins++) {
+            if (spins > 100) {
+                Thread.yield();
+            }
+        }
+    }
+
+    private static long beginChange(long version) {
+        return version | CHANGING;
+    }
+
+    private static long endChange(long version) {
+        return (version | CHANGING) + CHANGING;
+    }
+
+    // Rebalancing
+
+    /**
+     * Returns what node needs: NOTHING_REQUIRED, UNLINK_REQUIRED for a routing node with less than two children,
+     * REBALANCE_REQUIRED if the ranks of its children differ by more than 1, or its new rank.
+     * Reads node without locking it, so the answer is a hint that is checked again under the locks.
+     */
+    private static int nodeCondition(Node node) {
+        Node left = node.left;
+        Node right = node.right;
+        if ((left == null || right == null) && node.value == null) {
+            return UNLINK_REQUIRED;
+        }
+        int leftRank = rankOf(left);
+        int rightRank = rankOf(right);
+        int balance = leftRank - rightRank;
+        if (balance < -1 || balance > 1) {
+            return REBALANCE_REQUIRED;
+        }
+        int rank = 1 + Math.max(leftRank, rightRank);
+        return node.rank != rank ? rank : NOTHING_REQUIRED;
+    }
+
+    /**
+     * Repairs node and then its ancestors, until a node needs nothing.
+     * A promote or demote locks only the node, a rotation or an unlink also locks its father.
+     * A rotation may leave damage on two nodes of the rotated subtree and returns the lower one,
+     * so after a rotation or an unlink the walk checks all the ancestors (without locking the ones that need nothing).
+     */
+    private void fixAndRebalance(Node node) {
+        boolean restructured = false;
+        while (node != null && node != holder) {
+            int condition = nodeCondition(node);
+            if (node.version == UNLINKED) {
+                return;
+            }
+            Node next = null;
+            if (condition == UNLINK_REQUIRED || condition == REBALANCE_REQUIRED) {
+                next = node;
+                Node father = node.father;
+                synchronized (father) {
+                    if (father.version != UNLINKED && node.father == father) {
+                        synchronized (node) {
+                            restructured = true;
+                            next = rebalance(father, node);
+                        }
+                    }
+                }
+            } else if (condition != NOTHING_REQUIRED) {
+                synchronized (node) {
+                    next = fixRank(node);
+                }
+            }
+            if (next == null) {
+                if (!restructured) {
+                    return;
+                }
+                next = node.father;
+            }
+            node = next;
+        }
+    }
+
+    /**
+     * Sets the rank of node (locked) from the ranks of its children.
+     *
+     * @return the next node to repair, or null if there is none
+     */
+    private Node fixRank(Node node) {
+        int condition = nodeCondition(node);
+        switch (condition) {
+            case REBALANCE_REQUIRED:
+            case UNLINK_REQUIRED:
+                return node;
+            case NOTHING_REQUIRED:
+                return null;
+            default:
+                node.rank = condition;
+                return node.father;
+        }
+    }
+
+    /**
+     * Unlinks, rotates or promotes/demotes node. Both node and its father are locked.
+     *
+     * @return the next node to repair, or null if there is none
+     */
+    private Node rebalance(Node father, Node node) {
+        Node left = node.left;
+        Node right = node.right;
+        if ((left == null || right == null) && node.value == null) {
+            return unlink(father, node) ? fixRank(father) : node;
+        }
+
+        int leftRank = rankOf(left);
+        int rightRank = rankOf(right);
+        int balance = leftRank - rightRank;
+        if (balance > 1) {
+            return rebalanceToRight(father, node, left, rightRank);
+        } else if (balance < -1) {
+            return rebalanceToLeft(father, node, right, leftRank);
+        }
+        int rank = 1 + Math.max(leftRank, rightRank);
+        if (rank != node.rank) {
+            node.rank = rank;
+            return fixRank(father);
+        }
+        return null;
+    }
+
+    /**
+     * The left subtree of node is too high: rotates right, or rotates its left child left and then right.
+     */
+    private Node rebalanceToRight(Node father, Node node, Node left, int rightRank) {
+        synchronized (left) {
+            int leftRank = left.rank;
+            if (leftRank - rightRank <= 1) {
+                return node;
+            }
+            Node leftRight = left.right;
+            int leftLeftRank = rankOf(left.left);
+            int leftRightRank = rankOf(leftRight);
+            if (leftLeftRank >= leftRightRank) {
+                return rotateRight(father, node, left, rightRank, leftLeftRank, leftRight, leftRightRank);
+            }
+            synchronized (leftRight) {
+                leftRightRank = leftRight.rank;
+                if (leftLeftRank >= leftRightRank) {
+                    return rotateRight(father, node, left, rightRank, leftLeftRank, leftRight, leftRightRank);
+                }
+                int leftRightLeftRank = rankOf(leftRight.left);
+                int balance = leftLeftRank - leftRightLeftRank;
+                if (balance >= -1 && balance <= 1) {
+                    return rotateRightOverLeft(father, node, left, rightRank, leftLeftRank, leftRight, leftRightLeftRank);
+                }
+            }
+            // The double rotation would leave left out of balance, rotate it first
+            return rebalanceToLeft(node, left, leftRight, leftLeftRank);
+        }
+    }
+
+    /**
+     * The right subtree of node is too high: rotates left, or rotates its right child right and then left.
+     */
+    private Node rebalanceToLeft(Node father, Node node, Node right, int leftRank) {
+        synchronized (right) {
+            int rightRank = right.rank;
+            if (rightRank - leftRank <= 1) {
+                return node;
+            }
+            Node rightLeft = right.left;
+            int rightRightRank = rankOf(right.right);
+            int rightLeftRank = rankOf(rightLeft);
+            if (rightRightRank >= rightLeftRank) {
+                return rotateLeft(father, node, right, leftRank, rightRightRank, rightLeft, rightLeftRank);
+            }
+            synchronized (rightLeft) {
+                rightLeftRank = rightLeft.rank;
+                if (rightRightRank >= rightLeftRank) {
+                    return rotateLeft(father, node, right, leftRank, rightRightRank, rightLeft, rightLeftRank);
+                }
+                int rightLeftRightRank = rankOf(rightLeft.right);
+                int balance = rightRightRank - rightLeftRightRank;
+                if (balance >= -1 && balance <= 1) {
+                    return rotateLeftOverRight(father, node, right, leftRank, rightRightRank, rightLeft, rightLeftRightRank);
+                }
+            }
+            // The double rotation would leave right out of balance, rotate it first
+            return rebalanceToRight(node, right, rightLeft, rightRightRank);
+        }
+    }
+
+    /**
+     * Rotates left up over node. node moves down, so its version is changed while it moves.
+     * father, node and left are locked.
+     */
+    private Node rotateRight(Node father, Node node, Node left, int rightRank, int leftLeftRank,
+                             Node leftRight, int leftRightRank) {
+        long nodeVersion = node.version;
+        node.version = beginChange(nodeVersion);
+
+        node.left = leftRight;
+        if (leftRight != null) {
+            leftRight.father = node;
+        }
+        left.right = node;
+        node.father = left;
+        replaceChild(father, node, left);
+
+        int nodeRank = 1 + Math.max(leftRightRank, rightRank);
+        node.rank = nodeRank;
+        left.rank = 1 + Math.max(leftLeftRank, nodeRank);
+
+        node.version = endChange(nodeVersion);
+
+        int nodeBalance = leftRightRank - rightRank;
+        if (nodeBalance < -1 || nodeBalance > 1) {
+            return node;
+        }
+        if ((leftRight == null || rightRank == -1) && node.value == null) {
+            return node;
+        }
+        int leftBalance = leftLeftRank - nodeRank;
+        if (leftBalance < -1 || leftBalance > 1) {
+            return left;
+        }
+        if (leftLeftRank == -1 && left.value == null) {
+            return left;
+        }
+        return fixRank(father);
+    }
+
+    /**
+     * Rotates right up over node (the mirror of rotateRight).
+     */
+    private Node rotateLeft(Node father, Node node, Node right, int leftRank, int rightRightRank,
+                            Node rightLeft, int rightLeftRank) {
+        long nodeVersion = node.version;
+        node.version = beginChange(nodeVersion);
+
+        node.right = rightLeft;
+        if (rightLeft != null) {
+            rightLeft.father = node;
+        }
+        right.left = node;
+        node.father = right;
+        replaceChild(father, node, right);
+
+        int nodeRank = 1 + Math.max(leftRank, rightLeftRank);
+        node.rank = nodeRank;
+        right.rank = 1 + Math.max(nodeRank, rightRightRank);
+
+        node.version = endChange(nodeVersion);
+
+        int nodeBalance = rightLeftRank - leftRank;
+        if (nodeBalance < -1 || nodeBalance > 1) {
+            return node;
+        }
+        if ((rightLeft == null || leftRank == -1) && node.value == null) {
+            return node;
+        }
+        int rightBalance = rightRightRank - nodeRank;
+        if (rightBalance < -1 || rightBalance > 1) {
+            return right;
+        }
+        if (rightRightRank == -1 && right.value == null) {
+            return right;
+        }
+        return fixRank(father);
+    }
+
+    /**
+     * Rotates leftRight up over left and then over node. node and left move down.
+     * father, node, left and leftRight are locked.
+     */
+    private Node rotateRightOverLeft(Node father, Node node, Node left, int rightRank, int leftLeftRank,
+                                     Node leftRight, int leftRightLeftRank) {
+        long nodeVersion = node.version;
+        long leftVersion = left.version;
+        Node leftRightLeft = leftRight.left;
+        Node leftRightRight = leftRight.right;
+        int leftRightRightRank = rankOf(leftRightRight);
+
+        node.version = beginChange(nodeVersion);
+        left.version = beginChange(leftVersion);
+
+        node.left = leftRightRight;
+        if (leftRightRight != null) {
+            leftRightRight.father = node;
+        }
+        left.right = leftRightLeft;
+        if (leftRightLeft != null) {
+            leftRightLeft.father = left;
+        }
+        leftRight.left = left;
+        left.father = leftRight;
+        leftRight.right = node;
+        node.father = leftRight;
+        replaceChild(father, node, leftRight);
+
+        int nodeRank = 1 + Math.max(leftRightRightRank, rightRank);
+        node.rank = nodeRank;
+        int leftRank = 1 + Math.max(leftLeftRank, leftRightLeftRank);
+        left.rank = leftRank;
+
+        node.version = endChange(nodeVersion);
+        left.version = endChange(leftVersion);
+
+        // A routing node that lost a child is unlinked while leftRight, its new father, is still locked
+        if (left.value == null && (left.left == null || left.right == null) && unlink(leftRight, left)) {
+            leftRank = rankOf(leftRight.left);
+        }
+        leftRight.rank = 1 + Math.max(leftRank, nodeRank);
+
+        int nodeBalance = leftRightRightRank - rightRank;
+        if (nodeBalance < -1 || nodeBalance > 1) {
+            return node;
+        }
+        if ((leftRightRight == null || rightRank == -1) && node.value == null) {
+            return node;
+        }
+        int balance = leftRank - nodeRank;
+        if (balance < -1 || balance > 1) {
+            return leftRight;
+        }
+        return fixRank(father);
+    }
+
+    /**
+     * Rotates rightLeft up over right and then over node (the mirror of rotateRightOverLeft).
+     */
+    private Node rotateLeftOverRight(Node father, Node node, Node right, int leftRank, int rightRightRank,
+                                     Node rightLeft, int rightLeftRightRank) {
+        long nodeVersion = node.version;
+        long rightVersion = right.version;
+        Node rightLeftLeft = rightLeft.left;
+        Node rightLeftRight = rightLeft.right;
+        int rightLeftLeftRank = rankOf(rightLeftLeft);
+
+        node.version = beginChange(nodeVersion);
+        right.version = beginChange(rightVersion);
+
+        node.right = rightLeftLeft;
+        if (rightLeftLeft != null) {
+            rightLeftLeft.father = node;
+        }
+        right.left = rightLeftRight;
+        if (rightLeftRight != null) {
+            rightLeftRight.father = right;
+        }
+        rightLeft.right = right;
+        right.father = rightLeft;
+        rightLeft.left = node;
+        node.father = rightLeft;
+        replaceChild(father, node, rightLeft);
+
+        int nodeRank = 1 + Math.max(leftRank, rightLeftLeftRank);
+        node.rank = nodeRank;
+        int rightRank = 1 + Math.max(rightLeftRightRank, rightRightRank);
+        right.rank = rightRank;
+
+        node.version = endChange(nodeVersion);
+        right.version = endChange(rightVersion);
+
+        // A routing node that lost a child is unlinked while rightLeft, its new father, is still locked
+        if (right.value == null && (right.left == null || right.right == null) && unlink(rightLeft, right)) {
+            rightRank = rankOf(rightLeft.right);
+        }
+        rightLeft.rank = 1 + Math.max(nodeRank, rightRank);
+
+        int nodeBalance = rightLeftLeftRank - leftRank;
+        if (nodeBalance < -1 || nodeBalance > 1) {
+            return node;
+        }
+        if ((rightLeftLeft == null || leftRank == -1) && node.value == null) {
+            return node;
+        }
+        int balance = rightRank - nodeRank;
+        if (balance < -1 || balance > 1) {
+            return rightLeft;
+        }
+        return fixRank(father);
+    }
+
+    private static void replaceChild(Node father, Node oldChild, Node newChild) {
+        if (father.left == oldChild) {
+            father.left = newChild;
+        } else {
+            father.right = newChild;
+        }
+        newChild.father = father;
+    }
+}
@@ -0,0 +1,185 @@
+package WAVLCore;
+
+import java.util.Arrays;
+
+/**
+ * PagedWAVLTree
+ * <p>
+ * Struct-of-arrays node storage for the int handle based WAVL engines.
+ * Every node field lives in its own primitive array, the arrays are split into fixed size
+ * pages so the storage grows in chunks without ever copying the existing nodes.
+ * Subclasses add the key and value pages using the same page layout.
+ * The primitive maps (Int2IntWAVLMap, Int2ObjectWAVLMap, Long2LongWAVLMap, Long2ObjectWAVLMap and Long2DoubleWAVLMap)
+ * are written by hand as type substitutions of each other, there is no generator, so a change to one of them
+ * must be made in all of them.
+ */
+abstract class PagedWAVLTree extends IndexedWAVLTree {
+
+    /**
+     * The number of nodes in a single page is 2^PAGE_SHIFT.
+     */
+    static final int PAGE_SHIFT = 13;
+    static final int PAGE_SIZE = 1 << PAGE_SHIFT;
+    static final int PAGE_MASK = PAGE_SIZE - 1;
+
+    /**
+     * The ranks of the nodes, a WAVL rank is at most 2*log(n) so a byte is enough.
+     */
+    private byte[][] ranks = new byte[1][];
+    private int[][] subtreeSizes = new int[1][];
+    private int[][] lefts = new int[1][];
+    private int[][] rights = new int[1][];
+    private int[][] fathers = new int[1][];
+
+    /**
+     * The number of allocated pages.
+     */
+    private int pages = 0;
+
+    /**
+     * The number of handles ever handed out, handles below it are either in the tree or in the free list.
+     */
+    private int highWaterMark = 0;
+
+    /**
+     * Head of the list of freed handles, chained through the left links.
+     */
+    private int freeList = NIL;
+
+    /**
+     * Called whenever a new page is added, subclasses allocate their key/value page here.
+     *
+     * @param page the index of the new page
+     */
+    abstract void allocateEntryPage(int page);
+
+    /**
+     * Called when a node is freed, subclasses drop references held by its value slot here.
+     */
+    abstract void clearEntry(int node);
+
+    /**
+     * @return a new page table holding the pages of table and room for at least page + 1 pages
+     */
+    static <T> T[] growPageTable(T[] table, int page) {
+        if (page < table.length) {
+            return table;
+        }
+        return Arrays.copyOf(table, Math.max(page + 1, table.length * 2));
+    }
+
+    /**
+     * Allocates a node handle, reusing freed handles first.
+     * Complexity O(1) amortized
+     */
+    final int allocateNode() {
+        if (freeList != NIL) {
+            int node = freeList;
+            freeList = getLeft(node);
+            return node;
+        }
+
+        if (highWaterMark == pages << PAGE_SHIFT) {
+            addPage();
+        }
+        return highWaterMark++;
+    }
+
+    @Override
+    final void freeNode(int node) {
+        clearEntry(node);
+        setFather(node, NIL);
+        setRight(node, NIL);
+        setLeft(node, freeList);
+        freeList = node;
+    }
+
+    /**
+     * Adds a page to every node array.
+     * Complexity O(PAGE_SIZE)
+     */
+    private void addPage() {
+        int page = pages;
+
+        ranks = growPageTable(ranks, page);
+        subtreeSizes = growPageTable(subtreeSizes, page);
+        lefts = growPageTable(lefts, page);
+        rights = growPageTable(rights, page);
+        fathers = growPageTable(fathers, page);
+
+        ranks[page] = new byte[PAGE_SIZE];
+        subtreeSizes[page] = new int[PAGE_SIZE];
+        lefts[page] = new int[PAGE_SIZE];
+        rights[page] = new int[PAGE_SIZE];
+        fathers[page] = new int[PAGE_SIZE];
+        allocateEntryPage(page);
+
+        pages++;
+    }
+
+    /**
+     * Drops all the nodes and pages.
+     * Complexity O(1)
+     */
+    void clear() {
+        ranks = new byte[1][];
+        subtreeSizes = new int[1][];
+        lefts = new int[1][];
+        rights = new int[1][];
+        fathers = new int[1][];
+        pages = 0;
+        highWaterMark = 0;
+        freeList = NIL;
+        root = NIL;
+    }
+
+    @Override
+    final int getRank(int node) {
+        return ranks[node >>> PAGE_SHIFT][node & PAGE_MASK];
+    }
+
+    @Override
+    final void setRank(int node, int rank) {
+        ranks[node >>> PAGE_SHIFT][node & PAGE_MASK] = (byte) rank;
+    }
+
+    @Override
+    final int getSubtreeSize(int node) {
+        return subtreeSizes[node >>> PAGE_SHIFT][node & PAGE_MASK];
+    }
+
+    @Override
+    final void setSubtreeSize(int node, int subtreeSize) {
+        subtreeSizes[node >>> PAGE_SHIFT][node & PAGE_MASK] = subtreeSize;
+    }
+
+    @Override
+    final int getLeft(int node) {
+        return lefts[node >>> PAGE_SHIFT][node & PAGE_MASK];
+    }
+
+    @Override
+    final void setLeft(int node, int left) {
+        lefts[node >>> PAGE_SHIFT][node & PAGE_MASK] = left;
+    }
+
+    @Override
+    final int getRight(int node) {
+        return rights[node >>> PAGE_SHIFT][node & PAGE_MASK];
+    }
+
+    @Override
+    final void setRight(int node, int right) {
+        rights[node >>> PAGE_SHIFT][node & PAGE_MASK] = right;
+    }
+
+    @Override
+    final int getFather(int node) {
+        return fathers[node >>> PAGE_SHIFT][node & PAGE_MASK];
+    }
+
+    @Override
+    final void setFather(int node, int father) {
+        fathers[node >>> PAGE_SHIFT][node & PAGE_MASK] = father;
+    }
+}
@@ -0,0 +1,418 @@
+package WAVLCore;
+
+/**
+ * PersistentWAVLTree
+ * <p>
+ * An immutable WAVL tree with distinct integer keys and info.
+ * insert and delete return a new tree that shares all the nodes off the search path with this one (path copying),
+ * so every tree is a snapshot that costs O(1) to keep, and it can be read by any number of threads without locks.
+ * <p>
+ * The nodes have no father links (a shared node has many fathers), so the rebalancing runs bottom-up
+ * as the recursion returns: every level gets the new subtree of its child and fixes its own rank differences.
+ */
+public final class PersistentWAVLTree {
+
+    private static final PersistentWAVLTree EMPTY = new PersistentWAVLTree(null);
+
+    /**
+     * The root node of the tree, in an empty tree this is null.
+     */
+    private final Node root;
+
+    private PersistentWAVLTree(Node root) {
+        this.root = root;
+    }
+
+    /**
+     * returns the empty tree
+     *
+     * Complexity O(1)
+     */
+    public static PersistentWAVLTree empty() {
+        return EMPTY;
+    }
+
+    /**
+     * returns true if and only if the tree is empty
+     *
+     * Complexity O(1)
+     */
+    public boolean isEmpty() {
+        return root == null;
+    }
+
+    /**
+     * Returns the number of items in the tree
+     *
+     * Complexity O(1)
+     */
+    public int size() {
+        return sizeOf(root);
+    }
+
+    /**
+     * returns the info of the item with key k if it exists in the tree, otherwise null
+     *
+     * Complexity O(log(n)), where n is the number of items in the tree
+     */
+    public String search(int k) {
+        Node node = root;
+        while (node != null) {
+            if (k == node.key) {
+                return node.info;
+            }
+            node = k < node.key ? node.left : node.right;
+        }
+        return null;
+    }
+
+    /**
+     * Returns a tree with the items of this tree and the item (k, i), or this tree if it has an item with key k.
+     *
+     * Complexity O(log(n)) time and new nodes, where n is the number of items in the tree
+     */
+    public PersistentWAVLTree insert(int k, String i) {
+        Node newRoot = insert(root, k, i);
+        return newRoot == root ? this : new PersistentWAVLTree(newRoot);
+    }
+
+    /**
+     * Returns a tree with the items of this tree except the one with key k, or this tree if there is no such item.
+     *
+     * Complexity O(log(n)) time and new nodes, where n is the number of items in the tree
+     */
+    public PersistentWAVLTree delete(int k) {
+        Node newRoot = delete(root, k);
+        if (newRoot == root) {
+            return this;
+        }
+        return newRoot == null ? EMPTY : new PersistentWAVLTree(newRoot);
+    }
+
+    /**
+     * Returns the info of the item with the smallest key in the tree, or null if the tree is empty
+     *
+     * Complexity O(log(n)), where n is the number of items in the tree
+     */
+    public String min() {
+        return root == null ? null : minNode(root).info;
+    }
+
+    /**
+     * Returns the info of the item with the largest key in the tree, or null if the tree is empty
+     *
+     * Complexity O(log(n)), where n is the number of items in the tree
+     */
+    public String max() {
+        if (root == null) {
+            return null;
+        }
+        Node node = root;
+        while (node.right != null) {
+            node = node.right;
+        }
+        return node.info;
+    }
+
+    /**
+     * Returns the info of the i'th smallest key, or null if i is not in 1..size()
+     *
+     * Complexity O(log(n)), where n is the number of items in the tree
+     */
+    public String select(int i) {
+        Node node = root;
+        while (node != null) {
+            int leftSize = sizeOf(node.left);
+            if (i == leftSize + 1) {
+                return node.info;
+            } else if (i <= leftSize) {
+                node = node.left;
+            } else {
+                i -= leftSize + 1;
+                node = node.right;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns a sorted array which contains all keys in the tree.
+     *
+     * Complexity O(n), where n is the number of items in the tree
+     */
+    public int[] keysToArray() {
+        int[] keys = new int[size()];
+        fillKeys(root, keys, 0);
+        return keys;
+    }
+
+    /**
+     * Returns an array which contains all info in the tree, sorted by their respective keys.
+     *
+     * Complexity O(n), where n is the number of items in the tree
+     */
+    public String[] infoToArray() {
+        String[] info = new String[size()];
+        fillInfo(root, info, 0);
+        return info;
+    }
+
+    private static int fillKeys(Node node, int[] keys, int index) {
+        if (node == null) {
+            return index;
+        }
+        index = fillKeys(node.left, keys, index);
+        keys[index++] = node.key;
+        return fillKeys(node.right, keys, index);
+    }
+
+    private static int fillInfo(Node node, String[] info, int index) {
+        if (node == null) {
+            return index;
+        }
+        index = fillInfo(node.left, info, index);
+        info[index++] = node.info;
+        return fillInfo(node.right, info, index);
+    }
+
+    // Path copying insert and delete:
+
+    /**
+     * returns the subtree of node with the item (k, i) inserted, or node itself if it has an item with key k
+     *
+     * Complexity O(log(n)), where n is the size of the subtree
+     */
+    private static Node insert(Node node, int k, String i) {
+        if (node == null) {
+            return new Node(k, i, 0, null, null);
+        }
+        if (k == node.key) {
+            return node; // Already exists
+        }
+
+        if (k < node.key) {
+            Node left = insert(node.left, k, i);
+            return left == node.left ? node : insertRebalanceLeft(node, left);
+        } else {
+            Node right = insert(node.right, k, i);
+            return right == node.right ? node : insertRebalanceRight(node, right);
+        }
+    }
+
+    /**
+     * returns a copy of node with left as its new left subtree, after an insert into the left subtree.
+     * left may have the rank of node (a 0-child), then node is promoted if its right child is a 1-child,
+     * otherwise it is fixed by a single or a double rotation.
+     *
+     * Complexity O(1)
+     */
+    private static Node insertRebalanceLeft(Node node, Node left) {
+        int rank = node.rank;
+        if (left.rank < rank) {
+            return node.withLeft(left);
+        }
+
+        if (rank - rankOf(node.right) == 1) { // Promote
+            return new Node(node.key, node.info, rank + 1, left, node.right);
+        }
+
+        if (left.rank - rankOf(left.left) == 1) { // Single rotate right
+            Node demoted = new Node(node.key, node.info, rank - 1, left.right, node.right);
+            return new Node(left.key, left.info, left.rank, left.left, demoted);
+        }
+
+        // Double rotate, the right child of left goes up:
+        Node middle = left.right;
+        Node newLeft = new Node(left.key, left.info, left.rank - 1, left.left, middle.left);
+        Node newRight = new Node(node.key, node.info, rank - 1, middle.right, node.right);
+        return new Node(middle.key, middle.info, middle.rank + 1, newLeft, newRight);
+    }
+
+    /**
+     * The mirror of insertRebalanceLeft.
+     *
+     * Complexity O(1)
+     */
+    private static Node insertRebalanceRight(Node node, Node right) {
+        int rank = node.rank;
+        if (right.rank < rank) {
+            return node.withRight(right);
+        }
+
+        if (rank - rankOf(node.left) == 1) { // Promote
+            return new Node(node.key, node.info, rank + 1, node.left, right);
+        }
+
+        if (right.rank - rankOf(right.right) == 1) { // Single rotate left
+            Node demoted = new Node(node.key, node.info, rank - 1, node.left, right.left);
+            return new Node(right.key, right.info, right.rank, demoted, right.right);
+        }
+
+        // Double rotate, the left child of right goes up:
+        Node middle = right.left;
+        Node newLeft = new Node(node.key, node.info, rank - 1, node.left, middle.left);
+        Node newRight = new Node(right.key, right.info, right.rank - 1, middle.right, right.right);
+        return new Node(middle.key, middle.info, middle.rank + 1, newLeft, newRight);
+    }
+
+    /**
+     * returns the subtree of node without the item with key k, or node itself if there is no such item
+     *
+     * Complexity O(log(n)), where n is the size of the subtree
+     */
+    private static Node delete(Node node, int k) {
+        if (node == null) {
+            return null;
+        }
+
+        if (k < node.key) {
+            Node left = delete(node.left, k);
+            return left == node.left ? node : deleteRebalanceLeft(node, left);
+        } else if (k > node.key) {
+            Node right = delete(node.right, k);
+            return right == node.right ? node : deleteRebalanceRight(node, right);
+        }
+
+        // Unary or leaf, the child takes the place of node:
+        if (node.left == null) {
+            return node.right;
+        }
+        if (node.right == null) {
+            return node.left;
+        }
+
+        // Binary, the successor takes the place of node:
+        Node successor = minNode(node.right);
+        Node right = delete(node.right, successor.key);
+        return deleteRebalanceRight(new Node(successor.key, successor.info, node.rank, node.left, node.right), right);
+    }
+
+    /**
+     * returns a copy of node with left as its new left subtree, after a delete from the left subtree.
+     * The rank of the left subtree is at most one lower than before, so left may be a 3-child:
+     * node is then demoted if its right child is a 2-child, both are demoted if the right child is a 2,2 node,
+     * otherwise it is fixed by a single or a double rotation.
+     *
+     * Complexity O(1)
+     */
+    private static Node deleteRebalanceLeft(Node node, Node left) {
+        int rank = node.rank;
+        Node right = node.right;
+
+        if (left == null && right == null) { // A leaf has rank 0
+            return new Node(node.key, node.info, 0, null, null);
+        }
+        if (rank - rankOf(left) <= 2) {
+            return new Node(node.key, node.info, rank, left, right);
+        }
+
+        if (rank - rankOf(right) == 2) { // Demote
+            return new Node(node.key, node.info, rank - 1, left, right);
+        }
+
+        int rightRank = right.rank;
+        if (rightRank - rankOf(right.left) == 2 && rightRank - rankOf(right.right) == 2) { // Double demote
+            return new Node(node.key, node.info, rank - 1, left, right.withRank(rightRank - 1));
+        }
+
+        if (rightRank - rankOf(right.right) == 1) { // Single rotate left
+            Node demoted = left == null && right.left == null
+                    ? new Node(node.key, node.info, 0, null, null) // A leaf is demoted twice
+                    : new Node(node.key, node.info, rank - 1, left, right.left);
+            return new Node(right.key, right.info, rightRank + 1, demoted, right.right);
+        }
+
+        // Double rotate, the left child of right goes up:
+        Node middle = right.left;
+        Node newLeft = new Node(node.key, node.info, rank - 2, left, middle.left);
+        Node newRight = new Node(right.key, right.info, rightRank - 1, middle.right, right.right);
+        return new Node(middle.key, middle.info, middle.rank + 2, newLeft, newRight);
+    }
+
+    /**
+     * The mirror of deleteRebalanceLeft.
+     *
+     * Complexity O(1)
+     */
+    private static Node deleteRebalanceRight(Node node, Node right) {
+        int rank = node.rank;
+        Node left = node.left;
+
+        if (left == null && right == null) { // A leaf has rank 0
+            return new Node(node.key, node.info, 0, null, null);
+        }
+        if (rank - rankOf(right) <= 2) {
+            return new Node(node.key, node.info, rank, left, right);
+        }
+
+        if (rank - rankOf(left) == 2) { // Demote
+            return new Node(node.key, node.info, rank - 1, left, right);
+        }
+
+        int leftRank = left.rank;
+        if (leftRank - rankOf(left.left) == 2 && leftRank - rankOf(left.right) == 2) { // Double demote
+            return new Node(node.key, node.info, rank - 1, left.withRank(leftRank - 1), right);
+        }
+
+        if (leftRank - rankOf(left.left) == 1) { // Single rotate right
+            Node demoted = right == null && left.right == null
+                    ? new Node(node.key, node.info, 0, null, null) // A leaf is demoted twice
+                    : new Node(node.key, node.info, rank - 1, left.right, right);
+            return new Node(left.key, left.info, leftRank + 1, left.left, demoted);
+        }
+
+        // Double rotate, the right child of left goes up:
+        Node middle = left.right;
+        Node newLeft = new Node(left.key, left.info, leftRank - 1, left.left, middle.left);
+        Node newRight = new Node(node.key, node.info, rank - 2, middle.right, right);
+        return new Node(middle.key, middle.info, middle.rank + 2, newLeft, newRight);
+    }
+
+    private static Node minNode(Node node) {
+        while (node.left != null) {
+            node = node.left;
+        }
+        return node;
+    }
+
+    private static int rankOf(Node node) {
+        return node == null ? -1 : node.rank;
+    }
+
+    private static int sizeOf(Node node) {
+        return node == null ? 0 : node.size;
+    }
+
+    /**
+     * An immutable node, null stands for an external leaf (rank -1).
+     */
+    static final class Node {
+        final int key;
+        final String info;
+        final int rank;
+        final int size;
+        final Node left;
+        final Node right;
+
+        Node(int key, String info, int rank, Node left, Node right) {
+            this.key = key;
+            this.info = info;
+            this.rank = rank;
+            this.left = left;
+            this.right = right;
+            this.size = sizeOf(left) + sizeOf(right) + 1;
+        }
+
+        Node withLeft(Node newLeft) {
+            return new Node(key, info, rank, newLeft, right);
+        }
+
+        Node withRight(Node newRight) {
+            return new Node(key, info, rank, left, newRight);
+        }
+
+        Node withRank(int newRank) {
+            return new Node(key, info, newRank, left, right);
+        }
+    }
+}
@@ -0,0 +1,458 @@
+package WAVLCore;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * ShardedWAVLMap
+ * <p>
+ * A concurrent map with distinct int keys and String info, partitioned by key range into WAVLTree shards
+ * that each have their own lock, so operations on different shards run in parallel.
+ * <p>
+ * The shards are listed in an immutable directory that is replaced (copy on write) when the shards change:
+ * a shard that took many writes since the last rebalance, or grew to MAX_SHARD_SIZE, is split at its median key, and
+ * adjacent shards that took few writes are merged, both by WAVLTree split and join in O(log(n)). So under skewed keys
+ * the hot key range ends up in more, smaller shards, and no shard holds one lock over most of the keys. A shard that was split or merged is retired, and the directory without it is published
+ * before the shard is unlocked, so an operation that finds its shard retired after it got the lock retries on a directory
+ * that already holds the replacement.
+ * <p>
+ * size(), select(i) and the array methods combine the shards one after the other, so they are exact when the map
+ * is not changed concurrently, and otherwise each shard is seen at a different moment.
+ */
+public class ShardedWAVLMap {
+
+    /**
+     * The writes to a shard (since the last rebalance) that make it hot.
+     */
+    static final int HOT_WRITES = 1 << 14;
+
+    /**
+     * Adjacent shards are merged when both took less writes than this since the last rebalance,
+     * and the merged shard is smaller than MAX_SHARD_SIZE.
+     */
+    static final int COLD_WRITES = HOT_WRITES / 16;
+
+    /**
+     * A shard of this size is split even if it is not hot, merged shards stay below it.
+     */
+    static final int MAX_SHARD_SIZE = 1 << 20;
+
+    /**
+     * A hot shard is not split below this size.
+     */
+    static final int MIN_SPLIT_SIZE = 64;
+
+    private static final class Shard {
+        /**
+         * The smallest key the shard can hold, the shard holds the keys up to the lowKey of the next shard.
+         */
+        final int lowKey;
+        final WAVLTree tree;
+        final StampedLock lock = new StampedLock();
+
+        /**
+         * Set under the write lock when the shard is replaced in the directory.
+         */
+        boolean retired;
+
+        /**
+         * The size of tree, published for size() and select() without locking the shard.
+         */
+        volatile int size;
+
+        /**
+         * Writes since the last rebalance, changed under the write lock and read by the rebalance without it.
+         */
+        volatile int writes;
+
+        Shard(int lowKey, WAVLTree tree) {
+            this.lowKey = lowKey;
+            this.tree = tree;
+            this.size = tree.size();
+        }
+    }
+
+    private static final class Directory {
+        final int[] lowKeys;
+        final Shard[] shards;
+
+        Directory(Shard[] shards) {
+            this.shards = shards;
+            this.lowKeys = new int[shards.length];
+            for (int i = 0; i < shards.length; i++) {
+                lowKeys[i] = shards[i].lowKey;
+            }
+        }
+
+        /**
+         * returns the shard whose key range holds k
+         *
+         * Complexity O(log(s)), where s is the number of shards
+         */
+        Shard shardOf(int k) {
+            int index = Arrays.binarySearch(lowKeys, k);
+            return shards[index >= 0 ? index : -index - 2];
+        }
+    }
+
+    private volatile Directory directory;
+
+    /**
+     * Serializes the changes of the directory.
+     */
+    private final ReentrantLock rebalanceLock = new ReentrantLock();
+
+    /**
+     * @param shards the number of shards to start with, they split the int key range evenly
+     */
+    public ShardedWAVLMap(int shards) {
+        if (shards < 1) {
+            throw new IllegalArgumentException("There must be at least one shard");
+        }
+        Shard[] initial = new Shard[shards];
+        long width = (1L << 32) / shards;
+        for (int i = 0; i < shards; i++) {
+            initial[i] = new Shard((int) (Integer.MIN_VALUE + i * width), new WAVLTree());
+        }
+        directory = new Directory(initial);
+    }
+
+    public ShardedWAVLMap() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * returns the info of the item with key k if it exists in the map, otherwise null
+     *
+     * Complexity O(log(s) + log(n)), where s is the number of shards and n the size of the shard of k
+     */
+    public String search(int k) {
+        while (true) {
+            Shard shard = directory.shardOf(k);
+            long stamp = shard.lock.readLock();
+            try {
+                if (!shard.retired) {
+                    return shard.tree.search(k);
+                }
+            } finally {
+                shard.lock.unlockRead(stamp);
+            }
+        }
+    }
+
+    /**
+     * inserts an item with key k and info i, see WAVLTree.insert.
+     *
+     * Complexity O(log(s) + log(n)), where s is the number of shards and n the size of the shard of k
+     * (plus a rebalance when the shard becomes hot or reaches MAX_SHARD_SIZE)
+     */
+    public int insert(int k, String i) {
+        while (true) {
+            Shard shard = directory.shardOf(k);
+            int result;
+            boolean hot;
+            long stamp = shard.lock.writeLock();
+            try {
+                if (shard.retired) {
+                    continue;
+                }
+                result = shard.tree.insert(k, i);
+                shard.tree.flushAppends(); // So getRoot finds nothing to fix in select, under the read lock
+                shard.size = shard.tree.size();
+                hot = ++shard.writes >= HOT_WRITES || shard.size >= MAX_SHARD_SIZE;
+            } finally {
+                shard.lock.unlockWrite(stamp);
+            }
+            if (hot) {
+                tryRebalance();
+            }
+            return result;
+        }
+    }
+
+    /**
+     * deletes the item with key k, see WAVLTree.delete.
+     *
+     * Complexity O(log(s) + log(n)), where s is the number of shards and n the size of the shard of k
+     * (plus a rebalance when the shard becomes hot)
+     */
+    public int delete(int k) {
+        while (true) {
+            Shard shard = directory.shardOf(k);
+            int result;
+            boolean hot;
+            long stamp = shard.lock.writeLock();
+            try {
+                if (shard.retired) {
+                    continue;
+                }
+                result = shard.tree.delete(k);
+                shard.size = shard.tree.size();
+                hot = ++shard.writes >= HOT_WRITES;
+            } finally {
+                shard.lock.unlockWrite(stamp);
+            }
+            if (hot) {
+                tryRebalance();
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Returns the number of items in the map (the sum of the shard sizes)
+     *
+     * Complexity O(s), where s is the number of shards
+     */
+    public int size() {
+        int size = 0;
+        for (Shard shard : directory.shards) {
+            size += shard.size;
+        }
+        return size;
+    }
+
+    /**
+     * returns true if and only if the map is empty
+     *
+     * Complexity O(s), where s is the number of shards
+     */
+    public boolean empty() {
+        return size() == 0;
+    }
+
+    /**
+     * Returns the info of the i'th smallest key, or null if i is not in 1..size().
+     * The shard sizes lead to the shard of the i'th key, which is searched by its subtree sizes.
+     *
+     * Complexity O(s + log(n)), where s is the number of shards and n the size of the shard of the key
+     */
+    public String select(int i) {
+        retry:
+        while (true) {
+            int rank = i;
+            for (Shard shard : directory.shards) {
+                if (rank > shard.size) {
+                    rank -= shard.size;
+                    continue;
+                }
+                long stamp = shard.lock.readLock();
+                try {
+                    if (shard.retired) {
+                        continue retry;
+                    }
+                    if (rank < 1 || rank > shard.tree.size()) {
+                        return null;
+                    }
+                    return WAVLTree.nodeAt(shard.tree.getRoot(), rank - 1).getValue();
+                } finally {
+                    shard.lock.unlockRead(stamp);
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Returns a sorted array which contains all keys in the map.
+     *
+     * Complexity O(n + s), where n is the number of items and s the number of shards
+     */
+    public int[] keysToArray() {
+        retry:
+        while (true) {
+            Shard[] shards = directory.shards;
+            int[][] parts = new int[shards.length][];
+            int size = 0;
+            for (int index = 0; index < shards.length; index++) {
+                long stamp = shards[index].lock.readLock();
+                try {
+                    if (shards[index].retired) {
+                        continue retry;
+                    }
+                    parts[index] = shards[index].tree.keysToArray();
+                } finally {
+                    shards[index].lock.unlockRead(stamp);
+                }
+                size += parts[index].length;
+            }
+
+            int[] keys = new int[size];
+            int offset = 0;
+            for (int[] part : parts) {
+                System.arraycopy(part, 0, keys, offset, part.length);
+                offset += part.length;
+            }
+            return keys;
+        }
+    }
+
+    /**
+     * Returns an array which contains all info in the map, sorted by their respective keys.
+     *
+     * Complexity O(n + s), where n is the number of items and s the number of shards
+     */
+    public String[] infoToArray() {
+        retry:
+        while (true) {
+            Shard[] shards = directory.shards;
+            String[][] parts = new String[shards.length][];
+            int size = 0;
+            for (int index = 0; index < shards.length; index++) {
+                long stamp = shards[index].lock.readLock();
+                try {
+                    if (shards[index].retired) {
+                        continue retry;
+                    }
+                    parts[index] = shards[index].tree.infoToArray();
+                } finally {
+                    shards[index].lock.unlockRead(stamp);
+                }
+                size += parts[index].length;
+            }
+
+            String[] info = new String[size];
+            int offset = 0;
+            for (String[] part : parts) {
+                System.arraycopy(part, 0, info, offset, part.length);
+                offset += part.length;
+            }
+            return info;
+        }
+    }
+
+    /**
+     * Returns the number of shards
+     *
+     * Complexity O(1)
+     */
+    public int shardCount() {
+        return directory.shards.length;
+    }
+
+    private void tryRebalance() {
+        if (rebalanceLock.tryLock()) {
+            try {
+                rebalanceShards();
+            } finally {
+                rebalanceLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Splits the hot and the oversized shards and merges adjacent cold ones, then starts counting writes from 0 again.
+     * Runs concurrently with the other operations, only the shards it splits or merges are locked, one or two at a time.
+     *
+     * Complexity O(s + c (s + log(n))), where s is the number of shards, c the number of changed shards and n their size
+     */
+    public void rebalance() {
+        rebalanceLock.lock();
+        try {
+            rebalanceShards();
+        } finally {
+            rebalanceLock.unlock();
+        }
+    }
+
+    private void rebalanceShards() {
+        Shard[] shards = directory.shards;
+        int index = 0;
+        while (index < shards.length) {
+            Shard shard = shards[index];
+            Shard[] split = shard.writes >= HOT_WRITES || shard.size >= MAX_SHARD_SIZE ? split(shards, index) : null;
+            if (split != null) {
+                shards = split;
+                index += 2;
+            } else if (index + 1 < shards.length && isCold(shard) && isCold(shards[index + 1])
+                    && shard.size + shards[index + 1].size < MAX_SHARD_SIZE) {
+                shards = merge(shards, index);
+                index++;
+            } else {
+                index++;
+            }
+        }
+
+        for (Shard shard : shards) {
+            long stamp = shard.lock.writeLock();
+            shard.writes = 0;
+            shard.lock.unlockWrite(stamp);
+        }
+    }
+
+    private static boolean isCold(Shard shard) {
+        return shard.writes < COLD_WRITES;
+    }
+
+    /**
+     * Publishes a directory where the count shards from index are replaced by replacements.
+     * Called by the rebalance with the replaced shards locked, so no operation sees them retired before.
+     *
+     * @return the shards of the new directory
+     * Complexity O(s), where s is the number of shards
+     */
+    private Shard[] publish(Shard[] shards, int index, int count, Shard... replacements) {
+        Shard[] result = new Shard[shards.length - count + replacements.length];
+        System.arraycopy(shards, 0, result, 0, index);
+        System.arraycopy(replacements, 0, result, index, replacements.length);
+        System.arraycopy(shards, index + count, result, index + replacements.length, shards.length - index - count);
+        directory = new Directory(result);
+        return result;
+    }
+
+    /**
+     * Splits shards[index] at its median key, retires it and publishes the directory with the two halves.
+     *
+     * @return the shards of the new directory, or null if the shard is smaller than MIN_SPLIT_SIZE
+     * Complexity O(s + log(n)), where s is the number of shards and n the size of the shard
+     */
+    private Shard[] split(Shard[] shards, int index) {
+        Shard shard = shards[index];
+        long stamp = shard.lock.writeLock();
+        try {
+            if (shard.tree.size() < MIN_SPLIT_SIZE) {
+                return null;
+            }
+            int median = WAVLTree.nodeAt(shard.tree.getRoot(), shard.tree.size() / 2).getKey();
+            WAVLTree[] parts = shard.tree.split(median);
+            shard.retired = true;
+            return publish(shards, index, 1, new Shard(shard.lowKey, parts[0]), new Shard(median, parts[1]));
+        } finally {
+            shard.lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Joins shards[index] and shards[index + 1], retires them and publishes the directory with the merged shard.
+     *
+     * @return the shards of the new directory
+     * Complexity O(s + log(n)), where s is the number of shards and n the size of the shards
+     */
+    private Shard[] merge(Shard[] shards, int index) {
+        Shard low = shards[index];
+        Shard high = shards[index + 1];
+        long lowStamp = low.lock.writeLock();
+        long highStamp = high.lock.writeLock();
+        try {
+            WAVLTree tree;
+            if (high.tree.empty()) {
+                tree = low.tree;
+            } else {
+                // The smallest item of high joins the two trees:
+                WAVLCursor cursor = high.tree.cursor();
+                cursor.seekFirst();
+                int key = cursor.key();
+                String info = cursor.value();
+                high.tree.delete(key);
+                tree = WAVLTree.join(low.tree, key, info, high.tree);
+            }
+            low.retired = true;
+            high.retired = true;
+            return publish(shards, index, 2, new Shard(low.lowKey, tree));
+        } finally {
+            high.lock.unlockWrite(highStamp);
+            low.lock.unlockWrite(lowStamp);
+        }
+    }
+}
@@ -0,0 +1,202 @@
+package WAVLCore;
+
+/**
+ * WAVLArrayTree
+ * <p>
+ * A WAVL Tree with distinct integer keys and info, with the same operations as WAVLTree.
+ * Instead of a WAVLNode object per item, a node is an int index into parallel primitive
+ * arrays (keys, ranks, subtree sizes, links and info slots) that grow in pages,
+ * which removes the object headers, the boxed Integer fields and most of the GC work.
+ */
+public class WAVLArrayTree extends PagedWAVLTree {
+
+    private int[][] keys = new int[1][];
+    private String[][] infos = new String[1][];
+
+    @Override
+    void allocateEntryPage(int page) {
+        keys = growPageTable(keys, page);
+        infos = growPageTable(infos, page);
+        keys[page] = new int[PAGE_SIZE];
+        infos[page] = new String[PAGE_SIZE];
+    }
+
+    @Override
+    void clearEntry(int node) {
+        infos[node >>> PAGE_SHIFT][node & PAGE_MASK] = null;
+    }
+
+    @Override
+    void copyEntry(int from, int to) {
+        keys[to >>> PAGE_SHIFT][to & PAGE_MASK] = getKey(from);
+        infos[to >>> PAGE_SHIFT][to & PAGE_MASK] = getInfo(from);
+    }
+
+    private int getKey(int node) {
+        return keys[node >>> PAGE_SHIFT][node & PAGE_MASK];
+    }
+
+    private String getInfo(int node) {
+        return infos[node >>> PAGE_SHIFT][node & PAGE_MASK];
+    }
+
+    /**
+     * returns the node with key k if it exists in the tree, otherwise the node that would be its father,
+     * or NIL if the tree is empty
+     *
+     * Complexity O(log(n)), where n is the number of nodes in the tree
+     */
+    private int searchNode(int k) {
+        int node = root;
+        int last = NIL;
+        while (node != NIL) {
+            last = node;
+            int key = getKey(node);
+            if (k == key) {
+                return node;
+            }
+            node = k < key ? getLeft(node) : getRight(node);
+        }
+        return last;
+    }
+
+    /**
+     * public String search(int k)
+     * <p>
+     * returns the info of an item with key k if it exists in the tree
+     * otherwise, returns null
+     *
+     * Complexity O(log(n)), where n is the number of nodes in the tree (calls searchNode).
+     */
+    public String search(int k) {
+        int node = searchNode(k);
+        if (node != NIL && getKey(node) == k) {
+            return getInfo(node);
+        }
+        return null;
+    }
+
+    /**
+     * public int insert(int k, String i)
+     * <p>
+     * inserts an item with key k and info i to the WAVL tree.
+     * returns the number of rebalancing operations, or 0 if no rebalancing operations were necessary.
+     * returns -1 if an item with key k already exists in the tree.
+     *
+     * Complexity O(log(n)), where n is the number of nodes in the tree (calls searchNode, attach).
+     */
+    public int insert(int k, String i) {
+        int father = searchNode(k);
+        if (father != NIL && getKey(father) == k) {
+            return -1; // Already exists
+        }
+
+        int node = allocateNode();
+        keys[node >>> PAGE_SHIFT][node & PAGE_MASK] = k;
+        infos[node >>> PAGE_SHIFT][node & PAGE_MASK] = i;
+
+        return attach(father, node, father != NIL && k < getKey(father));
+    }
+
+    /**
+     * public int delete(int k)
+     * <p>
+     * deletes an item with key k from the binary tree, if it is there;
+     * returns the number of rebalancing operations, or 0 if no rebalancing operations were needed.
+     * returns -1 if an item with key k was not found in the tree.
+     *
+     * Complexity O(log(n)), where n is the number of nodes in the tree (calls searchNode, deleteNode)
+     */
+    public int delete(int k) {
+        int node = searchNode(k);
+        if (node == NIL || getKey(node) != k) {
+            return -1;
+        }
+        return deleteNode(node);
+    }
+
+    /**
+     * public String min()
+     * <p>
+     * Returns the info of the item with the smallest key in the tree,
+     * or null if the tree is empty
+     *
+     * Complexity O(log(n)), where n is the number of nodes in the tree
+     */
+    public String min() {
+        return empty() ? null : getInfo(minNode(root));
+    }
+
+    /**
+     * public String max()
+     * <p>
+     * Returns the info of the item with the largest key in the tree,
+     * or null if the tree is empty
+     *
+     * Complexity O(log(n)), where n is the number of nodes in the tree
+     */
+    public String max() {
+        return empty() ? null : getInfo(maxNode(root));
+    }
+
+    /**
+     * public int[] keysToArray()
+     * <p>
+     * Returns a sorted array which contains all keys in the tree,
+     * or an empty array if the tree is empty.
+     *
+     * Complexity O(n), where n is the number of nodes in the tree (an in-order walk using the father links).
+     */
+    public int[] keysToArray() {
+        int[] result = new int[size()];
+        int index = 0;
+        for (int node = minNode(root); node != NIL; node = successor(node)) {
+            result[index++] = getKey(node);
+        }
+        return result;
+    }
+
+    /**
+     * public String[] infoToArray()
+     * <p>
+     * Returns an array which contains all info in the tree,
+     * sorted by their respective keys,
+     * or an empty array if the tree is empty.
+     *
+     * Complexity O(n), where n is the number of nodes in the tree (an in-order walk using the father links).
+     */
+    public String[] infoToArray() {
+        String[] result = new String[size()];
+        int index = 0;
+        for (int node = minNode(root); node != NIL; node = successor(node)) {
+            result[index++] = getInfo(node);
+        }
+        return result;
+    }
+
+    /**
+     * public String select(int i)
+     * <p>
+     * Returns the value of the i'th smallest key, or null if i is not in 1..size()
+     * Example 1: select(1) returns the value of the node with minimal key
+     * Example 2: select(size()) returns the value of the node with maximal key
+     *
+     * Complexity O(log(n)), where n is the number of nodes in the tree (calls selectNode)
+     */
+    public String select(int i) {
+        int node = selectNode(i);
+        return node == NIL ? null : getInfo(node);
+    }
+
+    /**
+     * Removes all the items and releases the storage.
+     *
+     * Complexity O(1)
+     */
+    @Override
+    public void clear() {
+        super.clear();
+        keys = new int[1][];
+        infos = new String[1][];
+    }
+}
@@ -0,0 +1,204 @@
+package WAVLCore;
+
+import WAVLCore.WAVLTree.WAVLNode;
+
+import java.util.NoSuchElementException;
+
+/**
+ * WAVLCursor
+ * <p>
+ * A reusable in-order cursor over a WAVLTree, optionally bounded to a key range lo..hi.
+ * It walks the father links of the nodes, so moving does not allocate and does not use a stack,
+ * next() and prev() are O(1) amortized and a seek is O(log(n)).
+ * <p>
+ * A cursor over a tree that was changed since the last seek must be re-positioned with a seek before it is used again.
+ */
+public class WAVLCursor {
+
+    private final WAVLTree tree;
+
+    /**
+     * The node the cursor is on, or null if it is not positioned or ran past the range.
+     */
+    private WAVLNode node;
+
+    /**
+     * The inclusive bounds of the range, long so an unbounded side is out of the int range.
+     */
+    private long lo = Long.MIN_VALUE;
+    private long hi = Long.MAX_VALUE;
+
+    WAVLCursor(WAVLTree tree) {
+        this.tree = tree;
+    }
+
+    /**
+     * public boolean seek(int k)
+     * <p>
+     * Removes the range bounds and positions the cursor on the smallest key larger than or equal to k.
+     * returns true if and only if there is such a key.
+     *
+     * Complexity O(log(n)), where n is the number of nodes in the tree
+     */
+    public boolean seek(int k) {
+        lo = Long.MIN_VALUE;
+        hi = Long.MAX_VALUE;
+        node = ceilingNode(k);
+        return node != null;
+    }
+
+    /**
+     * public boolean seekRange(int lo, int hi)
+     * <p>
+     * Bounds the cursor to the keys in lo..hi (inclusive) and positions it on the smallest of them.
+     * returns true if and only if there is a key in the range.
+     *
+     * Complexity O(log(n)), where n is the number of nodes in the tree
+     */
+    public boolean seekRange(int lo, int hi) {
+        this.lo = lo;
+        this.hi = hi;
+        node = lo <= hi ? ceilingNode(lo) : null;
+        return bound();
+    }
+
+    /**
+     * public boolean seekFirst()
+     * <p>
+     * Positions the cursor on the smallest key in the range (in the tree, if there are no bounds).
+     * returns true if and only if there is such a key.
+     *
+     * Complexity O(log(n)), where n is the number of nodes in the tree
+     */
+    public boolean seekFirst() {
+        node = lo == Long.MIN_VALUE ? tree.minNode() : ceilingNode((int) lo);
+        return bound();
+    }
+
+    /**
+     * public boolean seekLast()
+     * <p>
+     * Positions the cursor on the largest key in the range (in the tree, if there are no bounds).
+     * returns true if and only if there is such a key.
+     *
+     * Complexity O(log(n)), where n is the number of nodes in the tree
+     */
+    public boolean seekLast() {
+        node = hi == Long.MAX_VALUE ? tree.maxNode() : floorNode((int) hi);
+        return bound();
+    }
+
+    /**
+     * public boolean next()
+     * <p>
+     * Moves the cursor to the next key in the range.
+     * returns true if and only if the cursor is still on a key, once it ran past the range it stays off it.
+     *
+     * Complexity O(1) amortized
+     */
+    public boolean next() {
+        node = WAVLTree.getSuccessor(node);
+        return bound();
+    }
+
+    /**
+     * public boolean prev()
+     * <p>
+     * Moves the cursor to the previous key in the range.
+     * returns true if and only if the cursor is still on a key, once it ran past the range it stays off it.
+     *
+     * Complexity O(1) amortized
+     */
+    public boolean prev() {
+        node = WAVLTree.getPredecessor(node);
+        return bound();
+    }
+
+    /**
+     * returns true if and only if the cursor is on a key
+     *
+     * Complexity O(1)
+     */
+    public boolean valid() {
+        return node != null;
+    }
+
+    /**
+     * returns the key the cursor is on
+     * @throws NoSuchElementException if the cursor is not on a key
+     *
+     * Complexity O(1)
+     */
+    public int key() {
+        return current().getKey();
+    }
+
+    /**
+     * returns the info of the key the cursor is on
+     * @throws NoSuchElementException if the cursor is not on a key
+     *
+     * Complexity O(1)
+     */
+    public String value() {
+        return current().getValue();
+    }
+
+    private WAVLNode current() {
+        if (node == null) {
+            throw new NoSuchElementException("The cursor is not on a key");
+        }
+        return node;
+    }
+
+    /**
+     * Moves the cursor off the keys if it left the range, returns valid()
+     */
+    private boolean bound() {
+        if (node != null && (node.getKey() < lo || node.getKey() > hi)) {
+            node = null;
+        }
+        return node != null;
+    }
+
+    /**
+     * returns the node with the smallest key larger than or equal to k, or null if there is none
+     *
+     * Complexity O(log(n)), where n is the number of nodes in the tree
+     */
+    private WAVLNode ceilingNode(int k) {
+        WAVLNode ceiling = null;
+        WAVLNode current = tree.getRoot();
+        while (current != null) {
+            if (k == current.getKey()) {
+                return current;
+            } else if (k < current.getKey()) {
+                ceiling = current;
+                current = current.getLeft();
+            } else {
+                current = current.getRight();
+            }
+        }
+        return ceiling;
+    }
+
+    /**
+     * returns the node with the largest key smaller than or equal to k, or null if there is none
+     *
+     * Complexity O(log(n)), where n is the number of nodes in the tree
+     */
+    private WAVLNode floorNode(int k) {
+        WAVLNode floor = null;
+        WAVLNode current = tree.getRoot();
+        while (current != null) {
+            if (k == current.getKey()) {
+                return current;
+            } else if (k > current.getKey()) {
+                floor = current;
+                current = current.getRight();
+            } else {
+                current = current.getLeft();
+            }
+        }
+        return floor;
+    }
+}
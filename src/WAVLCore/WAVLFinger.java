@@ -0,0 +1,171 @@
+package WAVLCore;
+
+import WAVLCore.WAVLTree.WAVLNode;
+
+import java.util.NoSuchElementException;
+
+/**
+ * WAVLFinger
+ * <p>
+ * A finger into a WAVLTree: every search, insert and delete through the finger starts from the node the previous one
+ * ended on, climbs the father links only until its subtree can hold the key, and goes down from there.
+ * For a key at distance d (in keys) from the finger that climbs about log(d) levels, so a sequence of close keys
+ * costs O(log(d)) per key instead of O(log(n)). A pair of close keys on the two sides of a high node
+ * (e.g. the root) still needs the climb to that node.
+ * <p>
+ * The finger counts the nodes it visits. It stays valid while the tree changes: a finger on a node that was deleted,
+ * or on a tree that was joined or split, starts its next search from the root.
+ */
+public class WAVLFinger {
+
+    private final WAVLTree tree;
+
+    /**
+     * The node the finger is on, null until the first search.
+     */
+    private WAVLNode node;
+    private int detachments;
+
+    private long visits;
+
+    WAVLFinger(WAVLTree tree) {
+        this.tree = tree;
+        this.detachments = tree.detachments();
+    }
+
+    /**
+     * public String search(int k)
+     * <p>
+     * returns the info of the item with key k if it exists in the tree, otherwise null.
+     * The finger moves to the node of k, or to the node that would be its father.
+     *
+     * Complexity O(log(d)), where d is the distance between k and the key of the finger (see the class comment)
+     */
+    public String search(int k) {
+        WAVLNode found = locate(k);
+        return found != null && found.getKey() == k ? found.getValue() : null;
+    }
+
+    /**
+     * public int insert(int k, String i)
+     * <p>
+     * inserts an item with key k and info i, see WAVLTree.insert. The finger moves to the node of k.
+     *
+     * Complexity O(log(d)) for the search, where d is the distance between k and the key of the finger,
+     * plus the rebalancing (O(1) amortized)
+     */
+    public int insert(int k, String i) {
+        WAVLNode father = locate(k);
+        if (father == null) {
+            int rebalances = tree.insert(k, i);
+            node = tree.getRoot();
+            return rebalances;
+        }
+        if (k == father.getKey()) {
+            return -1;
+        }
+        node = tree.newNode(k, i, father);
+        return tree.insertAt(father, node);
+    }
+
+    /**
+     * public int delete(int k)
+     * <p>
+     * deletes the item with key k, see WAVLTree.delete. The finger moves to the father of the deleted node.
+     *
+     * Complexity O(log(d)) for the search, where d is the distance between k and the key of the finger,
+     * plus the rebalancing (O(1) amortized)
+     */
+    public int delete(int k) {
+        WAVLNode found = locate(k);
+        if (found == null || found.getKey() != k) {
+            return -1;
+        }
+        WAVLNode father = found.getFather();
+        int rebalances = tree.deleteNode(found);
+        node = father;
+        return rebalances;
+    }
+
+    /**
+     * returns the key of the node the finger is on
+     * @throws NoSuchElementException if the finger is not on a node (the tree is empty or was not searched yet)
+     *
+     * Complexity O(1)
+     */
+    public int key() {
+        if (node == null) {
+            throw new NoSuchElementException("The finger is not on a node");
+        }
+        return node.getKey();
+    }
+
+    /**
+     * returns the number of nodes the searches of the finger visited so far, climbing up or going down
+     *
+     * Complexity O(1)
+     */
+    public long visits() {
+        return visits;
+    }
+
+    /**
+     * Moves the finger to the root, so the next search is a search from the root.
+     *
+     * Complexity O(1)
+     */
+    public void reset() {
+        node = null;
+    }
+
+    /**
+     * Climbs from the finger to the lowest ancestor whose subtree can hold k, goes down to k and moves the finger there.
+     *
+     * @return the node of k, or the node that would be its father, or null if the tree is empty
+     */
+    private WAVLNode locate(int k) {
+        WAVLNode current = node;
+        if (current == null || detachments != tree.detachments()
+                || (current.getFather() == null && current != tree.getRoot())) {
+            detachments = tree.detachments();
+            current = tree.getRoot();
+            if (current == null) {
+                node = null;
+                return null;
+            }
+        }
+        visits++;
+
+        // For k above the finger only the upper bound of the subtree of current matters. A left child is bounded by
+        // the key of its father, a right child by a bound further up, so climb until a left child of a key above k
+        // (symmetrically for k below the finger)
+        if (k > current.getKey()) {
+            while (current.getFather() != null && (current.isRightChild() || current.getFather().getKey() <= k)) {
+                current = current.getFather();
+                visits++;
+                if (k <= current.getKey()) {
+                    break;
+                }
+            }
+        } else if (k < current.getKey()) {
+            while (current.getFather() != null && (current.isLeftChild() || current.getFather().getKey() >= k)) {
+                current = current.getFather();
+                visits++;
+                if (k >= current.getKey()) {
+                    break;
+                }
+            }
+        }
+
+        while (k != current.getKey()) {
+            WAVLNode child = k < current.getKey() ? current.getLeft() : current.getRight();
+            if (child == null) {
+                break;
+            }
+            current = child;
+            visits++;
+        }
+        node = current;
+        return current;
+    }
+}
@@ -0,0 +1,124 @@
+package WAVLCore;
+
+import WAVLCore.WAVLTree.WAVLNode;
+
+/**
+ * WAVLHashIndex
+ * <p>
+ * An open addressing hash table from the keys of a WAVLTree to their nodes, for point lookups without the descent
+ * from the root. Linear probing over parallel key and node arrays (a null node is an empty slot), Fibonacci hashing,
+ * and backward shift deletion, so there are no tombstones. The table doubles above a load of 3/4, which costs
+ * between 10.7 and 21.3 bytes per key with compressed references (a key int and a node reference per slot).
+ */
+final class WAVLHashIndex {
+
+    private static final int MIN_CAPACITY = 16;
+
+    private int[] keys;
+    private WAVLNode[] nodes;
+    private int size;
+
+    /**
+     * The number of bits of the capacity is 32 - shift
+     */
+    private int shift;
+
+    WAVLHashIndex(int expected) {
+        int capacity = MIN_CAPACITY;
+        while (capacity * 3L / 4 < expected) {
+            capacity <<= 1;
+        }
+        allocate(capacity);
+    }
+
+    private void allocate(int capacity) {
+        keys = new int[capacity];
+        nodes = new WAVLNode[capacity];
+        shift = Integer.numberOfLeadingZeros(capacity) + 1;
+    }
+
+    private int slotOf(int key) {
+        return (key * 0x9E3779B9) >>> shift;
+    }
+
+    /**
+     * @return the node with key, or null if there is none
+     * Complexity O(1) expected
+     */
+    WAVLNode get(int key) {
+        int mask = nodes.length - 1;
+        for (int slot = slotOf(key); nodes[slot] != null; slot = (slot + 1) & mask) {
+            if (keys[slot] == key) {
+                return nodes[slot];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Adds node, whose key is not in the table
+     * Complexity O(1) amortized expected
+     */
+    void put(WAVLNode node) {
+        if (size + 1 > nodes.length * 3L / 4) {
+            resize(nodes.length << 1);
+        }
+        insert(node.getKey(), node);
+        size++;
+    }
+
+    private void insert(int key, WAVLNode node) {
+        int mask = nodes.length - 1;
+        int slot = slotOf(key);
+        while (nodes[slot] != null) {
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        nodes[slot] = node;
+    }
+
+    /**
+     * Removes key if it is in the table. The entries after it in its probe run move back into the hole when the hole
+     * is between their home slot and their slot.
+     * Complexity O(1) expected
+     */
+    void remove(int key) {
+        int mask = nodes.length - 1;
+        int hole = slotOf(key);
+        while (nodes[hole] != null && keys[hole] != key) {
+            hole = (hole + 1) & mask;
+        }
+        if (nodes[hole] == null) {
+            return;
+        }
+        for (int slot = (hole + 1) & mask; nodes[slot] != null; slot = (slot + 1) & mask) {
+            int home = slotOf(keys[slot]);
+            if (((slot - home) & mask) >= ((slot - hole) & mask)) {
+                keys[hole] = keys[slot];
+                nodes[hole] = nodes[slot];
+                hole = slot;
+            }
+        }
+        nodes[hole] = null;
+        size--;
+    }
+
+    private void resize(int capacity) {
+        int[] oldKeys = keys;
+        WAVLNode[] oldNodes = nodes;
+        allocate(capacity);
+        for (int slot = 0; slot < oldNodes.length; slot++) {
+            if (oldNodes[slot] != null) {
+                insert(oldKeys[slot], oldNodes[slot]);
+            }
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    int capacity() {
+        return nodes.length;
+    }
+}
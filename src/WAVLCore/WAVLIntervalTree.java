@@ -0,0 +1,230 @@
+package WAVLCore;
+
+import WAVLCore.WAVLTree.WAVLNode;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * WAVLIntervalTree
+ * <p>
+ * A set of closed int intervals [start, end], each with an info, for overlap queries.
+ * The intervals are kept in a WAVLTree keyed by their start and augmented with WAVLMonoid.max of the ends, so every
+ * node knows the largest end in its subtree through all the rotations and rebalancing of the tree.
+ * Intervals with the same start share a node, they are kept in a list by decreasing end, and the measure of the node
+ * is the first (largest) of these ends.
+ * <p>
+ * A query for [lo, hi] skips the subtrees whose largest end is below lo and the right subtrees of the nodes that
+ * start after hi, so it visits O(log(n)) nodes plus the paths down to the reported intervals: O(log(n) + k) when the
+ * k reported intervals are close in the tree, O(min(n, (k + 1) log(n))) in the worst case.
+ */
+public class WAVLIntervalTree {
+
+    /**
+     * The first of the intervals with each start, the others follow it by decreasing end.
+     */
+    private final Map<Integer, Interval> starts = new HashMap<>();
+
+    private final WAVLTree tree = new WAVLTree(WAVLMonoid.max((start, info) -> starts.get(start).end));
+
+    private int size;
+
+    /**
+     * An interval [start, end] with its info.
+     */
+    public static final class Interval {
+        private final int start;
+        private final int end;
+        private final String info;
+
+        /**
+         * The next interval with the same start
+         */
+        private Interval next;
+
+        Interval(int start, int end, String info, Interval next) {
+            this.start = start;
+            this.end = end;
+            this.info = info;
+            this.next = next;
+        }
+
+        public int getStart() {
+            return start;
+        }
+
+        public int getEnd() {
+            return end;
+        }
+
+        public String getInfo() {
+            return info;
+        }
+
+        @Override
+        public String toString() {
+            return "[" + start + ", " + end + "]";
+        }
+    }
+
+    /**
+     * public int insert(int start, int end, String info)
+     * <p>
+     * inserts the interval [start, end] with info i.
+     * returns the number of rebalancing operations of the tree, or -1 if the interval is already in the set.
+     * @throws IllegalArgumentException if end is smaller than start
+     *
+     * Complexity O(log(n) + m), where n is the number of intervals and m the number of intervals with the same start
+     */
+    public int insert(int start, int end, String info) {
+        if (end < start) {
+            throw new IllegalArgumentException("The end " + end + " is smaller than the start " + start);
+        }
+        Interval first = starts.get(start);
+        if (first == null) {
+            starts.put(start, new Interval(start, end, info, null));
+            size++;
+            return tree.insert(start, null);
+        }
+        if (end > first.end) {
+            starts.put(start, new Interval(start, end, info, first));
+            size++;
+            return remeasure(start);
+        }
+        Interval previous = first;
+        while (previous.next != null && previous.next.end >= end) {
+            previous = previous.next;
+        }
+        if (previous.end == end) {
+            return -1;
+        }
+        previous.next = new Interval(start, end, info, previous.next);
+        size++;
+        return 0;
+    }
+
+    /**
+     * public int delete(int start, int end)
+     * <p>
+     * deletes the interval [start, end] if it is in the set.
+     * returns the number of rebalancing operations of the tree, or -1 if the interval is not in the set.
+     *
+     * Complexity O(log(n) + m), where n is the number of intervals and m the number of intervals with the same start
+     */
+    public int delete(int start, int end) {
+        Interval first = starts.get(start);
+        if (first == null) {
+            return -1;
+        }
+        if (first.end == end) {
+            size--;
+            if (first.next == null) {
+                starts.remove(start);
+                return tree.delete(start);
+            }
+            starts.put(start, first.next);
+            return remeasure(start);
+        }
+        Interval previous = first;
+        while (previous.next != null && previous.next.end > end) {
+            previous = previous.next;
+        }
+        if (previous.next == null || previous.next.end != end) {
+            return -1;
+        }
+        previous.next = previous.next.next;
+        size--;
+        return 0;
+    }
+
+    /**
+     * Replaces the node of start after the largest end of its intervals changed, since the measure of a node
+     * is computed when it is created.
+     *
+     * Complexity O(log(n))
+     */
+    private int remeasure(int start) {
+        return tree.delete(start) + tree.insert(start, null);
+    }
+
+    /**
+     * public List<Interval> stab(int t)
+     * <p>
+     * returns the intervals that contain t, ordered by start and then by decreasing end.
+     *
+     * Complexity O(log(n) + k) for k close intervals, see the class comment
+     */
+    public List<Interval> stab(int t) {
+        return overlapping(t, t);
+    }
+
+    /**
+     * public List<Interval> overlapping(int lo, int hi)
+     * <p>
+     * returns the intervals that overlap [lo, hi], ordered by start and then by decreasing end.
+     *
+     * Complexity O(log(n) + k) for k close intervals, see the class comment
+     */
+    public List<Interval> overlapping(int lo, int hi) {
+        List<Interval> result = new ArrayList<>();
+        overlapping(lo, hi, result::add);
+        return result;
+    }
+
+    /**
+     * public int overlapping(int lo, int hi, Consumer<Interval> action)
+     * <p>
+     * calls action on the intervals that overlap [lo, hi], ordered by start and then by decreasing end,
+     * without collecting them.
+     * returns the number of these intervals.
+     *
+     * Complexity O(log(n) + k) for k close intervals, see the class comment
+     */
+    public int overlapping(int lo, int hi, Consumer<Interval> action) {
+        if (lo > hi) {
+            return 0;
+        }
+        tree.flushAppends(); // The max ends of the right spine
+        return visit(tree.getRoot(), lo, hi, action);
+    }
+
+    private int visit(WAVLNode node, int lo, int hi, Consumer<Interval> action) {
+        if (node == null || tree.aggregateOf(node) < lo) {
+            return 0;
+        }
+        int count = visit(node.getLeft(), lo, hi, action);
+        if (node.getKey() > hi) { // The right subtree starts after hi too
+            return count;
+        }
+        for (Interval interval = starts.get(node.getKey()); interval != null && interval.end >= lo; interval = interval.next) {
+            action.accept(interval);
+            count++;
+        }
+        return count + visit(node.getRight(), lo, hi, action);
+    }
+
+    /**
+     * public int size()
+     * <p>
+     * returns the number of intervals
+     *
+     * Complexity O(1)
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * public boolean empty()
+     * <p>
+     * returns true if and only if there are no intervals
+     *
+     * Complexity O(1)
+     */
+    public boolean empty() {
+        return size == 0;
+    }
+}
@@ -0,0 +1,80 @@
+package WAVLCore;
+
+import java.util.function.LongBinaryOperator;
+
+/**
+ * WAVLMonoid
+ * <p>
+ * An augmentation of a WAVLTree: every node keeps the combination of the measures of the items in its subtree,
+ * in key order, so WAVLTree.aggregate(lo, hi) combines any key range in O(log(n)).
+ * combine must be associative and identity must be its neutral element; combine does not have to be commutative.
+ */
+public interface WAVLMonoid {
+
+    @FunctionalInterface
+    interface Measure {
+        long of(int key, String info);
+    }
+
+    /**
+     * @return the aggregate of no items
+     */
+    long identity();
+
+    /**
+     * @return the aggregate of the single item (key, info)
+     */
+    long measure(int key, String info);
+
+    /**
+     * @return the aggregate of the items of left followed by the items of right
+     */
+    long combine(long left, long right);
+
+    /**
+     * The number of items
+     */
+    static WAVLMonoid count() {
+        return of(0, (key, info) -> 1, Long::sum);
+    }
+
+    /**
+     * The sum of the measures of the items
+     */
+    static WAVLMonoid sum(Measure measure) {
+        return of(0, measure, Long::sum);
+    }
+
+    /**
+     * The smallest measure of an item, Long.MAX_VALUE for no items
+     */
+    static WAVLMonoid min(Measure measure) {
+        return of(Long.MAX_VALUE, measure, Math::min);
+    }
+
+    /**
+     * The largest measure of an item, Long.MIN_VALUE for no items
+     */
+    static WAVLMonoid max(Measure measure) {
+        return of(Long.MIN_VALUE, measure, Math::max);
+    }
+
+    static WAVLMonoid of(long identity, Measure measure, LongBinaryOperator combine) {
+        return new WAVLMonoid() {
+            @Override
+            public long identity() {
+                return identity;
+            }
+
+            @Override
+            public long measure(int key, String info) {
+                return measure.of(key, info);
+            }
+
+            @Override
+            public long combine(long left, long right) {
+                return combine.applyAsLong(left, right);
+            }
+        };
+    }
+}
@@ -0,0 +1,529 @@
+package WAVLCore;
+
+import java.io.Closeable;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * WAVLOffHeapTree
+ * <p>
+ * A WAVL Tree with distinct integer keys and info, with the same operations as WAVLTree,
+ * that keeps almost nothing on the java heap.
+ * Node records (key, rank, subtree size, child and father handles, info reference) are stored
+ * in direct ByteBuffer pages, and the info strings are stored as length-prefixed UTF-8
+ * in a separate arena of direct pages.
+ * close() frees every page explicitly through the cleaner of the buffer, without waiting for a garbage collection,
+ * after which the tree can not be used. The arena compaction frees the pages it replaces the same way.
+ */
+public class WAVLOffHeapTree extends IndexedWAVLTree implements Closeable {
+
+    // Node record layout, in bytes:
+    private static final int KEY = 0;
+    private static final int SUBTREE_SIZE = 4;
+    private static final int LEFT = 8;
+    private static final int RIGHT = 12;
+    private static final int FATHER = 16;
+    private static final int RANK = 20;
+    private static final int INFO = 24;
+    private static final int RECORD_SIZE = 32;
+
+    /**
+     * The number of node records in a single page is 2^PAGE_SHIFT.
+     */
+    private static final int PAGE_SHIFT = 13;
+    private static final int PAGE_MASK = (1 << PAGE_SHIFT) - 1;
+
+    /**
+     * The size of a page in the info arena, larger strings get a page of their own.
+     */
+    private static final int ARENA_PAGE_SIZE = 1 << 20;
+
+    /**
+     * The info reference of a null info.
+     */
+    private static final long NULL_INFO = -1;
+
+    private ByteBuffer[] pages = new ByteBuffer[1];
+    private int pageCount = 0;
+    private int highWaterMark = 0;
+    private int freeList = NIL;
+
+    private ByteBuffer[] arena = new ByteBuffer[1];
+    private int arenaPageCount = 0;
+
+    /**
+     * Bytes of the arena that belong to deleted or copied over infos.
+     */
+    private long arenaGarbage = 0;
+    private long arenaUsed = 0;
+
+    private boolean closed = false;
+
+    /**
+     * Frees the memory of a direct buffer right away: with sun.misc.Unsafe.invokeCleaner on java 9+, and with the
+     * cleaner of the buffer (sun.nio.ch.DirectBuffer.cleaner().clean()) on java 8. Both are looked up by reflection
+     * since the tree compiles for java 8. The buffer must not be used after it is freed.
+     */
+    private static final class Cleaner {
+
+        private static final Object UNSAFE;
+        private static final Method INVOKE_CLEANER;
+
+        static {
+            Object unsafe = null;
+            Method invokeCleaner = null;
+            try {
+                Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+                invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+                Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+                theUnsafe.setAccessible(true);
+                unsafe = theUnsafe.get(null);
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                invokeCleaner = null; // java 8, the cleaner of the buffer is used
+            }
+            UNSAFE = unsafe;
+            INVOKE_CLEANER = invokeCleaner;
+        }
+
+        /**
+         * Complexity O(1)
+         * @throws IllegalStateException if the runtime has no way to free a direct buffer
+         */
+        static void free(ByteBuffer buffer) {
+            try {
+                if (INVOKE_CLEANER != null) {
+                    INVOKE_CLEANER.invoke(UNSAFE, buffer);
+                } else {
+                    Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+                    cleanerMethod.setAccessible(true);
+                    Object cleaner = cleanerMethod.invoke(buffer);
+                    if (cleaner != null) {
+                        cleaner.getClass().getMethod("clean").invoke(cleaner);
+                    }
+                }
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                throw new IllegalStateException("Could not free a direct buffer", e);
+            }
+        }
+
+        /**
+         * Frees the first count buffers of pages and clears them.
+         * Complexity O(count)
+         */
+        static void free(ByteBuffer[] pages, int count) {
+            for (int i = 0; i < count; i++) {
+                free(pages[i]);
+                pages[i] = null;
+            }
+        }
+    }
+
+    // Node records:
+
+    private ByteBuffer page(int node) {
+        return pages[node >>> PAGE_SHIFT];
+    }
+
+    private static int offset(int node) {
+        return (node & PAGE_MASK) * RECORD_SIZE;
+    }
+
+    private int getKey(int node) {
+        return page(node).getInt(offset(node) + KEY);
+    }
+
+    private long getInfoReference(int node) {
+        return page(node).getLong(offset(node) + INFO);
+    }
+
+    @Override
+    int getRank(int node) {
+        return page(node).getInt(offset(node) + RANK);
+    }
+
+    @Override
+    void setRank(int node, int rank) {
+        page(node).putInt(offset(node) + RANK, rank);
+    }
+
+    @Override
+    int getSubtreeSize(int node) {
+        return page(node).getInt(offset(node) + SUBTREE_SIZE);
+    }
+
+    @Override
+    void setSubtreeSize(int node, int subtreeSize) {
+        page(node).putInt(offset(node) + SUBTREE_SIZE, subtreeSize);
+    }
+
+    @Override
+    int getLeft(int node) {
+        return page(node).getInt(offset(node) + LEFT);
+    }
+
+    @Override
+    void setLeft(int node, int left) {
+        page(node).putInt(offset(node) + LEFT, left);
+    }
+
+    @Override
+    int getRight(int node) {
+        return page(node).getInt(offset(node) + RIGHT);
+    }
+
+    @Override
+    void setRight(int node, int right) {
+        page(node).putInt(offset(node) + RIGHT, right);
+    }
+
+    @Override
+    int getFather(int node) {
+        return page(node).getInt(offset(node) + FATHER);
+    }
+
+    @Override
+    void setFather(int node, int father) {
+        page(node).putInt(offset(node) + FATHER, father);
+    }
+
+    @Override
+    void copyEntry(int from, int to) {
+        releaseInfo(getInfoReference(to));
+        page(to).putInt(offset(to) + KEY, getKey(from));
+        page(to).putLong(offset(to) + INFO, getInfoReference(from));
+        // from is freed right after, its info now belongs to to:
+        page(from).putLong(offset(from) + INFO, NULL_INFO);
+    }
+
+    /**
+     * Allocates a node record, reusing freed records first.
+     * Complexity O(1) amortized
+     */
+    private int allocateNode(int k, long info) {
+        int node;
+        if (freeList != NIL) {
+            node = freeList;
+            freeList = getLeft(node);
+        } else {
+            if (highWaterMark == pageCount << PAGE_SHIFT) {
+                pages = PagedWAVLTree.growPageTable(pages, pageCount);
+                pages[pageCount++] = ByteBuffer.allocateDirect(RECORD_SIZE << PAGE_SHIFT).order(ByteOrder.nativeOrder());
+            }
+            node = highWaterMark++;
+        }
+        page(node).putInt(offset(node) + KEY, k);
+        page(node).putLong(offset(node) + INFO, info);
+        return node;
+    }
+
+    @Override
+    void freeNode(int node) {
+        releaseInfo(getInfoReference(node));
+        page(node).putLong(offset(node) + INFO, NULL_INFO);
+        setFather(node, NIL);
+        setRight(node, NIL);
+        setLeft(node, freeList);
+        freeList = node;
+    }
+
+    // Info arena, a reference is the arena page in the high int and the offset in the low int:
+
+    /**
+     * Writes info to the end of the arena.
+     * @return the reference of the written info
+     * Complexity O(length of info)
+     */
+    private long writeInfo(String info) {
+        if (info == null) {
+            return NULL_INFO;
+        }
+
+        byte[] bytes = info.getBytes(StandardCharsets.UTF_8);
+        int needed = 4 + bytes.length;
+
+        ByteBuffer last = arenaPageCount == 0 ? null : arena[arenaPageCount - 1];
+        if (last == null || last.remaining() < needed) {
+            arena = PagedWAVLTree.growPageTable(arena, arenaPageCount);
+            last = ByteBuffer.allocateDirect(Math.max(ARENA_PAGE_SIZE, needed)).order(ByteOrder.nativeOrder());
+            arena[arenaPageCount++] = last;
+        }
+
+        int position = last.position();
+        last.putInt(bytes.length);
+        last.put(bytes);
+        arenaUsed += needed;
+
+        return ((long) (arenaPageCount - 1) << 32) | position;
+    }
+
+    /**
+     * Reads the info stored at reference.
+     * Complexity O(length of info)
+     */
+    private String readInfo(long reference) {
+        return readInfo(arena, reference);
+    }
+
+    /**
+     * Reads the info stored at reference in the given arena.
+     * Complexity O(length of info)
+     */
+    private static String readInfo(ByteBuffer[] arena, long reference) {
+        if (reference == NULL_INFO) {
+            return null;
+        }
+
+        ByteBuffer arenaPage = arena[(int) (reference >>> 32)];
+        int position = (int) reference;
+        int length = arenaPage.getInt(position);
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = arenaPage.get(position + 4 + i);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Marks the bytes of the info at reference as garbage.
+     * Complexity O(1)
+     */
+    private void releaseInfo(long reference) {
+        if (reference != NULL_INFO) {
+            arenaGarbage += 4 + arena[(int) (reference >>> 32)].getInt((int) reference);
+        }
+    }
+
+    /**
+     * Rewrites the live infos into a fresh arena once most of the arena is garbage.
+     * Complexity O(n), amortized O(1) per deleted info
+     */
+    private void compactArenaIfNeeded() {
+        if (arenaGarbage < ARENA_PAGE_SIZE || arenaGarbage * 2 < arenaUsed) {
+            return;
+        }
+
+        ByteBuffer[] oldArena = arena;
+        int oldArenaPageCount = arenaPageCount;
+        arena = new ByteBuffer[1];
+        arenaPageCount = 0;
+        arenaGarbage = 0;
+        arenaUsed = 0;
+
+        for (int node = minNode(root); node != NIL; node = successor(node)) {
+            long reference = getInfoReference(node);
+            if (reference != NULL_INFO) {
+                page(node).putLong(offset(node) + INFO, writeInfo(readInfo(oldArena, reference)));
+            }
+        }
+        Cleaner.free(oldArena, oldArenaPageCount);
+    }
+
+    private void ensureOpen() {
+        if (closed) {
+            throw new IllegalStateException("The tree was closed");
+        }
+    }
+
+    /**
+     * returns the node with key k if it exists in the tree, otherwise the node that would be its father,
+     * or NIL if the tree is empty
+     *
+     * Complexity O(log(n)), where n is the number of nodes in the tree
+     */
+    private int searchNode(int k) {
+        int node = root;
+        int last = NIL;
+        while (node != NIL) {
+            last = node;
+            int key = getKey(node);
+            if (k == key) {
+                return node;
+            }
+            node = k < key ? getLeft(node) : getRight(node);
+        }
+        return last;
+    }
+
+    /**
+     * public boolean empty()
+     * <p>
+     * returns true if and only if the tree is empty
+     *
+     * Complexity O(1)
+     */
+    @Override
+    public boolean empty() {
+        ensureOpen();
+        return super.empty();
+    }
+
+    /**
+     * public int size()
+     * <p>
+     * Returns the number of nodes in the tree.
+     *
+     * Complexity O(1)
+     */
+    @Override
+    public int size() {
+        ensureOpen();
+        return super.size();
+    }
+
+    /**
+     * public String search(int k)
+     * <p>
+     * returns the info of an item with key k if it exists in the tree
+     * otherwise, returns null
+     *
+     * Complexity O(log(n)), where n is the number of nodes in the tree (calls searchNode).
+     */
+    public String search(int k) {
+        ensureOpen();
+        int node = searchNode(k);
+        if (node != NIL && getKey(node) == k) {
+            return readInfo(getInfoReference(node));
+        }
+        return null;
+    }
+
+    /**
+     * public int insert(int k, String i)
+     * <p>
+     * inserts an item with key k and info i to the WAVL tree.
+     * returns the number of rebalancing operations, or 0 if no rebalancing operations were necessary.
+     * returns -1 if an item with key k already exists in the tree.
+     *
+     * Complexity O(log(n)), where n is the number of nodes in the tree (calls searchNode, attach).
+     */
+    public int insert(int k, String i) {
+        ensureOpen();
+        int father = searchNode(k);
+        if (father != NIL && getKey(father) == k) {
+            return -1; // Already exists
+        }
+
+        int node = allocateNode(k, writeInfo(i));
+        return attach(father, node, father != NIL && k < getKey(father));
+    }
+
+    /**
+     * public int delete(int k)
+     * <p>
+     * deletes an item with key k from the binary tree, if it is there;
+     * returns the number of rebalancing operations, or 0 if no rebalancing operations were needed.
+     * returns -1 if an item with key k was not found in the tree.
+     *
+     * Complexity O(log(n)) amortized, where n is the number of nodes in the tree (calls searchNode, deleteNode)
+     */
+    public int delete(int k) {
+        ensureOpen();
+        int node = searchNode(k);
+        if (node == NIL || getKey(node) != k) {
+            return -1;
+        }
+        int rebalances = deleteNode(node);
+        compactArenaIfNeeded();
+        return rebalances;
+    }
+
+    /**
+     * public String min()
+     * <p>
+     * Returns the info of the item with the smallest key in the tree,
+     * or null if the tree is empty
+     *
+     * Complexity O(log(n)), where n is the number of nodes in the tree
+     */
+    public String min() {
+        ensureOpen();
+        return root == NIL ? null : readInfo(getInfoReference(minNode(root)));
+    }
+
+    /**
+     * public String max()
+     * <p>
+     * Returns the info of the item with the largest key in the tree,
+     * or null if the tree is empty
+     *
+     * Complexity O(log(n)), where n is the number of nodes in the tree
+     */
+    public String max() {
+        ensureOpen();
+        return root == NIL ? null : readInfo(getInfoReference(maxNode(root)));
+    }
+
+    /**
+     * public int[] keysToArray()
+     * <p>
+     * Returns a sorted array which contains all keys in the tree,
+     * or an empty array if the tree is empty.
+     *
+     * Complexity O(n), where n is the number of nodes in the tree (an in-order walk using the father links).
+     */
+    public int[] keysToArray() {
+        ensureOpen();
+        int[] result = new int[super.size()];
+        int index = 0;
+        for (int node = minNode(root); node != NIL; node = successor(node)) {
+            result[index++] = getKey(node);
+        }
+        return result;
+    }
+
+    /**
+     * public String[] infoToArray()
+     * <p>
+     * Returns an array which contains all info in the tree,
+     * sorted by their respective keys,
+     * or an empty array if the tree is empty.
+     *
+     * Complexity O(n), where n is the number of nodes in the tree (an in-order walk using the father links).
+     */
+    public String[] infoToArray() {
+        ensureOpen();
+        String[] result = new String[super.size()];
+        int index = 0;
+        for (int node = minNode(root); node != NIL; node = successor(node)) {
+            result[index++] = readInfo(getInfoReference(node));
+        }
+        return result;
+    }
+
+    /**
+     * public String select(int i)
+     * <p>
+     * Returns the value of the i'th smallest key, or null if i is not in 1..size()
+     *
+     * Complexity O(log(n)), where n is the number of nodes in the tree (calls selectNode)
+     */
+    public String select(int i) {
+        ensureOpen();
+        int node = selectNode(i);
+        return node == NIL ? null : readInfo(getInfoReference(node));
+    }
+
+    /**
+     * Frees the node pages and the info arena right away, the tree can not be used afterwards.
+     * Closing a closed tree has no effect.
+     *
+     * Complexity O(p), where p is the number of pages
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        Cleaner.free(pages, pageCount);
+        Cleaner.free(arena, arenaPageCount);
+        pages = null;
+        arena = null;
+        pageCount = 0;
+        arenaPageCount = 0;
+        root = NIL;
+    }
+}
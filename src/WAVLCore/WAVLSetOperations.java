@@ -0,0 +1,166 @@
+package WAVLCore;
+
+import WAVLCore.WAVLTree.WAVLNode;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * WAVLSetOperations
+ * <p>
+ * Union, intersection and difference of two WAVL trees, by divide and conquer on split and join:
+ * the root of the second tree splits the first tree, the two sides are combined recursively (in parallel on a
+ * ForkJoinPool) and joined back around the root.
+ * With m the size of the smaller tree and n the size of the larger one the work is O(m log(n/m + 1)),
+ * and the span is O(log(n)^2).
+ * <p>
+ * The nodes of both trees are moved to the result (no item is copied), so both arguments are left empty.
+ * Unless one of them is empty, both trees must have the same monoid (see WAVLTree(WAVLMonoid)).
+ */
+public final class WAVLSetOperations {
+
+    /**
+     * Below this number of items in both subtrees the recursion continues in the current task,
+     * so a task is not forked for less work than it costs to schedule it.
+     */
+    static final int SEQUENTIAL_CUTOFF = 1 << 13;
+
+    private WAVLSetOperations() {
+    }
+
+    private enum Operation {
+        UNION, INTERSECTION, DIFFERENCE
+    }
+
+    /**
+     * public static WAVLTree union(WAVLTree a, WAVLTree b)
+     * <p>
+     * Returns a tree with the items of a and b, for keys in both trees the info of b is kept.
+     * Runs on the common ForkJoinPool, a and b are left empty.
+     *
+     * Complexity O(m log(n/m + 1)) work, where m <= n are the sizes of the trees
+     */
+    public static WAVLTree union(WAVLTree a, WAVLTree b) {
+        return union(a, b, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Same as union(a, b), running on the given pool.
+     */
+    public static WAVLTree union(WAVLTree a, WAVLTree b, ForkJoinPool pool) {
+        return apply(Operation.UNION, a, b, pool);
+    }
+
+    /**
+     * public static WAVLTree intersection(WAVLTree a, WAVLTree b)
+     * <p>
+     * Returns a tree with the items of a whose keys are in b.
+     * Runs on the common ForkJoinPool, a and b are left empty.
+     *
+     * Complexity O(m log(n/m + 1)) work, where m <= n are the sizes of the trees
+     */
+    public static WAVLTree intersection(WAVLTree a, WAVLTree b) {
+        return intersection(a, b, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Same as intersection(a, b), running on the given pool.
+     */
+    public static WAVLTree intersection(WAVLTree a, WAVLTree b, ForkJoinPool pool) {
+        return apply(Operation.INTERSECTION, a, b, pool);
+    }
+
+    /**
+     * public static WAVLTree difference(WAVLTree a, WAVLTree b)
+     * <p>
+     * Returns a tree with the items of a whose keys are not in b.
+     * Runs on the common ForkJoinPool, a and b are left empty.
+     *
+     * Complexity O(m log(n/m + 1)) work, where m <= n are the sizes of the trees
+     */
+    public static WAVLTree difference(WAVLTree a, WAVLTree b) {
+        return difference(a, b, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Same as difference(a, b), running on the given pool.
+     */
+    public static WAVLTree difference(WAVLTree a, WAVLTree b, ForkJoinPool pool) {
+        return apply(Operation.DIFFERENCE, a, b, pool);
+    }
+
+    private static WAVLTree apply(Operation operation, WAVLTree a, WAVLTree b, ForkJoinPool pool) {
+        if (a == b) {
+            throw new IllegalArgumentException("The trees must be different");
+        }
+        WAVLMonoid monoid = WAVLTree.commonMonoid(a, b);
+        WAVLNode root = pool.invoke(new SetOperationTask(operation, a.detachRoot(), b.detachRoot()));
+        return new WAVLTree(root, monoid);
+    }
+
+    private static int sizeOf(WAVLNode node) {
+        return node == null ? 0 : node.getSubtreeSize();
+    }
+
+    /**
+     * Combines two detached subtrees, returns the root of the result.
+     */
+    private static final class SetOperationTask extends RecursiveTask<WAVLNode> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Operation operation;
+        private final WAVLNode a;
+        private final WAVLNode b;
+
+        SetOperationTask(Operation operation, WAVLNode a, WAVLNode b) {
+            this.operation = operation;
+            this.a = a;
+            this.b = b;
+        }
+
+        @Override
+        protected WAVLNode compute() {
+            return combine(operation, a, b);
+        }
+
+        private static WAVLNode combine(Operation operation, WAVLNode a, WAVLNode b) {
+            if (a == null) {
+                return operation == Operation.UNION ? b : null;
+            }
+            if (b == null) {
+                return operation == Operation.INTERSECTION ? null : a;
+            }
+
+            boolean parallel = sizeOf(a) + sizeOf(b) >= SEQUENTIAL_CUTOFF;
+
+            // Split a around the root of b:
+            WAVLNode bLeft = WAVLTree.detach(b.getLeft());
+            WAVLNode bRight = WAVLTree.detach(b.getRight());
+            WAVLTree smaller = new WAVLTree();
+            WAVLTree larger = new WAVLTree();
+            WAVLNode found = WAVLTree.splitNode(a, b.getKey(), smaller, larger);
+
+            WAVLNode left;
+            WAVLNode right;
+            if (parallel) {
+                SetOperationTask leftTask = new SetOperationTask(operation, smaller.detachRoot(), bLeft);
+                leftTask.fork();
+                right = combine(operation, larger.detachRoot(), bRight);
+                left = leftTask.join();
+            } else {
+                left = combine(operation, smaller.detachRoot(), bLeft);
+                right = combine(operation, larger.detachRoot(), bRight);
+            }
+
+            switch (operation) {
+                case UNION:
+                    return WAVLTree.joinSubtrees(left, b, right);
+                case INTERSECTION:
+                    return found != null ? WAVLTree.joinSubtrees(left, found, right) : WAVLTree.joinSubtrees(left, right);
+                default:
+                    return WAVLTree.joinSubtrees(left, right);
+            }
+        }
+    }
+}
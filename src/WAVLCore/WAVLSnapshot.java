@@ -0,0 +1,395 @@
+package WAVLCore;
+
+import WAVLCore.WAVLTree.WAVLNode;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.PrimitiveIterator;
+import java.util.zip.CRC32;
+
+/**
+ * WAVLSnapshot
+ * <p>
+ * Saves a WAVLTree to a file and loads it back, streaming through a FileChannel with a fixed size buffer.
+ * The format (all numbers big endian):
+ * <pre>
+ * int     magic "WAVL"
+ * int     version
+ * long    number of items n
+ * n times:
+ *   varint  zigzag(key - previous key), the previous key of the first item is 0
+ *   varint  length of the UTF-8 bytes of the info + 1, 0 for a null info
+ *   bytes   the UTF-8 bytes of the info
+ * int     CRC32 of all the bytes above
+ * </pre>
+ * The items are written in key order, so loading rebuilds the tree bottom-up with WAVLTree.fromSorted
+ * while it reads the file. Consecutive equal infos are loaded as one shared String.
+ */
+public final class WAVLSnapshot {
+
+    private static final int MAGIC = 0x5741564C; // "WAVL"
+    static final int VERSION = 1;
+
+    /**
+     * The size of the buffer of the file, the only memory saving and loading use besides the tree.
+     */
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    private static final int MAX_VARINT_BYTES = 10;
+
+    private WAVLSnapshot() {
+    }
+
+    /**
+     * public static void save(WAVLTree tree, Path path)
+     * <p>
+     * Writes the items of tree to path, replacing the file if it exists.
+     *
+     * Complexity O(n), where n is the number of items in the tree, O(1) extra memory
+     */
+    public static void save(WAVLTree tree, Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            Writer writer = new Writer(channel);
+            writer.putInt(MAGIC);
+            writer.putInt(VERSION);
+            writer.putLong(tree.size());
+
+            long previous = 0;
+            String lastInfo = null;
+            byte[] lastBytes = null;
+            for (WAVLNode node = tree.minNode(); node != null; node = WAVLTree.getSuccessor(node)) {
+                writer.putVarLong(zigzag(node.getKey() - previous));
+                previous = node.getKey();
+                String info = node.getValue();
+                if (info == null) {
+                    writer.putVarLong(0);
+                    continue;
+                }
+                if (!info.equals(lastInfo)) {
+                    lastInfo = info;
+                    lastBytes = info.getBytes(StandardCharsets.UTF_8);
+                }
+                writer.putVarLong(lastBytes.length + 1L);
+                writer.putBytes(lastBytes);
+            }
+            writer.finish();
+        }
+    }
+
+    /**
+     * public static WAVLTree load(Path path)
+     * <p>
+     * Reads a tree saved by save.
+     * @throws IOException if the file can not be read, is not a snapshot of a known version or is corrupt
+     * (including a checksum mismatch)
+     *
+     * Complexity O(n), where n is the number of items in the file (calls WAVLTree.fromSorted), O(log(n)) extra memory
+     */
+    public static WAVLTree load(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            Reader reader = new Reader(channel);
+            if (reader.getInt() != MAGIC) {
+                throw new IOException(path + " is not a WAVL snapshot");
+            }
+            int version = reader.getInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported snapshot version " + version);
+            }
+            long n = reader.getLong();
+            if (n < 0 || n > Integer.MAX_VALUE) {
+                throw new IOException("Corrupt snapshot: " + n + " items");
+            }
+
+            WAVLTree tree;
+            try {
+                tree = WAVLTree.fromSorted((int) n, reader.keys(), reader.info());
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            } catch (IllegalArgumentException e) {
+                throw new IOException("Corrupt snapshot: " + e.getMessage(), e);
+            }
+            reader.finish();
+            return tree;
+        }
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * Buffers the writes to the channel and computes their checksum.
+     */
+    private static final class Writer {
+
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        private final CRC32 checksum = new CRC32();
+
+        Writer(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        void putInt(int value) throws IOException {
+            ensure(Integer.BYTES);
+            buffer.putInt(value);
+        }
+
+        void putLong(long value) throws IOException {
+            ensure(Long.BYTES);
+            buffer.putLong(value);
+        }
+
+        void putVarLong(long value) throws IOException {
+            ensure(MAX_VARINT_BYTES);
+            while ((value & ~0x7FL) != 0) {
+                buffer.put((byte) (value & 0x7F | 0x80));
+                value >>>= 7;
+            }
+            buffer.put((byte) value);
+        }
+
+        void putBytes(byte[] bytes) throws IOException {
+            int offset = 0;
+            while (offset < bytes.length) {
+                ensure(1);
+                int length = Math.min(buffer.remaining(), bytes.length - offset);
+                buffer.put(bytes, offset, length);
+                offset += length;
+            }
+        }
+
+        /**
+         * Writes the rest of the buffer and the checksum.
+         */
+        void finish() throws IOException {
+            flush();
+            buffer.putInt((int) checksum.getValue());
+            buffer.flip();
+            write();
+        }
+
+        private void ensure(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) {
+                flush();
+            }
+        }
+
+        private void flush() throws IOException {
+            buffer.flip();
+            checksum.update(buffer.array(), 0, buffer.limit());
+            write();
+        }
+
+        private void write() throws IOException {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+    }
+
+    /**
+     * Buffers the reads from the channel, up to the checksum at the end of the file, and computes their checksum.
+     */
+    private static final class Reader {
+
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        private final CRC32 checksum = new CRC32();
+
+        /**
+         * The number of bytes before the checksum that were not read into the buffer yet.
+         */
+        private long unread;
+
+        /**
+         * The last info read and its bytes, an info equal to the previous one is not decoded again and shares its String.
+         */
+        private byte[] lastBytes;
+        private String lastInfo;
+
+        Reader(FileChannel channel) throws IOException {
+            this.channel = channel;
+            this.unread = channel.size() - Integer.BYTES;
+            buffer.limit(0);
+        }
+
+        int getInt() throws IOException {
+            require(Integer.BYTES);
+            return buffer.getInt();
+        }
+
+        long getLong() throws IOException {
+            require(Long.BYTES);
+            return buffer.getLong();
+        }
+
+        long getVarLong() throws IOException {
+            if (buffer.remaining() < MAX_VARINT_BYTES) {
+                fill(MAX_VARINT_BYTES);
+            }
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                if (!buffer.hasRemaining()) {
+                    throw new EOFException("Truncated snapshot");
+                }
+                byte b = buffer.get();
+                value |= (long) (b & 0x7F) << shift;
+                if (b >= 0) {
+                    return value;
+                }
+            }
+            throw new IOException("Corrupt snapshot: varint longer than " + MAX_VARINT_BYTES + " bytes");
+        }
+
+        String getString() throws IOException {
+            long length = getVarLong() - 1;
+            if (length < 0) {
+                return null;
+            }
+            if (length > Integer.MAX_VALUE - 8) {
+                throw new IOException("Corrupt snapshot: info of " + length + " bytes");
+            }
+            int size = (int) length;
+            if (size <= BUFFER_SIZE) {
+                require(size);
+                if (!sameAsLast(size)) {
+                    lastBytes = Arrays.copyOfRange(buffer.array(), buffer.position(), buffer.position() + size);
+                    lastInfo = new String(lastBytes, StandardCharsets.UTF_8);
+                }
+                buffer.position(buffer.position() + size);
+                return lastInfo;
+            }
+            byte[] bytes = new byte[size];
+            int offset = 0;
+            while (offset < size) {
+                require(1);
+                int chunk = Math.min(buffer.remaining(), size - offset);
+                buffer.get(bytes, offset, chunk);
+                offset += chunk;
+            }
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        /**
+         * @return true if the next size bytes of the buffer are the bytes of the last info
+         */
+        private boolean sameAsLast(int size) {
+            if (lastBytes == null || lastBytes.length != size) {
+                return false;
+            }
+            byte[] array = buffer.array();
+            int position = buffer.position();
+            for (int i = 0; i < size; i++) {
+                if (array[position + i] != lastBytes[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        PrimitiveIterator.OfInt keys() {
+            return new PrimitiveIterator.OfInt() {
+                private long previous = 0;
+
+                @Override
+                public boolean hasNext() {
+                    return true; // fromSorted reads exactly the number of items of the header
+                }
+
+                @Override
+                public int nextInt() {
+                    try {
+                        long key = previous + unzigzag(getVarLong());
+                        if (key < Integer.MIN_VALUE || key > Integer.MAX_VALUE) {
+                            throw new IOException("Corrupt snapshot: key " + key);
+                        }
+                        previous = key;
+                        return (int) key;
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+            };
+        }
+
+        Iterator<String> info() {
+            return new Iterator<String>() {
+                @Override
+                public boolean hasNext() {
+                    return true;
+                }
+
+                @Override
+                public String next() {
+                    try {
+                        return getString();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+            };
+        }
+
+        /**
+         * Checks that all the bytes before the checksum were read and that they match it.
+         */
+        void finish() throws IOException {
+            if (buffer.hasRemaining() || unread > 0) {
+                throw new IOException("Corrupt snapshot: bytes after the last item");
+            }
+            ByteBuffer trailer = ByteBuffer.allocate(Integer.BYTES);
+            while (trailer.hasRemaining()) {
+                if (channel.read(trailer) < 0) {
+                    throw new EOFException("Truncated snapshot");
+                }
+            }
+            if (trailer.getInt(0) != (int) checksum.getValue()) {
+                throw new IOException("Corrupt snapshot: checksum mismatch");
+            }
+        }
+
+        private void require(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) {
+                fill(bytes);
+                if (buffer.remaining() < bytes) {
+                    throw new EOFException("Truncated snapshot");
+                }
+            }
+        }
+
+        /**
+         * Reads from the channel until the buffer holds at least bytes bytes or all the bytes before the checksum.
+         */
+        private void fill(int bytes) throws IOException {
+            buffer.compact();
+            while (buffer.position() < bytes && unread > 0) {
+                int start = buffer.position();
+                int limit = (int) Math.min(buffer.capacity(), start + unread);
+                buffer.limit(limit);
+                int read = channel.read(buffer);
+                if (read < 0) {
+                    break;
+                }
+                checksum.update(buffer.array(), start, read);
+                unread -= read;
+                buffer.limit(buffer.capacity());
+            }
+            buffer.flip();
+        }
+    }
+}
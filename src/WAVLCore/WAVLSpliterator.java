@@ -0,0 +1,167 @@
+package WAVLCore;
+
+import WAVLCore.WAVLTree.WAVLNode;
+
+import java.util.AbstractMap;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+
+/**
+ * WAVLSpliterator
+ * <p>
+ * The in-order positions index..fence-1 of a WAVL tree.
+ * Splitting halves the positions in O(1) and the first node of a half is found by a descent on the subtree sizes
+ * when it is first advanced, so the sizes of all the splits are exact (SIZED | SUBSIZED) and a parallel
+ * stream over the tree splits as evenly as over an array. Advancing walks the father links.
+ * <p>
+ * The tree must not be changed while a spliterator over it is in use.
+ */
+abstract class WAVLSpliterator {
+
+    static final int CHARACTERISTICS = Spliterator.SIZED | Spliterator.SUBSIZED | Spliterator.ORDERED
+            | Spliterator.SORTED | Spliterator.DISTINCT | Spliterator.NONNULL;
+
+    private final WAVLNode root;
+
+    /**
+     * The position of the next node, and one past the last position.
+     */
+    private int index;
+    private final int fence;
+
+    /**
+     * The node at index, or null if it was not found yet.
+     */
+    private WAVLNode next;
+
+    WAVLSpliterator(WAVLNode root, int index, int fence) {
+        this.root = root;
+        this.index = index;
+        this.fence = fence;
+    }
+
+    /**
+     * returns the node at index and moves past it, or null if there are no positions left
+     *
+     * Complexity O(log(n)) for the first node, O(1) amortized for the others
+     */
+    final WAVLNode advance() {
+        if (index >= fence) {
+            return null;
+        }
+        WAVLNode node = next != null ? next : WAVLTree.nodeAt(root, index);
+        index++;
+        next = index < fence ? WAVLTree.getSuccessor(node) : null;
+        return node;
+    }
+
+    /**
+     * Moves this spliterator to the upper half of its positions.
+     *
+     * @return the lower half, as a {index, fence} pair, or null if there are less than two positions
+     */
+    final int[] splitLowerHalf() {
+        if (fence - index < 2) {
+            return null;
+        }
+        int[] lower = {index, (index + fence) >>> 1};
+        index = lower[1];
+        next = null;
+        return lower;
+    }
+
+    final WAVLNode root() {
+        return root;
+    }
+
+    public final long estimateSize() {
+        return fence - index;
+    }
+
+    public final int characteristics() {
+        return CHARACTERISTICS;
+    }
+
+    /**
+     * The keys of the tree, in increasing order.
+     */
+    static final class Keys extends WAVLSpliterator implements Spliterator.OfInt {
+
+        Keys(WAVLNode root, int index, int fence) {
+            super(root, index, fence);
+        }
+
+        @Override
+        public boolean tryAdvance(IntConsumer action) {
+            WAVLNode node = advance();
+            if (node == null) {
+                return false;
+            }
+            action.accept(node.getKey());
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(IntConsumer action) {
+            for (WAVLNode node = advance(); node != null; node = advance()) {
+                action.accept(node.getKey());
+            }
+        }
+
+        @Override
+        public Spliterator.OfInt trySplit() {
+            int[] lower = splitLowerHalf();
+            return lower == null ? null : new Keys(root(), lower[0], lower[1]);
+        }
+
+        @Override
+        public Comparator<? super Integer> getComparator() {
+            return null; // Natural order
+        }
+    }
+
+    /**
+     * The (key, info) items of the tree, in increasing key order.
+     */
+    static final class Entries extends WAVLSpliterator implements Spliterator<Map.Entry<Integer, String>> {
+
+        Entries(WAVLNode root, int index, int fence) {
+            super(root, index, fence);
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super Map.Entry<Integer, String>> action) {
+            WAVLNode node = advance();
+            if (node == null) {
+                return false;
+            }
+            action.accept(entry(node));
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super Map.Entry<Integer, String>> action) {
+            for (WAVLNode node = advance(); node != null; node = advance()) {
+                action.accept(entry(node));
+            }
+        }
+
+        @Override
+        public Spliterator<Map.Entry<Integer, String>> trySplit() {
+            int[] lower = splitLowerHalf();
+            return lower == null ? null : new Entries(root(), lower[0], lower[1]);
+        }
+
+        @Override
+        public Comparator<? super Map.Entry<Integer, String>> getComparator() {
+            return Map.Entry.comparingByKey();
+        }
+
+        private static Map.Entry<Integer, String> entry(WAVLNode node) {
+            return new AbstractMap.SimpleImmutableEntry<>(node.getKey(), node.getValue());
+        }
+    }
+}
@@ -1,6 +1,19 @@
 package WAVLCore;
 
-import com.sun.javaws.exceptions.InvalidArgumentException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.Random;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * WAVLTree
@@ -16,9 +29,393 @@ public class WAVLTree {
     private WAVLNode root = null;
 
     /**
-     * An external leaf to be used
+     * The external leaf shared by all trees, so nodes can be moved between trees by join and split.
+     * It is never modified.
      */
-    private final WAVLNode externalLeaf = new WAVLNode();
+    private static final WAVLNode EXTERNAL_LEAF = new WAVLNode();
+
+    /**
+     * The number of times the nodes of the tree were detached (by join, split and the set operations),
+     * the fingers taken before that restart from the root.
+     */
+    private int detachments;
+
+    /**
+     * The node with the largest key, or null if it is not known (it is found again by the next insert).
+     */
+    private WAVLNode rightmost;
+
+    /**
+     * Appends (inserts above the largest key) link the new node under rightmost and leave the subtree sizes of the
+     * right spine (the path from the root to rightmost) stale, all the other nodes keep their sizes.
+     * The spine is fixed by flushAppends(), bottom-up from rightmost, before any operation that needs the sizes.
+     * Until then size() is the size the tree had before the appends plus their number.
+     */
+    private boolean spineStale;
+    private int sizeBeforeAppends;
+    private int appends;
+
+    /**
+     * While insertAll inserts its batch the subtree sizes are not fixed after every insert, it fixes them once at the end.
+     */
+    private boolean sizesDeferred;
+
+    /**
+     * The augmentation of the nodes, or null if the tree is not augmented.
+     */
+    private final WAVLMonoid monoid;
+
+    /**
+     * The hash index of the nodes by key, or null if it is not enabled (see enableHashIndex).
+     */
+    private WAVLHashIndex hashIndex;
+
+    /**
+     * While the balance is relaxed (see enableRelaxedBalance), the nodes that may break the rank rule after a delete,
+     * oldest first, otherwise null. stepsPerDelete of them are rebalanced by every delete.
+     */
+    private ArrayDeque<WAVLNode> unbalanced;
+    private int stepsPerDelete;
+
+    public WAVLTree() {
+        this.monoid = null;
+    }
+
+    /**
+     * public WAVLTree(WAVLMonoid monoid)
+     * <p>
+     * Creates an empty tree whose nodes keep the aggregate of monoid over their subtrees, see aggregate(lo, hi).
+     */
+    public WAVLTree(WAVLMonoid monoid) {
+        if (monoid == null) {
+            throw new IllegalArgumentException("monoid must not be null");
+        }
+        this.monoid = monoid;
+    }
+
+    /**
+     * Creates a tree around the detached subtree of root (possibly null).
+     */
+    WAVLTree(WAVLNode root) {
+        this(root, null);
+    }
+
+    /**
+     * Creates a tree around the detached subtree of root (possibly null), whose nodes are augmented by monoid.
+     */
+    WAVLTree(WAVLNode root, WAVLMonoid monoid) {
+        this.root = root;
+        this.monoid = monoid;
+    }
+
+    /**
+     * Empties the tree.
+     *
+     * @return the root it had, or null if the tree was empty
+     * Complexity O(1), plus fixing the marked nodes while the balance is relaxed (see rebalance)
+     */
+    WAVLNode detachRoot() {
+        rebalance(Integer.MAX_VALUE);
+        flushAppends();
+        rightmost = null;
+        detachments++;
+        WAVLNode node = root;
+        root = null;
+        if (hashIndex != null) {
+            hashIndex = new WAVLHashIndex(0);
+        }
+        return node;
+    }
+
+    /**
+     * public void enableHashIndex()
+     * <p>
+     * Adds a hash index from the keys to the nodes, kept in sync by insert and delete, so search and delete of a key
+     * find its node in O(1) expected instead of descending from the root. The ordered operations do not use it.
+     * The index costs 10.7 to 21.3 bytes per item (see WAVLHashIndex). The trees returned by join, split and the set
+     * operations do not have an index, the tree that gave them its nodes keeps an empty one.
+     *
+     * Complexity O(n), where n is the number of nodes in the tree, nothing if the index is already enabled
+     */
+    public void enableHashIndex() {
+        if (hashIndex != null) {
+            return;
+        }
+        hashIndex = new WAVLHashIndex(size());
+        for (WAVLNode node = minNode(); node != null; node = getSuccessor(node)) {
+            hashIndex.put(node);
+        }
+    }
+
+    /**
+     * public void disableHashIndex()
+     * <p>
+     * Drops the hash index, search and delete descend from the root again.
+     *
+     * Complexity O(1)
+     */
+    public void disableHashIndex() {
+        hashIndex = null;
+    }
+
+    /**
+     * @return true if and only if the hash index is enabled
+     * Complexity O(1)
+     */
+    public boolean hasHashIndex() {
+        return hashIndex != null;
+    }
+
+    /**
+     * public void enableRelaxedBalance(int stepsPerDelete)
+     * <p>
+     * Relaxes the balance of the tree for bursts of writes: delete unlinks its node without rebalancing (only the
+     * subtree sizes are fixed) and marks the node where the rebalancing would start. The rank rule is relaxed to
+     * rank differences of at least 1 and leaves of any rank, which insert keeps, so the height stays logarithmic in
+     * the number of inserts (deletion without rebalancing, as in Sen and Tarjan's relaxed AVL trees).
+     * Every delete then fixes up to stepsPerDelete of the marked nodes, the oldest first, and rebalance(maxSteps) fixes
+     * more of them, each step is one demotion or rotation. Operations that move nodes between trees (join, split and
+     * the set operations) and disableRelaxedBalance fix all of them first.
+     *
+     * @throws IllegalArgumentException if stepsPerDelete is negative
+     * Complexity O(1)
+     */
+    public void enableRelaxedBalance(int stepsPerDelete) {
+        if (stepsPerDelete < 0) {
+            throw new IllegalArgumentException("stepsPerDelete must not be negative, got " + stepsPerDelete);
+        }
+        if (unbalanced == null) {
+            unbalanced = new ArrayDeque<>();
+        }
+        this.stepsPerDelete = stepsPerDelete;
+    }
+
+    /**
+     * public void disableRelaxedBalance()
+     * <p>
+     * Fixes all the marked nodes, delete rebalances eagerly again.
+     *
+     * Complexity O(m + log(n)) amortized, where m is the number of marked nodes and n the number of nodes in the tree
+     */
+    public void disableRelaxedBalance() {
+        if (unbalanced == null) {
+            return;
+        }
+        rebalance(Integer.MAX_VALUE);
+        unbalanced = null;
+    }
+
+    /**
+     * @return true if and only if the balance is relaxed
+     * Complexity O(1)
+     */
+    public boolean isRelaxedBalance() {
+        return unbalanced != null;
+    }
+
+    /**
+     * @return the number of marked nodes not fixed yet (a node can be marked more than once), 0 if the balance is
+     * not relaxed
+     * Complexity O(1)
+     */
+    public int pendingRebalances() {
+        return unbalanced == null ? 0 : unbalanced.size();
+    }
+
+    /**
+     * public int rebalance(int maxSteps)
+     * <p>
+     * Fixes the marked nodes, the oldest first, until there are none or maxSteps steps were made. A step checks a
+     * marked node and, if it breaks the rank rule, makes one demotion or rotation at it, marking the nodes whose rank
+     * differences it changed. When there are no marked nodes the tree keeps the rank rule of the WAVL tree again.
+     * returns the number of steps made.
+     *
+     * Complexity O(maxSteps)
+     */
+    public int rebalance(int maxSteps) {
+        if (unbalanced == null) {
+            return 0;
+        }
+        flushAppends();
+        int steps = 0;
+        while (steps < maxSteps && !unbalanced.isEmpty()) {
+            rebalanceStep(unbalanced.poll());
+            steps++;
+        }
+        return steps;
+    }
+
+    /**
+     * Makes one demotion or rotation at node if it breaks the rank rule, a leaf of positive rank or a node with a
+     * rank difference of 3 or more. These are the cases of postDeletionRebalancing, with any rank difference of
+     * 2 or more taken as 2 and any of 3 or more as 3, and with the nodes whose rank differences changed marked
+     * instead of followed.
+     *
+     * Complexity O(1)
+     */
+    private void rebalanceStep(WAVLNode node) {
+        if ((node.getFather() == null && node != root) || !breaksRankRule(node)) { // Deleted or fixed already
+            return;
+        }
+        if (node.isLeaf()) { // Demote to 0
+            node.setRank(0);
+            markUnbalanced(node.getFather());
+            return;
+        }
+        boolean leftShort = node.getRankDifferenceFromLeft() >= 3;
+        int siblingDifference = leftShort ? node.getRankDifferenceFromRight() : node.getRankDifferenceFromLeft();
+        if (siblingDifference >= 2) { // Demote
+            node.setRank(node.getRank() - 1);
+            markUnbalanced(node);
+            markUnbalanced(node.getFather());
+            return;
+        }
+        WAVLNode sibling = leftShort ? node.getRealRight() : node.getRealLeft();
+        int outerDifference = leftShort ? sibling.getRankDifferenceFromRight() : sibling.getRankDifferenceFromLeft();
+        int innerDifference = leftShort ? sibling.getRankDifferenceFromLeft() : sibling.getRankDifferenceFromRight();
+        if (outerDifference >= 2 && innerDifference >= 2) { // Double demote
+            sibling.setRank(sibling.getRank() - 1);
+            node.setRank(node.getRank() - 1);
+            markUnbalanced(sibling);
+            markUnbalanced(node);
+            markUnbalanced(node.getFather());
+        } else if (outerDifference == 1) { // Rotate
+            if (leftShort) {
+                leftRotate(sibling);
+            } else {
+                rightRotate(sibling);
+            }
+            sibling.setRank(sibling.getRank() + 1);
+            node.setRank(node.getRank() - 1);
+            markUnbalanced(node);
+        } else { // Double rotate
+            WAVLNode inner = leftShort ? sibling.getRealLeft() : sibling.getRealRight();
+            if (leftShort) {
+                doubleRotateWithLeftChild(inner);
+            } else {
+                doubleRotateWithRightChild(inner);
+            }
+            inner.setRank(inner.getRank() + 2);
+            sibling.setRank(sibling.getRank() - 1);
+            node.setRank(node.getRank() - 2);
+            markUnbalanced(sibling);
+            markUnbalanced(node);
+        }
+    }
+
+    /**
+     * @return true if and only if node is a leaf of positive rank or has a rank difference of 3 or more,
+     * which the rank rule allows only while the balance is relaxed
+     * Complexity O(1)
+     */
+    private static boolean breaksRankRule(WAVLNode node) {
+        if (!node.isRealNode()) {
+            return false;
+        }
+        if (node.isLeaf()) {
+            return node.getRank() > 0;
+        }
+        return node.getRankDifferenceFromLeft() >= 3 || node.getRankDifferenceFromRight() >= 3;
+    }
+
+    private void markUnbalanced(WAVLNode node) {
+        if (node != null) {
+            unbalanced.add(node);
+        }
+    }
+
+    /**
+     * public int height()
+     * <p>
+     * returns the height of the tree, the number of edges on its longest path from the root to a leaf,
+     * or -1 if the tree is empty.
+     *
+     * Complexity O(n), where n is the number of nodes in the tree
+     */
+    public int height() {
+        return height(root);
+    }
+
+    private static int height(WAVLNode node) {
+        if (node == null) {
+            return -1;
+        }
+        return 1 + Math.max(height(node.getLeft()), height(node.getRight()));
+    }
+
+    /**
+     * public static WAVLTree fromSorted(int[] keys, String[] info)
+     * <p>
+     * Builds a WAVL tree holding the items (keys[j], info[j]) without calling insert.
+     * keys must be strictly increasing and info must have the same length as keys.
+     *
+     * Complexity O(n), where n is the number of keys (calls fromSorted with iterators).
+     */
+    public static WAVLTree fromSorted(int[] keys, String[] info) {
+        if (keys.length != info.length) {
+            throw new IllegalArgumentException("keys and info must have the same length");
+        }
+        return fromSorted(keys.length, Arrays.stream(keys).iterator(), Arrays.asList(info).iterator());
+    }
+
+    /**
+     * public static WAVLTree fromSorted(int n, PrimitiveIterator.OfInt keys, Iterator<String> info)
+     * <p>
+     * Builds a WAVL tree from the next n items of a sorted source without materializing it,
+     * for every item a key is read from keys and then its info is read from info.
+     * The keys must be strictly increasing and both iterators must hold at least n items.
+     * The tree is built bottom-up in key order, every node gets its height as its rank,
+     * which is a valid WAVL rank since the two subtrees of every node differ in size by at most one.
+     *
+     * Complexity O(n), O(log(n)) extra memory for the recursion.
+     */
+    public static WAVLTree fromSorted(int n, PrimitiveIterator.OfInt keys, Iterator<String> info) {
+        if (n < 0) {
+            throw new IllegalArgumentException("n must not be negative");
+        }
+
+        WAVLTree tree = new WAVLTree();
+        tree.root = tree.buildSubtree(n, keys, info, new long[]{Long.MIN_VALUE});
+        return tree;
+    }
+
+    /**
+     * Builds a perfectly balanced subtree from the next n items of keys and info.
+     *
+     * @param lastKey holds the last key read, to check the keys are strictly increasing
+     * @return the root of the subtree (with no father), or null if n is 0
+     * Complexity O(n)
+     */
+    private WAVLNode buildSubtree(int n, PrimitiveIterator.OfInt keys, Iterator<String> info, long[] lastKey) {
+        if (n == 0) {
+            return null;
+        }
+
+        int leftSize = (n - 1) / 2;
+        WAVLNode left = buildSubtree(leftSize, keys, info, lastKey);
+
+        if (!keys.hasNext() || !info.hasNext()) {
+            throw new IllegalArgumentException("The source has less items than expected");
+        }
+        int key = keys.nextInt();
+        if (key <= lastKey[0]) {
+            throw new IllegalArgumentException("Keys must be strictly increasing, got " + key + " after " + lastKey[0]);
+        }
+        lastKey[0] = key;
+        String value = info.next();
+
+        WAVLNode right = buildSubtree(n - 1 - leftSize, keys, info, lastKey);
+
+        // The constructor sets the subtree size and rank = max(children ranks) + 1, the height:
+        WAVLNode node = new WAVLNode(key, value, right, left, null);
+        if (left != null) {
+            left.setFather(node);
+        }
+        if (right != null) {
+            right.setFather(node);
+        }
+        return node;
+    }
 
     /**
      * public boolean empty()
@@ -38,12 +435,17 @@ public class WAVLTree {
      * returns the info of an item with key k if it exists in the tree
      * otherwise, returns null
      *
-     * Complexity O(log(n)), where n is the number of nodes in the tree (calls searchNode).
+     * Complexity O(log(n)), where n is the number of nodes in the tree (calls searchNode),
+     * O(1) expected with the hash index.
      */
     public String search(int k) {
+        if (hashIndex != null) {
+            WAVLNode node = hashIndex.get(k);
+            return node == null ? null : node.getValue();
+        }
 
         WAVLNode node = searchNode(k);
-        if (node != null) {
+        if (node != null && node.getKey() == k) {
             return node.getValue();
         } else {
             return null;
@@ -51,8 +453,8 @@ public class WAVLTree {
     }
 
     /**
-     * returns the node with key k if it exists in the tree
-     * otherwise, returns null
+     * returns the node with key k if it exists in the tree,
+     * otherwise the node that would be its father (or null if the tree is empty)
      *
      * Complexity O(log(n)), where n is the number of nodes in the tree (travels all the way to a node in the w.c).
      */
@@ -83,6 +485,154 @@ public class WAVLTree {
         return null; // No match
     }
 
+    /**
+     * public String[] searchAll(int[] keys)
+     * <p>
+     * Returns the info of the item of every key of keys, in the order of keys (null for a key that is not in the
+     * tree), see searchNodes.
+     *
+     * Complexity O(m log(m) + m log(n/m + 1)), where m is the number of keys and n the number of nodes in the tree,
+     * O(m) expected with the hash index.
+     */
+    public String[] searchAll(int[] keys) {
+        String[] info = new String[keys.length];
+        if (hashIndex != null) {
+            for (int j = 0; j < keys.length; j++) {
+                WAVLNode node = hashIndex.get(keys[j]);
+                info[j] = node == null ? null : node.getValue();
+            }
+            return info;
+        }
+
+        long[] sorted = sortWithIndices(keys);
+        WAVLNode[] nodes = searchNodes(sorted);
+        for (int j = 0; j < sorted.length; j++) {
+            if (isNodeOf(nodes[j], sorted[j])) {
+                info[(int) sorted[j]] = nodes[j].getValue();
+            }
+        }
+        return info;
+    }
+
+    /**
+     * public boolean containsAll(int[] keys)
+     * <p>
+     * Returns true if every key of keys is in the tree, see searchNodes.
+     *
+     * Complexity O(m log(m) + m log(n/m + 1)), where m is the number of keys and n the number of nodes in the tree,
+     * O(m) expected with the hash index.
+     */
+    public boolean containsAll(int[] keys) {
+        if (hashIndex != null) {
+            for (int key : keys) {
+                if (hashIndex.get(key) == null) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        long[] sorted = sortWithIndices(keys);
+        WAVLNode[] nodes = searchNodes(sorted);
+        for (int j = 0; j < sorted.length; j++) {
+            if (!isNodeOf(nodes[j], sorted[j])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return true if node is the node of the key in the upper half of sortedKey (see sortWithIndices)
+     */
+    private static boolean isNodeOf(WAVLNode node, long sortedKey) {
+        return node != null && node.getKey() == (int) (sortedKey >> 32);
+    }
+
+    /**
+     * @return the keys in increasing order, each in the upper half of a long with its index in keys in the lower half
+     * Complexity O(m log(m)), where m is the number of keys
+     */
+    private static long[] sortWithIndices(int[] keys) {
+        long[] sorted = new long[keys.length];
+        for (int j = 0; j < keys.length; j++) {
+            sorted[j] = (long) keys[j] << 32 | j;
+        }
+        Arrays.sort(sorted);
+        return sorted;
+    }
+
+    /**
+     * The number of descents searchNodes interleaves.
+     */
+    private static final int BATCH_LANES = 8;
+
+    /**
+     * Returns, like searchNode, for every key of sorted (keys in the upper halves, in increasing order) its node if it
+     * is in the tree, otherwise the node that would be its father (all null if the tree is empty).
+     * The keys are split into BATCH_LANES runs of consecutive keys, and the lanes go down the tree together, one
+     * level each per round, so the cache misses of the different lanes overlap instead of waiting on each other.
+     * Within a lane every key starts from the node where the previous key ended: it climbs (through nodes that were
+     * just visited) only up to the lowest ancestor whose subtree can hold it, like WAVLFinger, so the keys of a lane
+     * share the common prefix of their paths.
+     *
+     * Complexity O(m log(n/m + 1)), where m is the number of keys and n the number of nodes in the tree
+     */
+    private WAVLNode[] searchNodes(long[] sorted) {
+        int m = sorted.length;
+        WAVLNode[] found = new WAVLNode[m];
+        if (root == null || m == 0) {
+            return found;
+        }
+
+        int lanes = Math.min(BATCH_LANES, m);
+        WAVLNode[] current = new WAVLNode[lanes];
+        int[] positions = new int[lanes]; // The key each lane looks for, lane l ends before the start of lane l + 1
+        int[] ends = new int[lanes];
+        for (int l = 0; l < lanes; l++) {
+            current[l] = root;
+            positions[l] = (int) ((long) m * l / lanes);
+            ends[l] = (int) ((long) m * (l + 1) / lanes);
+        }
+
+        int active = lanes;
+        while (active > 0) {
+            for (int l = 0; l < lanes; l++) {
+                WAVLNode node = current[l];
+                if (node == null) {
+                    continue;
+                }
+                int k = (int) (sorted[positions[l]] >> 32);
+                if (k != node.getKey()) {
+                    WAVLNode child = k < node.getKey() ? node.getLeft() : node.getRight();
+                    if (child != null) {
+                        current[l] = child;
+                        continue;
+                    }
+                }
+                found[positions[l]] = node;
+
+                // The key of the lane is settled, the next one is at least as large
+                if (++positions[l] == ends[l]) {
+                    current[l] = null;
+                    active--;
+                    continue;
+                }
+                k = (int) (sorted[positions[l]] >> 32);
+                if (k > node.getKey()) {
+                    while (node.getFather() != null && (node.isRightChild() || node.getFather().getKey() <= k)) {
+                        node = node.getFather();
+                        if (k <= node.getKey()) {
+                            break;
+                        }
+                    }
+                }
+                current[l] = node;
+            }
+        }
+        return found;
+    }
+
     /**
      * public int insert(int k, String i)
      * <p>
@@ -90,32 +640,63 @@ public class WAVLTree {
      * the tree must remain valid (keep its invariants).
      * returns the number of rebalancing operations, or 0 if no rebalancing operations were necessary.
      * returns -1 if an item with key k already exists in the tree.
+     * A key larger than all the keys in the tree is appended without a search from the root, see append.
      *
-     * Complexity O(log(n)), where n is the number of nodes in the tree (calls searchNode, insertRebalance).
+     * Complexity O(log(n)), where n is the number of nodes in the tree (calls searchNode, insertRebalance),
+     * O(1) amortized for an append.
      */
     public int insert(int k, String i) {
 
         // Create the root if the tree is empty:
 
         if (empty()) {
-            root = new WAVLNode(k, i, null, null, null); // External leaf, no father.
+            root = newNode(k, i, null); // External leaf, no father.
+            rightmost = root;
+            if (hashIndex != null) {
+                hashIndex.put(root);
+            }
             return 0;
         }
 
+        if (hashIndex != null && hashIndex.get(k) != null) {
+            return -1; // Already exists
+        }
+
+        if (rightmost == null) {
+            rightmost = maxNode();
+        }
+        if (k > rightmost.getKey()) {
+            return append(k, i);
+        }
+        flushAppends();
+
         // Find the father of the insert point:
 
         WAVLNode father = searchNode(k);
-        int fatherKey = father.getKey();
-        if (k == fatherKey) return -1; // Already exists
+        if (k == father.getKey()) return -1; // Already exists
 
-        // Create the new node
-        WAVLNode newNode = new WAVLNode(k, i, null, null, father);
+        return insertAt(father, newNode(k, i, father));
+    }
 
-        if (k < fatherKey) {
+    /**
+     * Links newNode, a new node whose father is the node searchNode returns for its key, under its father.
+     *
+     * @return the number of rebalancing operations
+     * Complexity O(log(n)), where n is the number of nodes in the tree (calls insertRebalance).
+     */
+    int insertAt(WAVLNode father, WAVLNode newNode) {
+        flushAppends();
+        if (rightmost != null && newNode.getKey() > rightmost.getKey()) {
+            rightmost = newNode;
+        }
+        if (newNode.getKey() < father.getKey()) {
             father.setLeft(newNode);
         } else {
             father.setRight(newNode);
         }
+        if (hashIndex != null) {
+            hashIndex.put(newNode);
+        }
 
         father.reSetSubtreeSize();
 
@@ -124,20 +705,192 @@ public class WAVLTree {
     }
 
     /**
-     * Re-balance the tree defined by node after an insert.
-     * returns the number of re-balancing operations preformed.
+     * public int insertAll(int[] keys, String[] info)
+     * <p>
+     * inserts the items (keys[j], info[j]) whose keys are not in the tree, as insert does one by one (for a key that
+     * appears more than once the first item is inserted).
+     * The insert points of all the keys are found together first (see searchNodes). The sorted keys are then linked in
+     * at these points, a key next to the previous one of the batch (between the same two nodes of the tree) next to the
+     * node of that key, and rebalanced as usual, except that the subtree sizes are not fixed up to the root after
+     * every insert: the rotations only change nodes above the new nodes, so fixSizes fixes the sizes of the nodes above
+     * the new ones once, bottom-up, when the batch is in.
+     * returns the number of items inserted.
+     * @throws IllegalArgumentException if keys and info do not have the same length
      *
-     * Complexity O(d), where d is the depth of node (in w.c we promote until the root, we also
-     * need to adjust the subtree size in O(d), calls reSetSubTreeSizeOfTree. it's also O(log(n)) because d = O(log(n))
+     * Complexity O(m log(m) + m log(n/m + 1)) plus the rebalancing (O(1) amortized per item), where m is the number of
+     * keys and n the number of nodes in the tree
      */
-    private int insertRebalance(WAVLNode node) {
+    public int insertAll(int[] keys, String[] info) {
+        return insertAll(keys, info, false);
+    }
 
-        if (node.getFather() == null) { // Root, no need to re-balance.
-            node.reSetSubtreeSize();
-            return 0;
+    /**
+     * Same as insertAll(keys, info), and if replace is true also replaces the info of the items whose keys are in the
+     * tree by the first info of their key in the batch (in place, or by deleting and inserting the item again if the
+     * tree is augmented, since its measure may change).
+     */
+    int insertAll(int[] keys, String[] info, boolean replace) {
+        if (keys.length != info.length) {
+            throw new IllegalArgumentException("keys and info must have the same length");
+        }
+        long[] sorted = sortWithIndices(keys);
+        int m = sorted.length;
+        int j = 0;
+        int inserted = 0;
+        if (empty() && m > 0) {
+            insert(keys[(int) sorted[0]], info[(int) sorted[0]]);
+            j = 1;
+            inserted = 1;
         }
+        flushAppends();
+        WAVLNode[] ends = searchNodes(sorted);
+
+        int[] insertedKeys = new int[m];
+        int count = 0;
+        long lastKey = j == 0 ? Long.MIN_VALUE : sorted[0] >> 32;
+        int replaced = 0; // The items to insert again, moved to the beginning of sorted and ends
+        WAVLNode previous = null; // The last node inserted and the end of the search of its key
+        WAVLNode previousEnd = null;
+        sizesDeferred = true;
+        try {
+            for (; j < m; j++) {
+                int k = (int) (sorted[j] >> 32);
+                WAVLNode end = ends[j];
+                if (k == lastKey) {
+                    continue; // A repeated key of the batch
+                }
+                lastKey = k;
+                if (k == end.getKey()) {
+                    if (replace) {
+                        if (monoid == null) {
+                            end.info = info[(int) sorted[j]];
+                        } else {
+                            sorted[replaced] = sorted[j]; // Only sorted[j..] and ends[j..] are read after this
+                            ends[replaced++] = end;
+                        }
+                    }
+                    continue;
+                }
 
-        WAVLNode father = node.getFather();
+                // The insert point is in the gap between end and its neighbor on the side of k. If the previous key
+                // went into the same gap, the gap is now between the node of that key and the same neighbor
+                WAVLNode anchor = end;
+                if (end == previousEnd && previous.getKey() > end.getKey() == k > end.getKey()) {
+                    anchor = previous;
+                }
+                // Rotations may have moved the free child of the gap from anchor to its neighbor
+                WAVLNode father;
+                if (k > anchor.getKey()) {
+                    father = anchor.getRight() == null ? anchor : getSuccessor(anchor);
+                } else {
+                    father = anchor.getLeft() == null ? anchor : getPredecessor(anchor);
+                }
+
+                previous = newNode(k, info[(int) sorted[j]], father);
+                previousEnd = end;
+                insertAt(father, previous);
+                insertedKeys[count++] = k;
+            }
+        } finally {
+            sizesDeferred = false;
+            fixSizes(root, insertedKeys, 0, count);
+        }
+        for (int r = 0; r < replaced; r++) {
+            deleteNode(ends[r]);
+            insert((int) (sorted[r] >> 32), info[(int) sorted[r]]);
+        }
+        return inserted + count;
+    }
+
+    /**
+     * Recomputes, bottom-up, the subtree sizes of the nodes of node's subtree that have some of the keys in
+     * keys[from..to-1] (sorted keys of nodes in the tree) in their subtrees.
+     *
+     * Complexity O(m log(n/m + 1)), where m = to - from and n is the number of nodes in the subtree
+     */
+    private static void fixSizes(WAVLNode node, int[] keys, int from, int to) {
+        if (from >= to) {
+            return;
+        }
+        int below = lowerBound(keys, from, to, node.getKey());
+        int above = below < to && keys[below] == node.getKey() ? below + 1 : below;
+        fixSizes(node.getRealLeft(), keys, from, below);
+        fixSizes(node.getRealRight(), keys, above, to);
+        node.reSetSubtreeSize();
+    }
+
+    /**
+     * Inserts an item with key k, larger than the key of rightmost, as the right child of rightmost.
+     * The subtree sizes on the right spine are not updated (see spineStale), so a run of appends costs only
+     * the rebalancing: O(1) amortized per append.
+     *
+     * @return the number of rebalancing operations
+     * Complexity O(1) amortized
+     */
+    private int append(int k, String i) {
+        if (!spineStale) {
+            sizeBeforeAppends = root.getSubtreeSize();
+            spineStale = true;
+        }
+        appends++;
+
+        WAVLNode newNode = newNode(k, i, rightmost);
+        rightmost.setRight(newNode);
+        rightmost = newNode;
+        if (hashIndex != null) {
+            hashIndex.put(newNode);
+        }
+
+        // The rotations of the rebalancing only move spine nodes off the spine when all their children are off it,
+        // so they recompute the sizes of those nodes from up to date sizes
+        return insertRebalance(newNode);
+    }
+
+    /**
+     * Sets the subtree sizes (and aggregates) of the right spine after a run of appends, bottom-up from rightmost,
+     * the left subtrees of the spine nodes are up to date.
+     *
+     * Complexity O(log(n)), where n is the number of nodes in the tree
+     */
+    void flushAppends() {
+        if (!spineStale) {
+            return;
+        }
+        for (WAVLNode node = rightmost; node != null; node = node.getFather()) {
+            node.reSetSubtreeSize();
+        }
+        spineStale = false;
+        appends = 0;
+    }
+
+    /**
+     * Creates a node for the item (k, i) under father, augmented if the tree is.
+     *
+     * Complexity O(1)
+     */
+    WAVLNode newNode(int k, String i, WAVLNode father) {
+        return newNode(monoid, k, i, father);
+    }
+
+    private static WAVLNode newNode(WAVLMonoid monoid, int k, String i, WAVLNode father) {
+        return monoid == null ? new WAVLNode(k, i, null, null, father) : new AugmentedNode(k, i, father, monoid);
+    }
+
+    /**
+     * Re-balance the tree defined by node after an insert.
+     * returns the number of re-balancing operations preformed.
+     *
+     * Complexity O(d), where d is the depth of node (in w.c we promote until the root, we also
+     * need to adjust the subtree size in O(d), calls reSetSubTreeSizeOfTree. it's also O(log(n)) because d = O(log(n))
+     */
+    private int insertRebalance(WAVLNode node) {
+
+        if (node.getFather() == null) { // Root, no need to re-balance.
+            node.reSetSubtreeSize();
+            return 0;
+        }
+
+        WAVLNode father = node.getFather();
 
         // No need to re-balance since the new inserted node is with a legit rank:
 
@@ -154,11 +907,21 @@ public class WAVLTree {
             father.reSetSubtreeSize();
 
             return 1 + insertRebalance(father);
-        } else if (fatherRankDif == 2) {
+        } else if (fatherRankDif >= 2) { // Larger than 2 only while the balance is relaxed
 
             int nodeRankDif = (node.getRankDifferenceFromLeft()) - (node.getRankDifferenceFromRight());
 
-            if ((node.isRightChild() && nodeRankDif == 1) || (node.isLeftChild() && nodeRankDif == -1)) { //Case 2: Single rotate
+            WAVLNode innerChild = node.isRightChild() ? node.getRealLeft() : node.getRealRight();
+            if (unbalanced != null && (breaksRankRule(father) || breaksRankRule(node) || breaksRankRule(innerChild))) {
+                // The rotation may move the broken rank differences to the other rotated nodes
+                unbalanced.add(node);
+                unbalanced.add(father);
+                if (innerChild.isRealNode()) {
+                    unbalanced.add(innerChild);
+                }
+            }
+
+            if ((node.isRightChild() && nodeRankDif >= 1) || (node.isLeftChild() && nodeRankDif <= -1)) { //Case 2: Single rotate
 
                 if (node.isRightChild()) { // Right Child, rotate left
                     leftRotate(node);
@@ -211,6 +974,12 @@ public class WAVLTree {
      * Complexity O(log(k)), where k is the depth of the node
      */
     private void reSetSubTreeSizeOfTree(WAVLNode node) {
+        if (spineStale) { // Appending, node is on the right spine whose sizes are fixed by flushAppends
+            return;
+        }
+        if (sizesDeferred) { // Fixed by insertAll after its batch
+            return;
+        }
         WAVLNode currentNode = node;
         while (currentNode.getKey() != root.getKey()) {
             currentNode.reSetSubtreeSize();
@@ -227,11 +996,12 @@ public class WAVLTree {
      * returns the number of rebalancing operations, or 0 if no rebalancing operations were needed.
      * returns -1 if an item with key k was not found in the tree.
      *
-     * complexity O(log(n)), where n is the number of nodes in the tree (calls deleteNode,searchNode)
+     * complexity O(log(n)), where n is the number of nodes in the tree (calls deleteNode,searchNode),
+     * the search is O(1) expected with the hash index.
      */
     public int delete(int k) {
-        WAVLNode nodeToDelete = searchNode(k);
-        if (nodeToDelete == null) {
+        WAVLNode nodeToDelete = hashIndex != null ? hashIndex.get(k) : searchNode(k);
+        if (nodeToDelete == null || nodeToDelete.getKey() != k) {
             return -1;
         } else {
             return deleteNode(nodeToDelete);
@@ -239,12 +1009,133 @@ public class WAVLTree {
 
     }
 
+    /**
+     * public int deleteAll(int[] keys)
+     * <p>
+     * Deletes the items of all the keys of keys that are in the tree (a key can appear more than once).
+     * The nodes are all found first, together (see searchNodes), and then deleted one by one with deleteNode,
+     * which does not search.
+     * returns the number of items deleted.
+     *
+     * Complexity O(m log(m) + m log(n)), where m is the number of keys and n the number of nodes in the tree
+     */
+    public int deleteAll(int[] keys) {
+        WAVLNode[] nodes;
+        if (hashIndex != null) {
+            nodes = new WAVLNode[keys.length];
+            for (int j = 0; j < keys.length; j++) {
+                nodes[j] = hashIndex.get(keys[j]);
+            }
+        } else {
+            long[] sorted = sortWithIndices(keys);
+            nodes = searchNodes(sorted);
+            for (int j = 0; j < sorted.length; j++) {
+                if (!isNodeOf(nodes[j], sorted[j])) {
+                    nodes[j] = null;
+                }
+            }
+        }
+
+        int deleted = 0;
+        for (WAVLNode node : nodes) {
+            // A node that was already deleted (a repeated key) has no father, unless it was the last node
+            if (node != null && (node.getFather() != null || node == root)) {
+                deleteNode(node);
+                deleted++;
+            }
+        }
+        return deleted;
+    }
+
+    /**
+     * public int deleteRange(int lo, int hi)
+     * <p>
+     * Deletes the items with keys in lo..hi (inclusive), nothing if lo > hi.
+     * The tree is split at lo and at hi, which cuts the range out as whole subtrees, and the parts below and above
+     * the range are joined again. returns the number of items deleted, from the subtree size of the range.
+     * Like split, it moves the nodes of the tree: the fingers on it restart from the root.
+     *
+     * Complexity O(log(n)), where n is the number of nodes in the tree (calls splitNode, joinSubtrees),
+     * plus O(m) to remove the m deleted keys from the hash index if it is enabled.
+     */
+    public int deleteRange(int lo, int hi) {
+        if (lo > hi || empty()) {
+            return 0;
+        }
+        WAVLHashIndex index = hashIndex; // detachRoot empties it
+        WAVLTree smaller = new WAVLTree(null, monoid);
+        WAVLTree rest = new WAVLTree(null, monoid);
+        WAVLTree range = new WAVLTree(null, monoid);
+        WAVLTree larger = new WAVLTree(null, monoid);
+        WAVLNode first = splitNode(detachRoot(), lo, smaller, rest);
+        WAVLNode last = splitNode(rest.root, hi, range, larger);
+
+        int deleted = range.size();
+        for (WAVLNode node : new WAVLNode[]{first, last}) {
+            if (node != null) {
+                deleted++;
+                node.setFather(null);
+                if (index != null) {
+                    index.remove(node.getKey());
+                }
+            }
+        }
+        if (index != null) {
+            for (int key : range.keysToArray()) {
+                index.remove(key);
+            }
+        }
+
+        root = joinSubtrees(smaller.root, larger.root);
+        hashIndex = index;
+        return deleted;
+    }
+
+    /**
+     * public int evictBelow(int k)
+     * <p>
+     * Deletes the items with keys smaller than k, returns the number of items deleted (see deleteRange).
+     *
+     * Complexity O(log(n)), where n is the number of nodes in the tree (calls deleteRange)
+     */
+    public int evictBelow(int k) {
+        return k == Integer.MIN_VALUE ? 0 : deleteRange(Integer.MIN_VALUE, k - 1);
+    }
+
+    /**
+     * public int evictAbove(int k)
+     * <p>
+     * Deletes the items with keys larger than k, returns the number of items deleted (see deleteRange).
+     *
+     * Complexity O(log(n)), where n is the number of nodes in the tree (calls deleteRange)
+     */
+    public int evictAbove(int k) {
+        return k == Integer.MAX_VALUE ? 0 : deleteRange(k + 1, Integer.MAX_VALUE);
+    }
+
     /**
      * @param wavlNode the node to delete
      * @return the number of rebalancing operations, or 0 if no rebalancing operations were needed.
      * complexity O(log(n)), where n is the number of nodes in the tree (calls postDeletionRebalancing, getSuccessor).
      */
     public int deleteNode(WAVLNode wavlNode) {
+        flushAppends();
+        if (wavlNode == rightmost) {
+            rightmost = null;
+        }
+        if (hashIndex != null) {
+            hashIndex.remove(wavlNode.getKey());
+        }
+        // replaceWith moves nodes, not their items, so the index stays valid through the unlinking
+        int rebalances = unlinkNode(wavlNode);
+        wavlNode.setFather(null); // Marks the node as deleted for the fingers that are on it
+        if (unbalanced != null && !sizesDeferred) {
+            rebalance(stepsPerDelete);
+        }
+        return rebalances;
+    }
+
+    private int unlinkNode(WAVLNode wavlNode) {
 
         WAVLNode wavlNodeAncestor = wavlNode.getFather();
 
@@ -259,24 +1150,46 @@ public class WAVLTree {
             } else { //right child
                 wavlNodeAncestor.setRight(null);
             }
-            return postDeletionRebalancing(wavlNodeAncestor); // rebalancing from ancestor
+            return deletionRebalancing(wavlNodeAncestor); // rebalancing from ancestor
         } else if (wavlNode.getRealLeft().isRealNode() && !wavlNode.getRealRight().isRealNode()) { // unary with left node
             replaceWith(wavlNode, wavlNode.getRealLeft());
-            return postDeletionRebalancing(wavlNodeAncestor); // rebalancing from ancestor
+            return deletionRebalancing(wavlNodeAncestor); // rebalancing from ancestor
 
         } else if ((!wavlNode.getRealLeft().isRealNode()) && wavlNode.getRealRight().isRealNode()) { // unary with right node
             replaceWith(wavlNode, wavlNode.getRealRight());
-            return postDeletionRebalancing(wavlNodeAncestor); // rebalancing from ancestor
+            return deletionRebalancing(wavlNodeAncestor); // rebalancing from ancestor
 
         } else { //binary node
             WAVLNode successor = getSuccessor(wavlNode);
             WAVLNode successorAncestor = successor.getFather();
+            boolean broken = unbalanced != null && breaksRankRule(wavlNode);
             replaceWith(wavlNode, successor); // replace successor with node to delete and balance
+            if (broken) {
+                unbalanced.add(successor); // It takes the rank and the marks of the node
+            }
             if (successorAncestor == wavlNode) {
-                return postDeletionRebalancing(successor); // rebalancing from successor in case the node deleted was his ancestor
+                return deletionRebalancing(successor); // rebalancing from successor in case the node deleted was his ancestor
             }
-            return postDeletionRebalancing(successorAncestor); // rebalancing tree from successor's ancestor
+            return deletionRebalancing(successorAncestor); // rebalancing tree from successor's ancestor
+        }
+    }
+
+    /**
+     * Rebalances the tree after a deletion from node (see postDeletionRebalancing), unless the balance is relaxed:
+     * then it only fixes the subtree sizes up from node and marks node for rebalance.
+     *
+     * @return the number of rebalancing operations
+     * Complexity O(log(n)), where n is the number of nodes in the tree
+     */
+    private int deletionRebalancing(WAVLNode node) {
+        if (unbalanced == null) {
+            return postDeletionRebalancing(node);
+        }
+        if (node != null) {
+            reSetSubTreeSizeOfTree(node);
+            unbalanced.add(node);
         }
+        return 0;
     }
 
     /**
@@ -417,9 +1330,9 @@ public class WAVLTree {
      * @param node a node to find successor to
      * @return successor to a given node, null if it doesn't have one(largest key in tree)
      * Complexity O(d), where d is the depth, which is also O(log(n)) because d=O(log(n))
-     * . might traverse all the way to root.
+     * . might traverse all the way to root. O(1) amortized over an in-order walk.
      */
-    private WAVLNode getSuccessor(WAVLNode node) {
+    static WAVLNode getSuccessor(WAVLNode node) {
         if (node == null) {
             return null;
         }
@@ -434,20 +1347,40 @@ public class WAVLTree {
             return searchNode;
         }
 
-        if (node.getFather() == null) // if i am the root and i didn't find successor by now, it's null
+        while (searchNode.isRightChild()) { // going up the tree
+            searchNode = searchNode.getFather();
+        }
+
+        return searchNode.getFather(); // null if we got to the root from the right
+    }
+
+    /**
+     * get predecessor to a given node
+     *
+     * @param node a node to find predecessor to
+     * @return predecessor to a given node, null if it doesn't have one(smallest key in tree)
+     * Complexity O(d), where d is the depth of the node, O(1) amortized over an in-order walk.
+     */
+    static WAVLNode getPredecessor(WAVLNode node) {
+        if (node == null) {
             return null;
+        }
 
-        if (node.isLeftChild()) // if i'm left to a node he is my successor
-            return node.getFather();
+        WAVLNode searchNode = node;
 
-        while (searchNode.isRightChild()) { // going up the tree
-            searchNode = node.getFather();
+        if (node.getLeft() != null) {// the most right node in my left subtree is my predecessor
+            searchNode = node.getRealLeft();
+            while (searchNode.getRight() != null) {
+                searchNode = searchNode.getRealRight();
+            }
+            return searchNode;
         }
 
-        if (searchNode.getFather() != null)
-            return searchNode.getFather();
+        while (searchNode.isLeftChild()) { // going up the tree
+            searchNode = searchNode.getFather();
+        }
 
-        return null;
+        return searchNode.getFather(); // null if we got to the root from the left
     }
 
     /**
@@ -524,280 +1457,879 @@ public class WAVLTree {
         }
     }
 
-    // Helper Rotation Methods:
-
+    // Helper Rotation Methods:
+
+    /**
+     * Performing a rotation with the left child of node.
+     *
+     * @return The new node(tree) after the rotation
+     * complexity O(1)
+     */
+    private void leftRotate(WAVLNode node) {
+
+        WAVLNode father = node.getFather();
+        WAVLNode grandfather = father.getFather();
+        WAVLNode leftChild = node.getRealLeft();
+
+        if (father == root) {
+            root = node;
+        }
+
+        if (grandfather != null) {
+            if (grandfather.getRealRight() == father) {
+                grandfather.setRight(node);
+            } else {
+                grandfather.setLeft(node);
+            }
+        }
+        node.setFather(grandfather);
+        node.setLeft(father);
+
+        father.setFather(node);
+        father.setRight(leftChild);
+
+        if (leftChild.isRealNode()) {
+            leftChild.setFather(father);
+        }
+
+        // Re-set subtree size:
+
+        father.reSetSubtreeSize();
+        node.reSetSubtreeSize();
+        if (grandfather != null) {
+            grandfather.reSetSubtreeSize();
+        }
+    }
+
+
+    /**
+     * Performing a rotation with the right child of node.
+     *
+     * @return The new node(tree) after the rotation
+     * complexity O(1)
+     */
+    private void rightRotate(WAVLNode node) {
+
+        WAVLNode father = node.getFather();
+        WAVLNode grandfather = father.getFather();
+        WAVLNode rightChild = node.getRealRight();
+
+        if (father == root) {
+            root = node;
+        }
+
+        if (grandfather != null) {
+            if (grandfather.getRealRight() == father) {
+                grandfather.setRight(node);
+            } else {
+                grandfather.setLeft(node);
+            }
+        }
+        node.setFather(grandfather);
+        node.setRight(father);
+
+        father.setFather(node);
+        father.setLeft(rightChild);
+
+        if (rightChild.isRealNode()) {
+            rightChild.setFather(father);
+        }
+
+        // Re-set subtree size:
+
+        father.reSetSubtreeSize();
+        node.reSetSubtreeSize();
+        if (grandfather != null) {
+            grandfather.reSetSubtreeSize();
+        }
+
+    }
+
+    /**
+     * Performing a double rotation with left child.
+     *
+     * @return The new node(tree) after the rotation
+     * complexity O(1)
+     */
+    private void doubleRotateWithLeftChild(WAVLNode node) {
+        rightRotate(node);
+        leftRotate(node);
+    }
+
+    /**
+     * Performing a double rotation with right child.
+     *
+     * @return The new node(tree) after the rotation
+     * complexity O(1)
+     */
+    private void doubleRotateWithRightChild(WAVLNode node) {
+        leftRotate(node);
+        rightRotate(node);
+    }
+
+    /**
+     * public String min()
+     * <p>
+     * Returns the info of the item with the smallest key in the tree,
+     * or null if the tree is empty
+     *
+     * complexity O(log(n)), where n is the number of nodes in the tree
+     */
+    public String min() {
+        if (empty()) {
+            return null;
+        } else {
+            WAVLNode node = root;
+            while (node.getRealLeft().isRealNode()) {
+                node = node.getRealLeft();
+            }
+            return node.getValue();
+        }
+    }
+
+    /**
+     * public String max()
+     * <p>
+     * Returns the info of the item with the largest key in the tree,
+     * or null if the tree is empty
+     *
+     * complexity O(log(n)), where n is the number of nodes in the tree
+     */
+    public String max() {
+        if (empty()) {
+            return null;
+        } else {
+            WAVLNode node = root;
+            while (node.getRealRight().isRealNode()) {
+                node = node.getRealRight();
+            }
+            return node.getValue();
+        }
+    }
+
+    /**
+     * public int[] keysToArray()
+     * <p>
+     * Returns a sorted array which contains all keys in the tree,
+     * or an empty array if the tree is empty.
+     *
+     * complexity O(n), where n is the number of nodes in the tree. (an in-order walk using the father links).
+     */
+    public int[] keysToArray() {
+        int[] keys = new int[size()];
+        int index = 0;
+        for (WAVLNode node = minNode(); node != null; node = getSuccessor(node)) {
+            keys[index++] = node.getKey();
+        }
+        return keys;
+    }
+
+    /**
+     * public String[] infoToArray()
+     * <p>
+     * Returns an array which contains all info in the tree,
+     * sorted by their respective keys,
+     * or an empty array if the tree is empty.
+     *
+     * complexity O(n), where n is the number of nodes in the tree. (an in-order walk using the father links).
+     */
+    public String[] infoToArray() {
+        String[] info = new String[size()];
+        int index = 0;
+        for (WAVLNode node = minNode(); node != null; node = getSuccessor(node)) {
+            info[index++] = node.getValue();
+        }
+        return info;
+    }
+
+    /**
+     * public Spliterator.OfInt keySpliterator()
+     * <p>
+     * Returns a spliterator over the keys in increasing order, it splits on the subtree sizes
+     * so it reports exact sizes for all its splits. The tree must not be changed while it is in use.
+     *
+     * Complexity O(1), a traversal is O(n) and a split is O(1) (plus O(log(n)) when a split is first advanced)
+     */
+    public Spliterator.OfInt keySpliterator() {
+        flushAppends();
+        return new WAVLSpliterator.Keys(root, 0, size());
+    }
+
+    /**
+     * public Spliterator&lt;Map.Entry&lt;Integer, String&gt;&gt; entrySpliterator()
+     * <p>
+     * Returns a spliterator over the (key, info) items in increasing key order, like keySpliterator().
+     *
+     * Complexity O(1)
+     */
+    public Spliterator<Map.Entry<Integer, String>> entrySpliterator() {
+        flushAppends();
+        return new WAVLSpliterator.Entries(root, 0, size());
+    }
+
+    /**
+     * public IntStream keyStream()
+     * <p>
+     * Returns a sequential stream of the keys in increasing order, call parallel() on it for a parallel one.
+     *
+     * Complexity O(1) (calls keySpliterator)
+     */
+    public IntStream keyStream() {
+        return StreamSupport.intStream(keySpliterator(), false);
+    }
+
+    /**
+     * public Stream&lt;Map.Entry&lt;Integer, String&gt;&gt; entryStream()
+     * <p>
+     * Returns a sequential stream of the (key, info) items in increasing key order, call parallel() on it for a parallel one.
+     *
+     * Complexity O(1) (calls entrySpliterator)
+     */
+    public Stream<Map.Entry<Integer, String>> entryStream() {
+        return StreamSupport.stream(entrySpliterator(), false);
+    }
+
+    /**
+     * public WAVLCursor cursor()
+     * <p>
+     * Returns a cursor over the items of the tree, it is not positioned until one of its seek methods is called.
+     *
+     * Complexity O(1)
+     */
+    public WAVLCursor cursor() {
+        return new WAVLCursor(this);
+    }
+
+    /**
+     * public WAVLFinger finger()
+     * <p>
+     * returns a finger on the root of the tree, which starts every search from the node of the last one.
+     *
+     * Complexity O(1)
+     */
+    public WAVLFinger finger() {
+        return new WAVLFinger(this);
+    }
+
+    /**
+     * @return the number of times the nodes of the tree were detached
+     * Complexity O(1)
+     */
+    int detachments() {
+        return detachments;
+    }
+
+    /**
+     * public int size()
+     * <p>
+     * Returns the number of nodes in the tree.
+     * <p>
+     * precondition: none
+     * postcondition: none
+     * Complexity:O(1)
+     */
+    public int size() {
+        if (empty()) {
+            return 0;
+        }
+        if (spineStale) {
+            return sizeBeforeAppends + appends;
+        }
+        return root.getSubtreeSize();
+    }
+
+    /**
+     * public int getRoot()
+     * <p>
+     * Returns the root WAVL node, or null if the tree is empty.
+     * The subtree sizes (and aggregates) of the right spine are fixed first after appends, so every node reached from
+     * the root has exact sizes. The writers of ConcurrentWAVLTree and ShardedWAVLMap flush before they unlock, so for
+     * their readers this never writes.
+     * <p>
+     * precondition: none
+     * postcondition: none
+     * Complexity:O(1), O(log(n)) to fix the subtree sizes after appends
+     */
+    public WAVLNode getRoot() {
+        flushAppends();
+        return root;
+    }
+
+    /**
+     * public String select(int i)
+     * <p>
+     * Returns the value of the i'th smallest key, or null if i is not in 1..size()
+     * Example 1: select(1) returns the value of the node with minimal key
+     * Example 2: select(size()) returns the value of the node with maximal key
+     * Example 3: select(2) returns the value 2nd smallest minimal node, i.e the value of the node minimal node's successor
+     * <p>
+     * precondition: none
+     * postcondition: none
+     * Complexity: O(log(n)) where n is the number of nodes in tree, calls nodeAt
+     */
+    public String select(int i) {
+        if (i < 1 || i > size()) {
+            return null;
+        }
+        flushAppends();
+        return nodeAt(root, i - 1).getValue();
+    }
+
+    /**
+     * public int rank(int k)
+     * <p>
+     * Returns the number of keys smaller than or equal to k, so for a key k in the tree select(rank(k))
+     * returns its value.
+     *
+     * Complexity O(log(n)), where n is the number of nodes in the tree
+     */
+    public int rank(int k) {
+        flushAppends();
+        int count = 0;
+        WAVLNode node = root;
+        while (node != null) {
+            if (k < node.getKey()) {
+                node = node.getLeft();
+            } else {
+                count += node.getRealLeft().getSubtreeSize() + 1;
+                node = node.getRight();
+            }
+        }
+        return count;
+    }
+
+    /**
+     * public int countInRange(int lo, int hi)
+     * <p>
+     * Returns the number of keys in lo..hi (inclusive), 0 if lo > hi.
+     *
+     * Complexity O(log(n)), where n is the number of nodes in the tree (calls rank)
+     */
+    public int countInRange(int lo, int hi) {
+        if (lo > hi) {
+            return 0;
+        }
+        return rank(hi) - (lo == Integer.MIN_VALUE ? 0 : rank(lo - 1));
+    }
+
     /**
-     * Performing a rotation with the left child of node.
+     * public int quantile(double q)
+     * <p>
+     * Returns the q-quantile of the keys by the nearest rank method: the ceil(q * size())'th smallest key
+     * (the smallest key for q = 0).
+     * @throws IllegalArgumentException if q is not in [0, 1]
+     * @throws NoSuchElementException if the tree is empty
      *
-     * @return The new node(tree) after the rotation
-     * complexity O(1)
+     * Complexity O(log(n)), where n is the number of nodes in the tree
      */
-    private void leftRotate(WAVLNode node) {
-
-        WAVLNode father = node.getFather();
-        WAVLNode grandfather = father.getFather();
-        WAVLNode leftChild = node.getRealLeft();
-
-        if (father == root) {
-            root = node;
+    public int quantile(double q) {
+        if (!(q >= 0 && q <= 1)) {
+            throw new IllegalArgumentException("A quantile must be in [0, 1], got " + q);
+        }
+        if (empty()) {
+            throw new NoSuchElementException("The tree is empty");
         }
+        int n = size();
+        int rank = (int) Math.min(n, Math.max(1, (long) Math.ceil(q * n)));
+        flushAppends();
+        return nodeAt(root, rank - 1).getKey();
+    }
 
-        if (grandfather != null) {
-            if (grandfather.getRealRight() == father) {
-                grandfather.setRight(node);
-            } else {
-                grandfather.setLeft(node);
+    /**
+     * public int[] quantiles(double[] qs)
+     * <p>
+     * Returns the quantiles of the keys for all of qs (in any order), see quantile. The ranks are selected together
+     * (see keysAt), so the m quantiles share the upper levels of the tree.
+     * @throws IllegalArgumentException if a q is not in [0, 1]
+     * @throws NoSuchElementException if the tree is empty
+     *
+     * Complexity O(m log(n/m + 1)), where m is the number of quantiles and n the number of nodes in the tree
+     */
+    public int[] quantiles(double[] qs) {
+        if (empty()) {
+            throw new NoSuchElementException("The tree is empty");
+        }
+        int n = size();
+        long[] ranks = new long[qs.length]; // The rank in the upper half, the index in qs in the lower half
+        for (int j = 0; j < qs.length; j++) {
+            if (!(qs[j] >= 0 && qs[j] <= 1)) {
+                throw new IllegalArgumentException("A quantile must be in [0, 1], got " + qs[j]);
             }
+            long rank = Math.max(1, (long) Math.ceil(qs[j] * n));
+            ranks[j] = Math.min(rank, n) << 32 | j;
         }
-        node.setFather(grandfather);
-        node.setLeft(father);
+        Arrays.sort(ranks);
 
-        father.setFather(node);
-        father.setRight(leftChild);
+        int[] sortedRanks = new int[ranks.length];
+        for (int j = 0; j < ranks.length; j++) {
+            sortedRanks[j] = (int) (ranks[j] >>> 32);
+        }
+        int[] sortedKeys = keysAt(sortedRanks);
+        int[] keys = new int[qs.length];
+        for (int j = 0; j < ranks.length; j++) {
+            keys[(int) ranks[j]] = sortedKeys[j];
+        }
+        return keys;
+    }
 
-        if (leftChild.isRealNode()) {
-            leftChild.setFather(father);
+    /**
+     * public int[] sampleUniform(int m, Random random)
+     * <p>
+     * Returns min(m, size()) distinct keys of the tree chosen uniformly at random, in increasing order.
+     * The ranks are drawn by Floyd's algorithm and selected together like the ranks of quantiles.
+     * @throws IllegalArgumentException if m is negative
+     *
+     * Complexity O(m log(n/m + 1) + m log(m)), where n is the number of nodes in the tree
+     */
+    public int[] sampleUniform(int m, Random random) {
+        if (m < 0) {
+            throw new IllegalArgumentException("m must not be negative");
+        }
+        int n = size();
+        m = Math.min(m, n);
+        Set<Integer> chosen = new HashSet<>(m * 2);
+        for (int j = n - m + 1; j <= n; j++) {
+            int rank = 1 + random.nextInt(j);
+            chosen.add(chosen.contains(rank) ? j : rank);
         }
+        int[] ranks = new int[m];
+        int j = 0;
+        for (int rank : chosen) {
+            ranks[j++] = rank;
+        }
+        Arrays.sort(ranks);
+        return keysAt(ranks);
+    }
 
-        // Re-set subtree size:
+    /**
+     * Same as sampleUniform(m, random) with ThreadLocalRandom.
+     */
+    public int[] sampleUniform(int m) {
+        return sampleUniform(m, ThreadLocalRandom.current());
+    }
 
-        father.reSetSubtreeSize();
-        node.reSetSubtreeSize();
-        if (grandfather != null) {
-            grandfather.reSetSubtreeSize();
+    /**
+     * Returns the keys at the given non-decreasing 1-based ranks (in 1..size()).
+     * All the ranks go down from the root together: at every node the ranks are split into those of its left subtree,
+     * its own and those of its right subtree, so every node is visited once however many ranks pass through it.
+     * The subtrees still to visit are kept on an explicit stack, which is at most two nodes per level.
+     *
+     * Complexity O(m log(n/m + 1)), where m is the number of ranks and n the number of nodes in the tree
+     */
+    private int[] keysAt(int[] ranks) {
+        flushAppends();
+        int[] keys = new int[ranks.length];
+        if (ranks.length == 0) {
+            return keys;
+        }
+        int capacity = 2 * root.getRank() + 4; // The height is at most the rank of the root
+        WAVLNode[] nodes = new WAVLNode[capacity];
+        int[] positions = new int[capacity]; // The rank of the node
+        int[] froms = new int[capacity]; // The ranks in froms..tos-1 are in the subtree of the node
+        int[] tos = new int[capacity];
+        nodes[0] = root;
+        positions[0] = root.getRealLeft().getSubtreeSize() + 1;
+        froms[0] = 0;
+        tos[0] = ranks.length;
+        int top = 1;
+        while (top > 0) {
+            top--;
+            WAVLNode node = nodes[top];
+            int position = positions[top];
+            int from = froms[top];
+            int to = tos[top];
+
+            int below = lowerBound(ranks, from, to, position);
+            int above = lowerBound(ranks, below, to, position + 1);
+            for (int j = below; j < above; j++) {
+                keys[j] = node.getKey();
+            }
+            if (above < to) {
+                WAVLNode right = node.getRealRight();
+                nodes[top] = right;
+                positions[top] = position + right.getRealLeft().getSubtreeSize() + 1;
+                froms[top] = above;
+                tos[top] = to;
+                top++;
+            }
+            if (from < below) {
+                WAVLNode left = node.getRealLeft();
+                nodes[top] = left;
+                positions[top] = position - left.getRealRight().getSubtreeSize() - 1;
+                froms[top] = from;
+                tos[top] = below;
+                top++;
+            }
         }
+        return keys;
     }
 
+    /**
+     * @return the first index in from..to-1 of the sorted values whose value is at least value, or to if there is none
+     * Complexity O(log(to - from))
+     */
+    private static int lowerBound(int[] values, int from, int to, int value) {
+        while (from < to) {
+            int middle = (from + to) >>> 1;
+            if (values[middle] < value) {
+                from = middle + 1;
+            } else {
+                to = middle;
+            }
+        }
+        return from;
+    }
 
     /**
-     * Performing a rotation with the right child of node.
+     * public long aggregate(int lo, int hi)
+     * <p>
+     * Returns the combination, in key order, of the measures of the items with keys in [lo, hi] by the monoid
+     * of the tree, or its identity if there are no such items.
+     * Below the first node in the range, the path to lo adds the right subtrees of the nodes on it with keys >= lo
+     * and the path to hi adds the left subtrees of the nodes on it with keys <= hi, using the aggregates of the nodes.
+     * @throws UnsupportedOperationException if the tree was not created with a monoid
      *
-     * @return The new node(tree) after the rotation
-     * complexity O(1)
+     * Complexity O(log(n)), where n is the number of nodes in the tree
      */
-    private void rightRotate(WAVLNode node) {
+    public long aggregate(int lo, int hi) {
+        if (monoid == null) {
+            throw new UnsupportedOperationException("The tree has no monoid");
+        }
+        flushAppends();
 
-        WAVLNode father = node.getFather();
-        WAVLNode grandfather = father.getFather();
-        WAVLNode rightChild = node.getRealRight();
+        WAVLNode top = root;
+        while (top != null && (top.getKey() < lo || top.getKey() > hi)) {
+            top = top.getKey() < lo ? top.getRight() : top.getLeft();
+        }
+        if (top == null) {
+            return monoid.identity();
+        }
 
-        if (father == root) {
-            root = node;
+        long left = monoid.identity();
+        WAVLNode node = top.getLeft();
+        while (node != null) {
+            if (node.getKey() >= lo) {
+                left = monoid.combine(monoid.combine(measureOf(node), aggregateOf(node.getRealRight())), left);
+                node = node.getLeft();
+            } else {
+                node = node.getRight();
+            }
         }
 
-        if (grandfather != null) {
-            if (grandfather.getRealRight() == father) {
-                grandfather.setRight(node);
+        long right = monoid.identity();
+        node = top.getRight();
+        while (node != null) {
+            if (node.getKey() <= hi) {
+                right = monoid.combine(right, monoid.combine(aggregateOf(node.getRealLeft()), measureOf(node)));
+                node = node.getRight();
             } else {
-                grandfather.setLeft(node);
+                node = node.getLeft();
             }
         }
-        node.setFather(grandfather);
-        node.setRight(father);
 
-        father.setFather(node);
-        father.setLeft(rightChild);
+        return monoid.combine(monoid.combine(left, measureOf(top)), right);
+    }
 
-        if (rightChild.isRealNode()) {
-            rightChild.setFather(father);
+    /**
+     * public long aggregate()
+     * <p>
+     * Returns the combination of the measures of all the items, see aggregate(lo, hi).
+     * @throws UnsupportedOperationException if the tree was not created with a monoid
+     *
+     * Complexity O(1), O(log(n)) to fix the aggregates after appends
+     */
+    public long aggregate() {
+        if (monoid == null) {
+            throw new UnsupportedOperationException("The tree has no monoid");
         }
+        flushAppends();
+        return root == null ? monoid.identity() : aggregateOf(root);
+    }
 
-        // Re-set subtree size:
+    /**
+     * @return the aggregate of the subtree of node, the identity for an external leaf
+     * Complexity O(1)
+     */
+    long aggregateOf(WAVLNode node) {
+        return node.isRealNode() ? ((AugmentedNode) node).aggregate : monoid.identity();
+    }
 
-        father.reSetSubtreeSize();
-        node.reSetSubtreeSize();
-        if (grandfather != null) {
-            grandfather.reSetSubtreeSize();
+    private static long measureOf(WAVLNode node) {
+        return ((AugmentedNode) node).measure;
+    }
+
+    /**
+     * public static WAVLTree join(WAVLTree left, int k, String i, WAVLTree right)
+     * <p>
+     * Returns a WAVL tree holding the items of left, the item (k, i) and the items of right.
+     * All keys in left must be smaller than k and all keys in right must be larger than k.
+     * The nodes of left and right are moved to the returned tree, both of them are left empty.
+     * Unless one of them is empty, left and right must have the same monoid (see WAVLTree(WAVLMonoid)).
+     *
+     * Complexity O(log(n)), where n is the number of items in left and right (calls joinNodes).
+     */
+    public static WAVLTree join(WAVLTree left, int k, String i, WAVLTree right) {
+        if (!left.empty() && left.maxNode().getKey() >= k) {
+            throw new IllegalArgumentException("All keys in left must be smaller than " + k);
+        }
+        if (!right.empty() && right.minNode().getKey() <= k) {
+            throw new IllegalArgumentException("All keys in right must be larger than " + k);
         }
 
+        WAVLMonoid monoid = commonMonoid(left, right);
+        WAVLNode mid = newNode(monoid, k, i, null);
+        return new WAVLTree(joinSubtrees(left.detachRoot(), mid, right.detachRoot()), monoid);
     }
 
     /**
-     * Performing a double rotation with left child.
+     * public WAVLTree[] split(int k)
+     * <p>
+     * Splits the tree at k, returns {smaller, rest} where smaller holds the items with keys smaller than k
+     * and rest holds the items with keys larger than or equal to k.
+     * The nodes are moved to the returned trees, this tree is left empty.
      *
-     * @return The new node(tree) after the rotation
-     * complexity O(1)
+     * Complexity O(log(n)), where n is the number of nodes in the tree. Every node on the search path of k
+     * is joined with one of its subtrees, and the costs of these joins telescope to O(rank(root)).
      */
-    private void doubleRotateWithLeftChild(WAVLNode node) {
-        rightRotate(node);
-        leftRotate(node);
+    public WAVLTree[] split(int k) {
+        WAVLTree smaller = new WAVLTree(null, monoid);
+        WAVLTree rest = new WAVLTree(null, monoid);
+        WAVLNode node = detachRoot();
+        WAVLNode found = splitNode(node, k, smaller, rest);
+        if (found != null) {
+            rest.joinNodes(null, found, rest.root); // found is smaller than all keys in rest
+        }
+        return new WAVLTree[]{smaller, rest};
     }
 
     /**
-     * Performing a double rotation with right child.
+     * returns the monoid of the tree that combines a and b: their monoid, or the monoid of the non-empty one
+     * @throws IllegalArgumentException if both trees are not empty and they have different monoids
      *
-     * @return The new node(tree) after the rotation
-     * complexity O(1)
+     * Complexity O(1)
      */
-    private void doubleRotateWithRightChild(WAVLNode node) {
-        leftRotate(node);
-        rightRotate(node);
+    static WAVLMonoid commonMonoid(WAVLTree a, WAVLTree b) {
+        if (b.empty()) {
+            return a.monoid != null || !a.empty() ? a.monoid : b.monoid;
+        }
+        if (a.empty() || a.monoid == b.monoid) {
+            return b.monoid;
+        }
+        throw new IllegalArgumentException("The trees must have the same monoid");
     }
 
     /**
-     * public String min()
-     * <p>
-     * Returns the info of the item with the smallest key in the tree,
-     * or null if the tree is empty
+     * Splits the detached subtree of node at k, the roots of the parts with keys smaller and larger than k
+     * are set to smaller and larger.
      *
-     * complexity O(log(n)), where n is the number of nodes in the tree
+     * @return the node with key k, which is in neither part (its links are stale), or null if there is no such node
+     * Complexity O(rank(node))
      */
-    public String min() {
-        if (empty()) {
+    static WAVLNode splitNode(WAVLNode node, int k, WAVLTree smaller, WAVLTree larger) {
+        if (node == null) {
+            smaller.root = null;
+            larger.root = null;
             return null;
+        }
+
+        WAVLNode left = detach(node.getLeft());
+        WAVLNode right = detach(node.getRight());
+
+        if (k == node.getKey()) {
+            smaller.root = left;
+            larger.root = right;
+            return node;
+        }
+
+        WAVLNode found;
+        if (k < node.getKey()) {
+            found = splitNode(left, k, smaller, larger);
+            larger.joinNodes(larger.root, node, right);
         } else {
-            WAVLNode node = root;
-            while (node.getRealLeft().isRealNode()) {
-                node = node.getRealLeft();
-            }
-            return node.getValue();
+            found = splitNode(right, k, smaller, larger);
+            smaller.joinNodes(left, node, smaller.root);
         }
+        return found;
     }
 
     /**
-     * public String max()
-     * <p>
-     * Returns the info of the item with the largest key in the tree,
-     * or null if the tree is empty
+     * Joins two detached subtrees (possibly null) with mid between them.
      *
-     * complexity O(log(n)), where n is the number of nodes in the tree
+     * @return the root of the joined subtree
+     * Complexity O(|rank(left) - rank(right)| + 1)
      */
-    public String max() {
-        if (empty()) {
-            return null;
-        } else {
-            WAVLNode node = root;
-            while (node.getRealRight().isRealNode()) {
-                node = node.getRealRight();
-            }
-            return node.getValue();
+    static WAVLNode joinSubtrees(WAVLNode left, WAVLNode mid, WAVLNode right) {
+        WAVLTree tree = new WAVLTree();
+        tree.joinNodes(left, mid, right);
+        return tree.root;
+    }
+
+    /**
+     * Joins two detached subtrees (possibly null), all keys in left must be smaller than all keys in right.
+     * The largest node of left is deleted from it and used as the joining node.
+     *
+     * @return the root of the joined subtree
+     * Complexity O(rank(left) + rank(right)) (calls deleteNode, joinNodes)
+     */
+    static WAVLNode joinSubtrees(WAVLNode left, WAVLNode right) {
+        if (left == null) {
+            return right;
         }
+        WAVLTree tree = new WAVLTree(left);
+        WAVLNode last = tree.maxNode();
+        tree.deleteNode(last);
+        tree.joinNodes(tree.root, last, right);
+        return tree.root;
     }
 
     /**
-     * @return the in-order traversal of this as an array
-     * complexity O(n), where n is the number of nodes in this tree, calss recursiveInOrderTraversal
+     * Sets the root of this tree to the join of two detached subtrees (possibly null) with mid between them.
+     * mid is reused as the joining node, its children, father and rank are overwritten.
+     * Walks down the spine of the taller subtree to the first node whose rank is close enough to the rank of the other
+     * subtree, hangs mid there with these two as its children and rebalances like after an insert.
+     *
+     * Complexity O(|rank(left) - rank(right)| + 1)
      */
-    private WAVLNode[] inOrderTraversal() {
+    private void joinNodes(WAVLNode left, WAVLNode mid, WAVLNode right) {
+        int leftRank = rankOf(left);
+        int rightRank = rankOf(right);
+        mid.setFather(null);
+
+        if (Math.abs(leftRank - rightRank) <= 1) {
+            link(mid, left, right);
+            root = mid;
+            return;
+        }
 
-        if (empty()) {
-            return new WAVLNode[0];
+        WAVLNode father = null;
+        if (leftRank > rightRank) {
+            root = left;
+            WAVLNode node = left;
+            while (rankOf(node) > rightRank + 1) {
+                father = node;
+                node = node.getRight();
+            }
+            link(mid, node, right);
+            father.setRight(mid);
+        } else {
+            root = right;
+            WAVLNode node = right;
+            while (rankOf(node) > leftRank + 1) {
+                father = node;
+                node = node.getLeft();
+            }
+            link(mid, left, node);
+            father.setLeft(mid);
         }
-        WAVLNode[] inOrder = new WAVLNode[size()];
-        recursiveInOrderTraversal(inOrder, root, 0);
-        return inOrder;
+        mid.setFather(father);
+        joinRebalance(mid);
     }
 
     /**
-     * Continuing the in-order traversal from a given node with a given array of pre-inserted nodes.
-     * Complexity: O(k) where k is number of items in the subtree of node
+     * Re-balance the tree after joinNodes hung node as a child of a node on the spine of the taller subtree.
+     * Like after an insert node might be a 0-child, and then the insert re-balancing applies, unless node is a 1,1 node
+     * and its sibling is a 2-child: then node is rotated above its father and promoted, which leaves it a 1,2 node.
+     *
+     * Complexity O(log(n)), where n is the number of nodes in the tree (calls insertRebalance).
      */
-    private int recursiveInOrderTraversal(WAVLNode[] insertedNodes, WAVLNode node, int numInsertedNodes) {
-        if (!node.isRealNode()) {
-            return numInsertedNodes;
-        }
+    private void joinRebalance(WAVLNode node) {
+        WAVLNode father = node.getFather();
 
-        numInsertedNodes = recursiveInOrderTraversal(insertedNodes, node.getRealLeft(), numInsertedNodes);
-        insertedNodes[numInsertedNodes] = node;
-        numInsertedNodes += 1;
-        numInsertedNodes = recursiveInOrderTraversal(insertedNodes, node.getRealRight(), numInsertedNodes);
+        if (father.getRank() == node.getRank()
+                && node.getRankDifferenceFromLeft() == 1 && node.getRankDifferenceFromRight() == 1) {
+            int siblingRankDif = node.isRightChild() ? father.getRankDifferenceFromLeft() : father.getRankDifferenceFromRight();
+            if (siblingRankDif == 2) {
+                if (node.isRightChild()) {
+                    leftRotate(node);
+                } else {
+                    rightRotate(node);
+                }
+                node.setRank(node.getRank() + 1);
+            }
+        }
 
-        return numInsertedNodes;
+        insertRebalance(node);
     }
 
-
     /**
-     * public int[] keysToArray()
-     * <p>
-     * Returns a sorted array which contains all keys in the tree,
-     * or an empty array if the tree is empty.
+     * Sets left and right (possibly null) as the children of node, and its rank and subtree size to match them.
      *
-     * complexity O(n), where n is the number of nodes in the tree. (calls inOrderTraversal).
+     * Complexity O(1)
      */
-    public int[] keysToArray() {
-        WAVLNode[] nodes = inOrderTraversal();
-        int[] keys = new int[nodes.length];
-        for (int i = 0; i < nodes.length; i++) {
-            keys[i] = nodes[i].getKey();
+    private static void link(WAVLNode node, WAVLNode left, WAVLNode right) {
+        node.setLeft(left);
+        node.setRight(right);
+        if (left != null) {
+            left.setFather(node);
         }
-        return keys;
+        if (right != null) {
+            right.setFather(node);
+        }
+        node.setRank(Math.max(rankOf(left), rankOf(right)) + 1);
+        node.reSetSubtreeSize();
     }
 
     /**
-     * public String[] infoToArray()
-     * <p>
-     * Returns an array which contains all info in the tree,
-     * sorted by their respective keys,
-     * or an empty array if the tree is empty.
+     * Cuts node (possibly null) from its father, the father's child link is left to the caller.
      *
-     * complexity O(n), where n is the number of nodes in the tree. (calls inOrderTraversal).
+     * @return node
+     * Complexity O(1)
      */
-    public String[] infoToArray() {
-        WAVLNode[] nodes = inOrderTraversal();
-        String[] info = new String[nodes.length];
-        for (int i = 0; i < nodes.length; i++) {
-            info[i] = nodes[i].getValue();
+    static WAVLNode detach(WAVLNode node) {
+        if (node != null) {
+            node.setFather(null);
         }
-        return info;
+        return node;
     }
 
     /**
-     * public int size()
-     * <p>
-     * Returns the number of nodes in the tree.
-     * <p>
-     * precondition: none
-     * postcondition: none
-     * Complexity:O(1)
+     * @return the rank of node, or -1 (the rank of an external leaf) if node is null
+     * Complexity O(1)
      */
-    public int size() {
-        return root.getSubtreeSize();
+    private static int rankOf(WAVLNode node) {
+        return node == null ? -1 : node.getRank();
     }
 
     /**
-     * public int getRoot()
-     * <p>
-     * Returns the root WAVL node, or null if the tree is empty
-     * <p>
-     * precondition: none
-     * postcondition: none
-     * Complexity:O(1)
+     * @return the node with the smallest key in the tree, or null if the tree is empty
+     * Complexity O(log(n)), where n is the number of nodes in the tree
      */
-    public WAVLNode getRoot() {
-        return root;
+    WAVLNode minNode() {
+        WAVLNode node = root;
+        while (node != null && node.getLeft() != null) {
+            node = node.getLeft();
+        }
+        return node;
     }
 
     /**
-     * public int select(int i)
-     * <p>
-     * Returns the value of the i'th smallest key (return -1 if tree is empty)
-     * Example 1: select(1) returns the value of the node with minimal key
-     * Example 2: select(size()) returns the value of the node with maximal key
-     * Example 3: select(2) returns the value 2nd smallest minimal node, i.e the value of the node minimal node's successor
-     * <p>
-     * precondition: size() >= i > 0
-     * postcondition: none
-     * Complexity: O(log(n)) where n is the number of nodes in tree, calls recursiveSelect
+     * @return the node with the largest key in the tree, or null if the tree is empty
+     * Complexity O(log(n)), where n is the number of nodes in the tree
      */
-    public String select(int i) {
-        return recursiveSelect(root, i).getValue();
+    WAVLNode maxNode() {
+        WAVLNode node = root;
+        while (node != null && node.getRight() != null) {
+            node = node.getRight();
+        }
+        return node;
     }
 
     /**
-     * get i smallest node in node's subtree
-     * @param node the node we do the select from it's subtree
-     * @param i the i smallest in the subtree from node
-     * @return the i smallest node in node's subtree
-     * complexity:O(log(k)) where k is the subtree size of node
+     * returns the node at the 0-based in-order position i of the subtree of node, i must be in 0..size-1
+     *
+     * Complexity O(log(n)), where n is the size of the subtree
      */
-    private WAVLNode recursiveSelect(WAVLNode node, int i) {
-        int r = node.getRealLeft().getSubtreeSize();
-        if (i == r) {
-            return node;
-        } else if (i < r) {
-            return recursiveSelect(node.getRealLeft(), i);
-        } else {
-            return recursiveSelect(node.getRealRight(), i - r - 1);
+    static WAVLNode nodeAt(WAVLNode node, int i) {
+        while (true) {
+            int leftSize = node.getRealLeft().getSubtreeSize();
+            if (i == leftSize) {
+                return node;
+            } else if (i < leftSize) {
+                node = node.getRealLeft();
+            } else {
+                i -= leftSize + 1;
+                node = node.getRealRight();
+            }
         }
     }
 
@@ -829,7 +2361,7 @@ public class WAVLTree {
      * (It must implement IWAVLNode)
      */
 
-    public class WAVLNode implements IWAVLNode {
+    public static class WAVLNode implements IWAVLNode {
 
         /**
          * The right child of this if exists
@@ -885,12 +2417,12 @@ public class WAVLTree {
             }
 
             if (rightChild == null) {
-                this.rightChild = externalLeaf;
+                this.rightChild = EXTERNAL_LEAF;
             } else {
                 this.rightChild = rightChild;
             }
             if (leftChild == null) {
-                this.leftChild = externalLeaf;
+                this.leftChild = EXTERNAL_LEAF;
             } else {
                 this.leftChild = leftChild;
             }
@@ -938,11 +2470,11 @@ public class WAVLTree {
 
 
         public WAVLNode getLeft() {
-            return this.getRealLeft() == externalLeaf ? null : this.getRealLeft();
+            return this.getRealLeft() == EXTERNAL_LEAF ? null : this.getRealLeft();
         }
 
         public WAVLNode getRight() {
-            return this.getRealRight() == externalLeaf ? null : this.getRealRight();
+            return this.getRealRight() == EXTERNAL_LEAF ? null : this.getRealRight();
         }
 
         /**
@@ -981,7 +2513,7 @@ public class WAVLTree {
         public void setRight(WAVLNode rightChild) {
 
             if (rightChild == null) {
-                this.rightChild = externalLeaf;
+                this.rightChild = EXTERNAL_LEAF;
             } else {
                 this.rightChild = rightChild;
             }
@@ -994,7 +2526,7 @@ public class WAVLTree {
          */
         public void setLeft(WAVLNode leftChild) {
             if (leftChild == null) {
-                this.leftChild = externalLeaf;
+                this.leftChild = EXTERNAL_LEAF;
             } else {
                 this.leftChild = leftChild;
             }
@@ -1102,4 +2634,40 @@ public class WAVLTree {
         }
 
     }
+
+    /**
+     * A node of a tree created with a monoid, it also keeps the measure of its item and the aggregate of its subtree.
+     * The aggregate is recomputed with the subtree size, so every rotation, insert, delete, join and split that fixes
+     * the sizes fixes the aggregates too.
+     */
+    static class AugmentedNode extends WAVLNode {
+
+        private final WAVLMonoid monoid;
+        private final long measure;
+        private long aggregate;
+
+        AugmentedNode(int key, String info, WAVLNode father, WAVLMonoid monoid) {
+            super(key, info, null, null, father);
+            this.monoid = monoid;
+            this.measure = monoid.measure(key, info);
+            this.aggregate = measure;
+        }
+
+        /**
+         * Resetting the subtree size and the aggregate according to the right and the left children
+         *
+         * Complexity O(1)
+         */
+        @Override
+        public void reSetSubtreeSize() {
+            super.reSetSubtreeSize();
+            if (monoid != null) { // Not set yet when the constructor of WAVLNode calls this
+                aggregate = monoid.combine(monoid.combine(aggregateOf(getRealLeft()), measure), aggregateOf(getRealRight()));
+            }
+        }
+
+        private long aggregateOf(WAVLNode child) {
+            return child.isRealNode() ? ((AugmentedNode) child).aggregate : monoid.identity();
+        }
+    }
 }